@@ -0,0 +1,113 @@
+package com.teamtreehouse.publicdata.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.teamtreehouse.publicdata.dao.AsyncCountryDAO;
+import com.teamtreehouse.publicdata.dao.SimpleCountryDAO;
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
+
+// Compares blocking calls made one after another with the same calls sent at once through AsyncCountryDAO:
+// a batch of lookups by code, and the statistics and rankings the prompter's statistics view gathers.
+// The DAO has no cache, so every call is a round-trip to the database.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AsyncCountryDAOBenchmark {
+    private static final int LOOKUPS = 50;
+    private static final int RANKING_SIZE = 10;
+    private static final List<CountryColumn> ALL_COLUMNS = Arrays.asList(CountryColumn.values());
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private SimpleCountryDAO countryDAO;
+    private ExecutorService executor;
+    private AsyncCountryDAO asyncCountryDAO;
+
+    @Setup
+    public void setUp(){
+        BenchmarkDatabase.configure("countries-" + rows);
+        countryDAO = new SimpleCountryDAO();
+        BenchmarkDatabase.seed(countryDAO, rows);
+        executor = AsyncCountryDAO.newExecutor();
+        asyncCountryDAO = new AsyncCountryDAO(countryDAO, executor);
+    }
+
+    @TearDown
+    public void tearDown(){
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public List<Country> sequentialLookups(){
+        List<Country> countries = new ArrayList<>(LOOKUPS);
+        for(String code : randomCodes()){
+            countries.add(countryDAO.getCountryByCode(code));
+        }
+        return countries;
+    }
+
+    @Benchmark
+    public List<Country> pipelinedLookups(){
+        return AsyncCountryDAO.await(asyncCountryDAO.getCountriesByCode(randomCodes()));
+    }
+
+    @Benchmark
+    public Object[] sequentialStatistics(){
+        MultiColumnStatistics statistics = countryDAO.getStatistics(ALL_COLUMNS);
+        Object[] results = new Object[ALL_COLUMNS.size() + 1];
+        results[0] = statistics;
+        for(int i = 0; i < ALL_COLUMNS.size(); i++){
+            results[i + 1] = countryDAO.getRanking(ALL_COLUMNS.get(i), RANKING_SIZE);
+        }
+        return results;
+    }
+
+    @Benchmark
+    public Object[] concurrentStatistics(){
+        CompletableFuture<MultiColumnStatistics> statistics = asyncCountryDAO.getStatistics(ALL_COLUMNS);
+        List<CompletableFuture<ColumnRanking>> rankings = new ArrayList<>();
+        for(CountryColumn column : ALL_COLUMNS){
+            rankings.add(asyncCountryDAO.getRanking(column, RANKING_SIZE));
+        }
+        Object[] results = new Object[ALL_COLUMNS.size() + 1];
+        results[0] = AsyncCountryDAO.await(statistics);
+        for(int i = 0; i < rankings.size(); i++){
+            results[i + 1] = AsyncCountryDAO.await(rankings.get(i));
+        }
+        return results;
+    }
+
+    private List<String> randomCodes(){
+        List<String> codes = new ArrayList<>(LOOKUPS);
+        for(int i = 0; i < LOOKUPS; i++){
+            codes.add(BenchmarkDatabase.code(ThreadLocalRandom.current().nextInt(rows)));
+        }
+        return codes;
+    }
+}
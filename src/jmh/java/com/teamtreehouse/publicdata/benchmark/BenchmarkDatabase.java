@@ -0,0 +1,96 @@
+package com.teamtreehouse.publicdata.benchmark;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import com.teamtreehouse.publicdata.dao.CountryDAO;
+import com.teamtreehouse.publicdata.dao.IndicatorDAO;
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.model.IndicatorValue;
+
+// Points the DAO at a scratch H2 database under build/jmh and fills it with generated countries,
+// so the benchmarks never touch data/worldbank.
+// Must be called before SimpleCountryDAO is first used in the JVM, since its session factory reads
+// the hibernate.* system properties once.
+public class BenchmarkDatabase {
+    public static final String DRIVER_MANAGER_PROVIDER =
+            "org.hibernate.engine.jdbc.connections.internal.DriverManagerConnectionProviderImpl";
+    private static final int SEED_BATCH_SIZE = 5000;
+    // The first year of the generated indicator values
+    public static final int FIRST_YEAR = 1960;
+
+    private BenchmarkDatabase(){}
+
+    public static void configure(String name){
+        System.setProperty("hibernate.connection.url", url(name));
+        System.setProperty("hibernate.hbm2ddl.auto", "create");
+        System.setProperty("hibernate.show_sql", "false");
+        System.setProperty("hibernate.generate_statistics", "false");
+    }
+
+    // The JDBC URL of a scratch database, e.g. for the shards of a ShardedCountryDAO. Once configure() was called,
+    // its schema is created on first use like that of the configured one.
+    public static String url(String name){
+        return "jdbc:h2:./build/jmh/" + name;
+    }
+
+    // Fills the Country table with rows generated countries. About one value in ten is left null.
+    public static void seed(CountryDAO countryDAO, int rows){
+        List<Country> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for(int i = 0; i < rows; i++){
+            batch.add(new Country(new Country
+                    .CountryBuilder(code(i), "Country " + i)
+                    .withInternetUsers(i % 10 == 3 ? null : (i * 7919 % 10000) / 100.0)
+                    .withAdultLiteracyRate(i % 10 == 7 ? null : 40 + (i * 104729 % 6000) / 100.0)));
+            if(batch.size() == SEED_BATCH_SIZE){
+                countryDAO.mergeCountries(batch, EnumSet.allOf(CountryColumn.class));
+                batch.clear();
+            }
+        }
+        if(!batch.isEmpty()){
+            countryDAO.mergeCountries(batch, EnumSet.allOf(CountryColumn.class));
+        }
+    }
+
+    // Fills the IndicatorValue table with the values of indicators for countries over years, starting with
+    // FIRST_YEAR, like a full World Bank download. About one value in eight is missing, as in the real data.
+    public static void seedIndicators(IndicatorDAO indicatorDAO, int countries, int indicators, int years){
+        List<IndicatorValue> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for(int indicator = 0; indicator < indicators; indicator++){
+            for(int country = 0; country < countries; country++){
+                for(int year = 0; year < years; year++){
+                    int i = (indicator * countries + country) * years + year;
+                    if(i % 8 == 5){
+                        continue;
+                    }
+                    batch.add(new IndicatorValue(code(country), indicator(indicator), FIRST_YEAR + year,
+                            (country * 7919 + indicator * 104729 + year * 31) % 10000 / 100.0));
+                    if(batch.size() == SEED_BATCH_SIZE){
+                        indicatorDAO.mergeValues(batch);
+                        batch.clear();
+                    }
+                }
+            }
+        }
+        if(!batch.isEmpty()){
+            indicatorDAO.mergeValues(batch);
+        }
+    }
+
+    // The code of the i-th generated indicator, shaped like the World Bank ones
+    public static String indicator(int i){
+        return "GEN.IND." + i;
+    }
+
+    // The code of the i-th generated country: at least three letters, like the codes of the real data
+    public static String code(int i){
+        StringBuilder code = new StringBuilder();
+        do{
+            code.append((char) ('A' + i % 26));
+            i /= 26;
+        }while(i > 0 || code.length() < 3);
+        return code.reverse().toString();
+    }
+}
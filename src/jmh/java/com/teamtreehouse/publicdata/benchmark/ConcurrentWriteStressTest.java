@@ -0,0 +1,131 @@
+package com.teamtreehouse.publicdata.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.teamtreehouse.publicdata.dao.SimpleCountryDAO;
+import com.teamtreehouse.publicdata.dao.SnapshotCountryDAO;
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.CountrySnapshot;
+
+// A stress test of the concurrent write path: writer threads keep changing a small set of hot rows through
+// CountryDAO.modifyCountry, which retries on version conflicts, while an analytics thread keeps reading the
+// statistics from the snapshot of SnapshotCountryDAO. It runs for a fixed time with 1, 2, 4... writers and prints
+// the throughput of every step, then checks that no write was lost:
+//  - every write adds 1 to the internet users of a row and takes 1 from its adult literacy rate, so the readers
+//    must always see the same sum in every row, never half of a write
+//  - at the end, every hot row must hold its seeded values moved by exactly the number of writes that succeeded,
+//    both in the database and in the snapshot
+// Run it with: gradle stressTest [-PstressTest.args="<max writers> <seconds per step> <rows> <hot rows>"]
+public class ConcurrentWriteStressTest {
+    private static final double TOLERANCE = 1e-6;
+
+    public static void main(String[] args) throws Exception{
+        int maxWriters = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int rows = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        int hotRows = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+
+        BenchmarkDatabase.configure("stress-test-" + rows);
+        SimpleCountryDAO database = new SimpleCountryDAO();
+        BenchmarkDatabase.seed(database, rows);
+        SnapshotCountryDAO countryDAO = new SnapshotCountryDAO(database);
+
+        // The hot rows are the seeded rows that hold both values
+        List<Country> seeded = new ArrayList<>();
+        for(int i = 0; seeded.size() < hotRows && i < rows; i++){
+            Country country = database.getCountryByCode(BenchmarkDatabase.code(i));
+            if(country.getInternetUsers() != null && country.getAdultLiteracyRate() != null){
+                seeded.add(country);
+            }
+        }
+        AtomicLongArray writes = new AtomicLongArray(seeded.size());
+        LongAdder failedWrites = new LongAdder();
+        LongAdder tornReads = new LongAdder();
+
+        System.out.printf("%d rows, %d hot rows, %d seconds per step%n", rows, seeded.size(), seconds);
+        System.out.printf("%-10s%14s%14s%14s%14s%n", "writers", "writes/s", "scaling", "reads/s", "failed");
+        double baseline = 0;
+        for(int writers = 1; writers <= maxWriters; writers *= 2){
+            long failedBefore = failedWrites.sum();
+            LongAdder stepWrites = new LongAdder();
+            LongAdder stepReads = new LongAdder();
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            long start = System.nanoTime();
+
+            List<Thread> threads = new ArrayList<>();
+            for(int i = 0; i < writers; i++){
+                threads.add(start(() -> {
+                    while(System.nanoTime() < deadline){
+                        int row = ThreadLocalRandom.current().nextInt(seeded.size());
+                        try{
+                            countryDAO.modifyCountry(seeded.get(row).getCode(), country -> {
+                                country.setInternetUsers(country.getInternetUsers() + 1);
+                                country.setAdultLiteracyRate(country.getAdultLiteracyRate() - 1);
+                            });
+                            writes.incrementAndGet(row);
+                            stepWrites.increment();
+                        }catch(RuntimeException re){
+                            failedWrites.increment();
+                        }
+                    }
+                }, "stress-test-writer-" + i));
+            }
+            threads.add(start(() -> {
+                while(System.nanoTime() < deadline){
+                    countryDAO.getStatistics(CountryColumn.INTERNET_USERS, CountryColumn.ADULT_LITERACY_RATE);
+                    CountrySnapshot snapshot = countryDAO.getSnapshot();
+                    for(Country expected : seeded){
+                        Country country = snapshot.getCountry(expected.getCode());
+                        if(Math.abs(sum(country) - sum(expected)) > TOLERANCE){
+                            tornReads.increment();
+                        }
+                    }
+                    stepReads.increment();
+                }
+            }, "stress-test-reader"));
+            for(Thread thread : threads){
+                thread.join();
+            }
+
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+            double throughput = stepWrites.sum() / elapsedSeconds;
+            if(writers == 1){
+                baseline = throughput;
+            }
+            System.out.printf("%-10d%14.0f%13.2fx%14.0f%14d%n", writers, throughput, throughput / baseline,
+                    stepReads.sum() / elapsedSeconds, failedWrites.sum() - failedBefore);
+        }
+
+        int lostWrites = 0;
+        for(int row = 0; row < seeded.size(); row++){
+            Country expected = seeded.get(row);
+            double internetUsers = expected.getInternetUsers() + writes.get(row);
+            double adultLiteracyRate = expected.getAdultLiteracyRate() - writes.get(row);
+            for(Country country : new Country[]{database.getCountryByCode(expected.getCode()),
+                    countryDAO.getSnapshot().getCountry(expected.getCode())}){
+                if(Math.abs(country.getInternetUsers() - internetUsers) > TOLERANCE ||
+                        Math.abs(country.getAdultLiteracyRate() - adultLiteracyRate) > TOLERANCE){
+                    lostWrites++;
+                }
+            }
+        }
+        System.out.printf("Torn reads: %d, rows with lost writes: %d, failed writes: %d%n", tornReads.sum(),
+                lostWrites, failedWrites.sum());
+        System.exit(tornReads.sum() == 0 && lostWrites == 0 ? 0 : 1);
+    }
+
+    private static double sum(Country country){
+        return country.getInternetUsers() + country.getAdultLiteracyRate();
+    }
+
+    private static Thread start(Runnable work, String name){
+        Thread thread = new Thread(work, name);
+        thread.start();
+        return thread;
+    }
+}
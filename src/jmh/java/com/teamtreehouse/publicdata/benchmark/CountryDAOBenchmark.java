@@ -0,0 +1,91 @@
+package com.teamtreehouse.publicdata.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.teamtreehouse.publicdata.dao.SimpleCountryDAO;
+import com.teamtreehouse.publicdata.dao.StatisticsMode;
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
+
+// The baseline for the read paths of SimpleCountryDAO, against generated tables of 1k, 100k and 1M rows.
+// Run it with the GC profiler (configured in build.gradle) to also get the allocation rate per operation.
+// A single size can be picked by running the benchmark jar (gradle jmhJar) with: -p rows=1000
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CountryDAOBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"DATABASE", "IN_MEMORY"})
+    public StatisticsMode statisticsMode;
+
+    private static final List<CountryColumn> ALL_COLUMNS = Arrays.asList(CountryColumn.values());
+
+    private SimpleCountryDAO countryDAO;
+
+    @Setup
+    public void setUp(){
+        BenchmarkDatabase.configure("countries-" + rows);
+        countryDAO = new SimpleCountryDAO(statisticsMode);
+        BenchmarkDatabase.seed(countryDAO, rows);
+    }
+
+    @Benchmark
+    public List<Country> fetchAllCountries(){
+        return countryDAO.fetchAllCountries();
+    }
+
+    @Benchmark
+    public Country getCountryByCode(){
+        return countryDAO.getCountryByCode(BenchmarkDatabase.code(ThreadLocalRandom.current().nextInt(rows)));
+    }
+
+    @Benchmark
+    public CountryStatistics getStatistics(){
+        return countryDAO.getStatistics(CountryColumn.INTERNET_USERS, CountryColumn.ADULT_LITERACY_RATE);
+    }
+
+    @Benchmark
+    public MultiColumnStatistics getMultiColumnStatistics(){
+        return countryDAO.getStatistics(ALL_COLUMNS);
+    }
+
+    @Benchmark
+    public ColumnRanking getRanking(){
+        return countryDAO.getRanking(CountryColumn.INTERNET_USERS, 10);
+    }
+
+    // The generated names are "Country <i>", so a random prefix of two digits matches a few rows of every size
+    @Benchmark
+    public List<Country> findCountriesByName(){
+        return countryDAO.findCountriesByName("Country " + (10 + ThreadLocalRandom.current().nextInt(90)), false, 10);
+    }
+
+    @Benchmark
+    public List<Country> findCountriesInRange(){
+        double min = ThreadLocalRandom.current().nextInt(99);
+        return countryDAO.findCountriesInRange(CountryColumn.INTERNET_USERS, min, min + 1, 10);
+    }
+}
@@ -0,0 +1,91 @@
+package com.teamtreehouse.publicdata.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.teamtreehouse.publicdata.dao.CountryDAO;
+import com.teamtreehouse.publicdata.dao.SimpleCountryDAO;
+import com.teamtreehouse.publicdata.model.Country;
+
+// Measures DAO operations per second for a lookup-heavy and a write-heavy mix of calls.
+// connectionProvider compares the HikariCP pool against Hibernate's built-in DriverManager connections,
+// and unitOfWork compares one session per call against running the whole mix in one unit of work.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DaoWorkloadBenchmark {
+    private static final int ROWS = 1000;
+    private static final int OPERATIONS = 10;
+
+    @Param({"hikari", "builtin"})
+    public String connectionProvider;
+
+    @Param({"false", "true"})
+    public boolean unitOfWork;
+
+    private SimpleCountryDAO countryDAO;
+
+    @Setup
+    public void setUp(){
+        BenchmarkDatabase.configure("dao-workload");
+        if(connectionProvider.equals("builtin")){
+            System.setProperty("hibernate.connection.provider_class", BenchmarkDatabase.DRIVER_MANAGER_PROVIDER);
+        }
+        countryDAO = new SimpleCountryDAO();
+        BenchmarkDatabase.seed(countryDAO, ROWS);
+    }
+
+    // 9 lookups and 1 update
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void lookupHeavy(Blackhole blackhole){
+        run(9, 1, blackhole);
+    }
+
+    // 2 lookups and 8 updates
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void writeHeavy(Blackhole blackhole){
+        run(2, 8, blackhole);
+    }
+
+    private void run(int lookups, int updates, Blackhole blackhole){
+        if(unitOfWork){
+            countryDAO.inUnitOfWork(dao -> {
+                mix(dao, lookups, updates, blackhole);
+                return null;
+            });
+        }else{
+            mix(countryDAO, lookups, updates, blackhole);
+        }
+    }
+
+    private static void mix(CountryDAO dao, int lookups, int updates, Blackhole blackhole){
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for(int i = 0; i < lookups; i++){
+            blackhole.consume(dao.getCountryByCode(BenchmarkDatabase.code(random.nextInt(ROWS))));
+        }
+        for(int i = 0; i < updates; i++){
+            Country country = dao.getCountryByCode(BenchmarkDatabase.code(random.nextInt(ROWS)));
+            country.setInternetUsers(random.nextDouble(100.0));
+            dao.updateCountry(country);
+        }
+    }
+}
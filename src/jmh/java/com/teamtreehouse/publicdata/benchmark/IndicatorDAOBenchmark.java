@@ -0,0 +1,120 @@
+package com.teamtreehouse.publicdata.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import com.teamtreehouse.publicdata.dao.SimpleIndicatorDAO;
+import com.teamtreehouse.publicdata.importer.ImportResult;
+import com.teamtreehouse.publicdata.importer.IndicatorImporter;
+import com.teamtreehouse.publicdata.model.IndicatorValue;
+
+// Measures the yearly indicator queries over a table the size of a full World Bank download: 60 years of hundreds
+// of indicators for 250 countries, up to 4.5 million values. The history of one country is a range scan of the
+// primary key, the values of one indicator across the countries and the correlation by year are served by the
+// (indicator, year) index, and the import merges the history of one indicator again.
+// Seeding the larger table takes a few minutes.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IndicatorDAOBenchmark {
+    private static final int COUNTRIES = 250;
+    private static final int YEARS = 60;
+    private static final int LAST_YEAR = BenchmarkDatabase.FIRST_YEAR + YEARS - 1;
+    private static final int WINDOW = 5;
+    private static final int IMPORT_BATCH_SIZE = 1000;
+
+    @Param({"100", "300"})
+    public int indicators;
+
+    private SimpleIndicatorDAO indicatorDAO;
+    private String worldBankFile;
+    private int next;
+
+    @Setup
+    public void setUp(){
+        BenchmarkDatabase.configure("indicators-" + indicators);
+        indicatorDAO = new SimpleIndicatorDAO();
+        BenchmarkDatabase.seedIndicators(indicatorDAO, COUNTRIES, indicators, YEARS);
+        worldBankFile = worldBankFile();
+    }
+
+    // Another country and indicator every call, so the queries don't hit the same pages
+    private int next(){
+        next = (next + 1) % (COUNTRIES * indicators);
+        return next;
+    }
+
+    @Benchmark
+    public List<IndicatorValue> countryHistory(){
+        int i = next();
+        return indicatorDAO.getValues(BenchmarkDatabase.code(i % COUNTRIES), BenchmarkDatabase.indicator(i / COUNTRIES),
+                BenchmarkDatabase.FIRST_YEAR, LAST_YEAR);
+    }
+
+    @Benchmark
+    public SortedMap<Integer, Double> movingAverage(){
+        int i = next();
+        return indicatorDAO.getMovingAverage(BenchmarkDatabase.code(i % COUNTRIES),
+                BenchmarkDatabase.indicator(i / COUNTRIES), BenchmarkDatabase.FIRST_YEAR, LAST_YEAR, WINDOW);
+    }
+
+    // One decade of an indicator for every country
+    @Benchmark
+    public List<IndicatorValue> indicatorDecade(){
+        int i = next();
+        return indicatorDAO.getValues(BenchmarkDatabase.indicator(i % indicators), LAST_YEAR - 9, LAST_YEAR);
+    }
+
+    @Benchmark
+    public SortedMap<Integer, Double> correlationByYear(){
+        int i = next();
+        return indicatorDAO.getCorrelationByYear(BenchmarkDatabase.indicator(i % indicators),
+                BenchmarkDatabase.indicator((i + 1) % indicators), BenchmarkDatabase.FIRST_YEAR, LAST_YEAR);
+    }
+
+    // Merges the history of one indicator for every country, which already exists, so every value is an update
+    @Benchmark
+    public ImportResult importIndicator() throws IOException{
+        return new IndicatorImporter(indicatorDAO, IMPORT_BATCH_SIZE)
+                .importValues(new BufferedReader(new StringReader(worldBankFile)));
+    }
+
+    // A World Bank download holding the first indicator for every country
+    private String worldBankFile(){
+        StringBuilder file = new StringBuilder(
+                "\"Country Name\",\"Country Code\",\"Indicator Name\",\"Indicator Code\"");
+        for(int year = BenchmarkDatabase.FIRST_YEAR; year <= LAST_YEAR; year++){
+            file.append(",\"").append(year).append('"');
+        }
+        file.append('\n');
+        for(int country = 0; country < COUNTRIES; country++){
+            String code = BenchmarkDatabase.code(country);
+            file.append("\"Country ").append(country).append("\",\"").append(code).append("\",\"Generated\",\"")
+                    .append(BenchmarkDatabase.indicator(0)).append('"');
+            for(int year = 0; year < YEARS; year++){
+                file.append(",\"").append((country * 7919 + year * 31) % 10000 / 100.0).append('"');
+            }
+            file.append('\n');
+        }
+        return file.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package com.teamtreehouse.publicdata.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.teamtreehouse.publicdata.columnar.ColumnarFileWriter;
+import com.teamtreehouse.publicdata.columnar.MappedCountryFile;
+import com.teamtreehouse.publicdata.dao.MappedCountryDAO;
+import com.teamtreehouse.publicdata.dao.SimpleCountryDAO;
+import com.teamtreehouse.publicdata.dao.StatisticsMode;
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
+
+// Measures the analytics mode: the scans of a memory-mapped columnar file, read in place without copying the rows
+// out, next to the IN_MEMORY scan of the same rows in H2. From 17,576 rows on, the generated codes have four letters.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MappedCountryBenchmark {
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    private SimpleCountryDAO databaseDAO;
+    private MappedCountryDAO mappedDAO;
+    private final Random random = new Random(42);
+
+    @Setup
+    public void setUp() throws IOException{
+        BenchmarkDatabase.configure("countries-" + rows);
+        databaseDAO = new SimpleCountryDAO(StatisticsMode.IN_MEMORY);
+        BenchmarkDatabase.seed(databaseDAO, rows);
+
+        Path file = Paths.get("build", "jmh", "countries-" + rows + ".columnar");
+        Files.createDirectories(file.getParent());
+        ColumnarFileWriter.export(databaseDAO, file);
+        mappedDAO = new MappedCountryDAO(MappedCountryFile.open(file));
+    }
+
+    @Benchmark
+    public CountryStatistics mappedStatistics(){
+        return mappedDAO.getStatistics(CountryColumn.INTERNET_USERS, CountryColumn.ADULT_LITERACY_RATE);
+    }
+
+    @Benchmark
+    public CountryStatistics databaseStatistics(){
+        return databaseDAO.getStatistics(CountryColumn.INTERNET_USERS, CountryColumn.ADULT_LITERACY_RATE);
+    }
+
+    // The statistics screen of the analytics mode: every column, its percentiles and the correlation matrix
+    @Benchmark
+    public MultiColumnStatistics mappedMultiColumnStatistics(){
+        return mappedDAO.getStatistics(Arrays.asList(CountryColumn.values()));
+    }
+
+    @Benchmark
+    public ColumnRanking mappedRanking(){
+        return mappedDAO.getRanking(CountryColumn.INTERNET_USERS, 10);
+    }
+
+    @Benchmark
+    public Country mappedLookup(){
+        return mappedDAO.getCountryByCode(BenchmarkDatabase.code(random.nextInt(rows)));
+    }
+}
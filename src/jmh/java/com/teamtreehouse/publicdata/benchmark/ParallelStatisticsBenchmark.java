@@ -0,0 +1,57 @@
+package com.teamtreehouse.publicdata.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import com.teamtreehouse.publicdata.dao.SimpleCountryDAO;
+import com.teamtreehouse.publicdata.dao.StatisticsMode;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+
+// Shows how the PARALLEL statistics mode scales with the number of threads, next to the sequential IN_MEMORY scan.
+// Parallelism above the connection pool size (hikari.maximumPoolSize) makes threads wait for connections.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelStatisticsBenchmark {
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private SimpleCountryDAO parallelDAO;
+    private SimpleCountryDAO sequentialDAO;
+
+    @Setup
+    public void setUp(){
+        BenchmarkDatabase.configure("countries-" + rows);
+        parallelDAO = new SimpleCountryDAO(StatisticsMode.PARALLEL, parallelism);
+        sequentialDAO = new SimpleCountryDAO(StatisticsMode.IN_MEMORY);
+        BenchmarkDatabase.seed(parallelDAO, rows);
+    }
+
+    @Benchmark
+    public CountryStatistics parallel(){
+        return parallelDAO.getStatistics(CountryColumn.INTERNET_USERS, CountryColumn.ADULT_LITERACY_RATE);
+    }
+
+    @Benchmark
+    public CountryStatistics sequential(){
+        return sequentialDAO.getStatistics(CountryColumn.INTERNET_USERS, CountryColumn.ADULT_LITERACY_RATE);
+    }
+}
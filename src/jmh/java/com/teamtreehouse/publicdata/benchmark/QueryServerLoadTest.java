@@ -0,0 +1,141 @@
+package com.teamtreehouse.publicdata.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.teamtreehouse.publicdata.dao.CachingCountryDAO;
+import com.teamtreehouse.publicdata.dao.IncrementalStatisticsCountryDAO;
+import com.teamtreehouse.publicdata.dao.SimpleCountryDAO;
+import com.teamtreehouse.publicdata.http.QueryServer;
+import com.teamtreehouse.publicdata.metrics.LatencyHistogram;
+
+// A load test of QueryServer: concurrent clients send a mix of lookups, listings and statistics requests to a
+// server over a generated table for a fixed time, and the throughput and the p50/p99 latency of every kind of
+// request are printed. The server runs in this JVM, over the same decorators as the application's --serve mode.
+// Run it with: gradle loadTest [-PloadTest.args="<clients> <seconds> <rows> <server threads>"]
+public class QueryServerLoadTest {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int CACHE_SIZE = 1000;
+
+    public static void main(String[] args) throws Exception{
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int rows = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        int serverThreads = args.length > 3 ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors() * 2;
+
+        BenchmarkDatabase.configure("load-test-" + rows);
+        SimpleCountryDAO countryDAO = new SimpleCountryDAO();
+        BenchmarkDatabase.seed(countryDAO, rows);
+        QueryServer server = new QueryServer(new CachingCountryDAO(new IncrementalStatisticsCountryDAO(countryDAO),
+                CACHE_SIZE), new InetSocketAddress("localhost", 0), serverThreads);
+        server.start();
+
+        String base = "http://localhost:" + server.getPort();
+        Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+        for(String kind : new String[]{"lookup", "listing", "statistics", "ranking"}){
+            latencies.put(kind, new LatencyHistogram());
+        }
+        LatencyHistogram total = new LatencyHistogram();
+        LongAdder errors = new LongAdder();
+
+        // A short warm-up, so the statistics are loaded and the code is compiled before the measurement
+        runClients(clients, System.nanoTime() + 2_000_000_000L, base, rows, latencies, total, errors, true);
+        long start = System.nanoTime();
+        runClients(clients, start + seconds * 1_000_000_000L, base, rows, latencies, total, errors, false);
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        server.stop();
+
+        System.out.printf("%d clients, %d server threads, %d rows, %.1f seconds%n", clients, serverThreads, rows,
+                elapsedSeconds);
+        System.out.printf("%-12s%12s%12s%12s%12s%12s%n", "request", "count", "req/s", "p50 (ms)", "p99 (ms)", "max (ms)");
+        for(Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()){
+            print(entry.getKey(), entry.getValue(), elapsedSeconds);
+        }
+        print("all", total, elapsedSeconds);
+        System.out.printf("Errors: %d%n", errors.sum());
+        System.exit(0);
+    }
+
+    private static void runClients(int clients, long deadline, String base, int rows,
+                                   Map<String, LatencyHistogram> latencies, LatencyHistogram total,
+                                   LongAdder errors, boolean warmUp) throws InterruptedException{
+        List<Thread> threads = new ArrayList<>();
+        for(int i = 0; i < clients; i++){
+            Thread thread = new Thread(() -> {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while(System.nanoTime() < deadline){
+                    String kind = pickKind();
+                    long requestStart = System.nanoTime();
+                    boolean ok = get(base + path(kind, rows), buffer);
+                    long elapsed = System.nanoTime() - requestStart;
+                    if(warmUp){
+                        continue;
+                    }
+                    if(!ok){
+                        errors.increment();
+                    }else{
+                        latencies.get(kind).record(elapsed);
+                        total.record(elapsed);
+                    }
+                }
+            }, "load-test-client-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+    }
+
+    // Lookups are the most frequent request, statistics the least
+    private static String pickKind(){
+        int draw = ThreadLocalRandom.current().nextInt(100);
+        return draw < 60 ? "lookup" : draw < 85 ? "listing" : draw < 95 ? "ranking" : "statistics";
+    }
+
+    private static String path(String kind, int rows){
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch(kind){
+            case "lookup":
+                return "/countries/" + BenchmarkDatabase.code(random.nextInt(rows));
+            case "listing":
+                return "/countries?limit=20&after=" + BenchmarkDatabase.code(random.nextInt(rows));
+            case "ranking":
+                return "/ranking/internetUsers?size=10";
+            default:
+                return "/statistics";
+        }
+    }
+
+    // Sends a GET and reads the whole response, so the connection can be kept alive. Returns false on an error.
+    private static boolean get(String url, byte[] buffer){
+        try{
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            int status = connection.getResponseCode();
+            try(InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()){
+                while(body != null && body.read(buffer) >= 0){
+                    // the body is only read to free the connection
+                }
+            }
+            return status == 200;
+        }catch(IOException ioe){
+            return false;
+        }
+    }
+
+    private static void print(String kind, LatencyHistogram latency, double elapsedSeconds){
+        System.out.printf("%-12s%12d%12.0f%12.2f%12.2f%12.2f%n", kind, latency.getCount(),
+                latency.getCount() / elapsedSeconds, latency.getValueAtPercentile(50) / 1e6,
+                latency.getValueAtPercentile(99) / 1e6, latency.getMaxNanos() / 1e6);
+    }
+}
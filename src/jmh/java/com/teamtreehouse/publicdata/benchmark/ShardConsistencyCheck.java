@@ -0,0 +1,266 @@
+package com.teamtreehouse.publicdata.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Function;
+
+import com.teamtreehouse.publicdata.dao.CountryDAO;
+import com.teamtreehouse.publicdata.dao.CountryFilter;
+import com.teamtreehouse.publicdata.dao.ReplicaCountryDAO;
+import com.teamtreehouse.publicdata.dao.ShardedCountryDAO;
+import com.teamtreehouse.publicdata.dao.SimpleCountryDAO;
+import com.teamtreehouse.publicdata.dao.StatisticsMode;
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.ColumnStatistics;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
+
+// Checks ShardedCountryDAO and ReplicaCountryDAO against one database, with every shard and the replica in an H2
+// file of its own under build/jmh. The same generated rows are seeded into a single database and into the shards,
+// then every read is compared: lookups, listings, pages, searches, and the statistics and rankings the shards
+// gather and merge. The same bulk writes and unit of work are run on both, and the reads compared again.
+// Last, a read replica of the shards is refreshed and its statistics compared with those of the shards, then some
+// rows are changed and deleted, and the next refresh must copy only those.
+// It prints every check and the time the statistics took, and exits with 1 if any check failed.
+// Run it with: gradle shardCheck [-PshardCheck.args="<shards> <rows>"]
+public class ShardConsistencyCheck {
+    private static final double TOLERANCE = 1e-9;
+    private static final int LOOKUPS = 1000;
+    private static final int PAGE_SIZE = 37;
+    private static final int LIMIT = 100;
+    private static final int RANKING_SIZE = 10;
+    private static final List<CountryColumn> ALL_COLUMNS = Arrays.asList(CountryColumn.values());
+
+    private static int failures;
+
+    public static void main(String[] args){
+        int shardCount = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+        BenchmarkDatabase.configure("shard-check-single");
+        SimpleCountryDAO single = new SimpleCountryDAO();
+        List<CountryDAO> shards = new ArrayList<>();
+        for(int i = 0; i < shardCount; i++){
+            shards.add(new SimpleCountryDAO(BenchmarkDatabase.url("shard-check-" + i), StatisticsMode.DATABASE));
+        }
+        ShardedCountryDAO sharded = new ShardedCountryDAO(shards);
+        BenchmarkDatabase.seed(single, rows);
+        BenchmarkDatabase.seed(sharded, rows);
+
+        System.out.printf("%d rows in %d shards%n", rows, shardCount);
+        for(int i = 0; i < shardCount; i++){
+            List<Country> shardCountries = shards.get(i).fetchAllCountries();
+            boolean placed = true;
+            for(Country country : shardCountries){
+                placed &= sharded.shardOf(country.getCode()) == i;
+            }
+            check(String.format("shard %d holds %d rows, all of its own", i, shardCountries.size()), placed);
+        }
+
+        compareReads(single, sharded, "");
+
+        List<String> codes = new ArrayList<>();
+        Map<String, Double> values = new HashMap<>();
+        for(int i = 0; i < rows; i += 7){
+            codes.add(BenchmarkDatabase.code(i));
+            values.put(BenchmarkDatabase.code(i + 3), i / 100.0);
+        }
+        List<String> deleted = new ArrayList<>();
+        for(int i = 0; i < rows; i += 11){
+            deleted.add(BenchmarkDatabase.code(i));
+        }
+        check("updateColumn changes the same rows", single.updateColumn(CountryColumn.INTERNET_USERS, 12.5, codes) ==
+                sharded.updateColumn(CountryColumn.INTERNET_USERS, 12.5, codes));
+        check("updateValues changes the same rows", single.updateValues(CountryColumn.ADULT_LITERACY_RATE, values) ==
+                sharded.updateValues(CountryColumn.ADULT_LITERACY_RATE, values));
+        check("deleteCountries deletes the same rows", single.deleteCountries(deleted) ==
+                sharded.deleteCountries(deleted));
+        for(CountryDAO countryDAO : new CountryDAO[]{single, sharded}){
+            countryDAO.inUnitOfWork(unit -> {
+                for(int i = 1; i < rows; i += rows / 10){
+                    unit.modifyCountry(BenchmarkDatabase.code(i),
+                            country -> country.setName("Renamed " + country.getCode()));
+                }
+                return null;
+            });
+        }
+        compareReads(single, sharded, " after the writes");
+
+        ReplicaCountryDAO replica = new ReplicaCountryDAO(sharded,
+                new SimpleCountryDAO(BenchmarkDatabase.url("shard-check-replica"), StatisticsMode.DATABASE));
+        long start = System.nanoTime();
+        int copied = replica.refresh();
+        System.out.printf("Refreshed the replica with %d rows in %d ms%n", copied,
+                (System.nanoTime() - start) / 1_000_000);
+        compareStatistics(sharded, replica, " of the replica");
+
+        List<String> changed = new ArrayList<>();
+        for(int i = 2; i < rows; i += 13){
+            changed.add(BenchmarkDatabase.code(i));
+        }
+        int updated = sharded.updateColumn(CountryColumn.ADULT_LITERACY_RATE, 33.0, changed);
+        int removed = sharded.deleteCountries(Arrays.asList(BenchmarkDatabase.code(5), BenchmarkDatabase.code(6)));
+        start = System.nanoTime();
+        copied = replica.refresh();
+        System.out.printf("Refreshed the replica with %d changed rows in %d ms%n", copied,
+                (System.nanoTime() - start) / 1_000_000);
+        check("the refresh copies only the changed rows", copied == updated + removed);
+        compareStatistics(sharded, replica, " of the refreshed replica");
+
+        System.out.printf("%d checks failed%n", failures);
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void compareReads(CountryDAO single, CountryDAO sharded, String when){
+        Random random = new Random(42);
+        int rows = single.fetchAllCountries().size();
+        boolean lookups = true;
+        for(int i = 0; i < LOOKUPS; i++){
+            String code = BenchmarkDatabase.code(random.nextInt(rows + rows / 10));
+            lookups &= same(single.getCountryByCode(code), sharded.getCountryByCode(code));
+        }
+        check("lookups" + when, lookups);
+        // One database lists the countries in no particular order, the shards in code order
+        List<Country> all = new ArrayList<>(single.fetchAllCountries());
+        all.sort(Comparator.comparing(Country::getCode));
+        check("fetchAllCountries" + when, same(all, sharded.fetchAllCountries()));
+
+        CountryFilter filter = new CountryFilter().withRange(CountryColumn.INTERNET_USERS, 20.0, 60.0);
+        check("forEachCountry" + when, same(scan(single, filter), scan(sharded, filter)));
+        check("fetchCountriesPage" + when, same(pages(single, filter), pages(sharded, filter)));
+        check("findCountriesByName" + when, same(single.findCountriesByName("Country 1", false, LIMIT),
+                sharded.findCountriesByName("Country 1", false, LIMIT)));
+        check("findCountriesInRange" + when, same(
+                single.findCountriesInRange(CountryColumn.ADULT_LITERACY_RATE, 50, 70, LIMIT),
+                sharded.findCountriesInRange(CountryColumn.ADULT_LITERACY_RATE, 50, 70, LIMIT)));
+        check("fetchCodesWithoutValues" + when,
+                single.fetchCodesWithoutValues().equals(sharded.fetchCodesWithoutValues()));
+        compareStatistics(single, sharded, when);
+    }
+
+    private static void compareStatistics(CountryDAO expected, CountryDAO actual, String when){
+        CountryColumn first = CountryColumn.INTERNET_USERS;
+        CountryColumn second = CountryColumn.ADULT_LITERACY_RATE;
+        CountryStatistics expectedStatistics = timed("statistics", expected, dao -> dao.getStatistics(first, second));
+        CountryStatistics actualStatistics = timed("statistics", actual, dao -> dao.getStatistics(first, second));
+        check("statistics" + when, same(expectedStatistics.getColumnStatistics(first),
+                actualStatistics.getColumnStatistics(first)) &&
+                same(expectedStatistics.getColumnStatistics(second), actualStatistics.getColumnStatistics(second)) &&
+                expectedStatistics.getCorrelation().getCount() == actualStatistics.getCorrelation().getCount() &&
+                close(expectedStatistics.getCorrelationCoefficient(), actualStatistics.getCorrelationCoefficient()));
+
+        MultiColumnStatistics expectedAll = timed("multi-column statistics", expected,
+                dao -> dao.getStatistics(ALL_COLUMNS));
+        MultiColumnStatistics actualAll = timed("multi-column statistics", actual,
+                dao -> dao.getStatistics(ALL_COLUMNS));
+        boolean all = true;
+        for(CountryColumn column : ALL_COLUMNS){
+            all &= same(expectedAll.getColumnStatistics(column), actualAll.getColumnStatistics(column));
+        }
+        double[][] expectedMatrix = expectedAll.getCorrelationMatrix();
+        double[][] actualMatrix = actualAll.getCorrelationMatrix();
+        for(int i = 0; i < expectedMatrix.length; i++){
+            for(int j = 0; j < expectedMatrix[i].length; j++){
+                all &= close(expectedMatrix[i][j], actualMatrix[i][j]);
+            }
+        }
+        check("multi-column statistics" + when, all);
+
+        boolean rankings = true;
+        for(CountryColumn column : ALL_COLUMNS){
+            ColumnRanking expectedRanking = timed("ranking", expected, dao -> dao.getRanking(column, RANKING_SIZE));
+            ColumnRanking actualRanking = timed("ranking", actual, dao -> dao.getRanking(column, RANKING_SIZE));
+            rankings &= sameValues(column, expectedRanking.getGreatest(), actualRanking.getGreatest()) &&
+                    sameValues(column, expectedRanking.getLeast(), actualRanking.getLeast());
+        }
+        check("rankings" + when, rankings);
+    }
+
+    private static <T> T timed(String call, CountryDAO countryDAO, Function<CountryDAO, T> work){
+        long start = System.nanoTime();
+        T result = work.apply(countryDAO);
+        System.out.printf("  %-24s %-20s %6d ms%n", call, countryDAO.getClass().getSimpleName(),
+                (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    private static List<Country> scan(CountryDAO countryDAO, CountryFilter filter){
+        List<Country> countries = new ArrayList<>();
+        countryDAO.forEachCountry(filter, countries::add);
+        return countries;
+    }
+
+    private static List<Country> pages(CountryDAO countryDAO, CountryFilter filter){
+        List<Country> countries = new ArrayList<>();
+        List<Country> page = countryDAO.fetchCountriesPage(filter, null, PAGE_SIZE);
+        while(!page.isEmpty()){
+            countries.addAll(page);
+            page = countryDAO.fetchCountriesPage(filter, page.get(page.size() - 1).getCode(), PAGE_SIZE);
+        }
+        return countries;
+    }
+
+    private static void check(String name, boolean passed){
+        System.out.printf("%-60s %s%n", name, passed ? "OK" : "FAILED");
+        if(!passed){
+            failures++;
+        }
+    }
+
+    // The countries must be in the same order. The versions aren't compared, since the unit of work of the shards
+    // and a refresh of the replica count them differently.
+    private static boolean same(List<Country> expected, List<Country> actual){
+        if(expected.size() != actual.size()){
+            return false;
+        }
+        for(int i = 0; i < expected.size(); i++){
+            if(!same(expected.get(i), actual.get(i))){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean same(Country expected, Country actual){
+        if(expected == null || actual == null){
+            return expected == actual;
+        }
+        return expected.getCode().equals(actual.getCode()) && Objects.equals(expected.getName(), actual.getName()) &&
+                Objects.equals(expected.getInternetUsers(), actual.getInternetUsers()) &&
+                Objects.equals(expected.getAdultLiteracyRate(), actual.getAdultLiteracyRate());
+    }
+
+    // The countries holding the min and max may differ on equal values, so only the values are compared
+    private static boolean same(ColumnStatistics expected, ColumnStatistics actual){
+        return expected.getCount() == actual.getCount() && close(expected.getMean(), actual.getMean()) &&
+                close(expected.getVariance(), actual.getVariance()) && close(expected.getMin(), actual.getMin()) &&
+                close(expected.getMax(), actual.getMax());
+    }
+
+    private static boolean sameValues(CountryColumn column, List<Country> expected, List<Country> actual){
+        if(expected.size() != actual.size()){
+            return false;
+        }
+        for(int i = 0; i < expected.size(); i++){
+            if(!column.getValue(expected.get(i)).equals(column.getValue(actual.get(i)))){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean close(double expected, double actual){
+        if(Double.isNaN(expected) || Double.isNaN(actual)){
+            return Double.isNaN(expected) && Double.isNaN(actual);
+        }
+        return Math.abs(expected - actual) <= TOLERANCE * Math.max(1.0, Math.abs(expected));
+    }
+}
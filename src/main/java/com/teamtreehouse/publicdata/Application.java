@@ -1,8 +1,204 @@
 package com.teamtreehouse.publicdata;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.teamtreehouse.publicdata.batch.BatchRunner;
+import com.teamtreehouse.publicdata.batch.OutputFormat;
+import com.teamtreehouse.publicdata.columnar.ColumnarFileWriter;
+import com.teamtreehouse.publicdata.columnar.MappedCountryFile;
+import com.teamtreehouse.publicdata.dao.CachingCountryDAO;
+import com.teamtreehouse.publicdata.dao.CountryDAO;
+import com.teamtreehouse.publicdata.dao.IndicatorDAO;
+import com.teamtreehouse.publicdata.dao.MappedCountryDAO;
+import com.teamtreehouse.publicdata.dao.MetricsCountryDAO;
+import com.teamtreehouse.publicdata.dao.NameIndexCountryDAO;
+import com.teamtreehouse.publicdata.dao.ReplicaCountryDAO;
+import com.teamtreehouse.publicdata.dao.SessionFactoryProvider;
+import com.teamtreehouse.publicdata.dao.ShardedCountryDAO;
+import com.teamtreehouse.publicdata.dao.ShardedIndicatorDAO;
+import com.teamtreehouse.publicdata.dao.SimpleCountryDAO;
+import com.teamtreehouse.publicdata.dao.SimpleIndicatorDAO;
+import com.teamtreehouse.publicdata.dao.SnapshotCountryDAO;
+import com.teamtreehouse.publicdata.dao.StartupTimings;
+import com.teamtreehouse.publicdata.dao.StatisticsMode;
+import com.teamtreehouse.publicdata.http.QueryServer;
+import com.teamtreehouse.publicdata.metrics.MetricsRegistry;
+
+// Runs the interactive prompter against the database. The session factory is built in the background while
+// the menu is shown. The options are:
+//  --fast-start        skips the schema update of data/worldbank, for a database whose schema is known to be current
+//  --startup-report    prints how long every startup phase took once the session factory is ready
+//  --export <file>     writes the Country table to a columnar snapshot file and exits
+//  --analytics <file>  runs the prompter read-only over the memory-mapped file, without starting Hibernate or H2
+//  --batch <script>    runs the commands of a script file (- for the standard input) instead of the prompter
+//  --command <command> runs one command instead of the prompter, after those of the script. It can be repeated.
+//  --format csv|json   the output format of the batch commands, csv by default
+//  --serve <port>      serves the countries and statistics as JSON over HTTP instead of running the prompter
+//  --shards <urls>     partitions the countries across the H2 databases with the given comma separated JDBC URLs
+//                      instead of using data/worldbank, e.g. jdbc:h2:./data/shard-0,jdbc:h2:./data/shard-1
+//  --replica <url>     reads the statistics from a read replica at the given JDBC URL, refreshed from the
+//                      database (or the shards) every minute. The batch commands don't use it.
+// The batch commands are listed in BatchRunner, and the HTTP requests in QueryServer. With --analytics both
+// run over the mapped file.
 public class Application {
+    private static final String USAGE = "Usage: Application [--fast-start] [--startup-report] " +
+            "[--export <file> | --analytics <file>] [--batch <script>] [--command <command>]... " +
+            "[--format csv|json] [--serve <port>] [--shards <url>,<url>...] [--replica <url>]%n";
+    private static final int CACHE_SIZE = 1000;
+    private static final int SERVER_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+
     public static void main(String[] args){
-        Prompter prompter = new Prompter();
-        prompter.run();
+        String exportFile = null;
+        String analyticsFile = null;
+        String scriptFile = null;
+        List<String> commands = new ArrayList<>();
+        OutputFormat format = OutputFormat.CSV;
+        int port = -1;
+        List<String> shardUrls = new ArrayList<>();
+        String replicaUrl = null;
+
+        for(int i = 0; i < args.length; i++){
+            if(args[i].equals("--fast-start")){
+                SessionFactoryProvider.skipSchemaUpdate();
+            }else if(args[i].equals("--startup-report")){
+                System.setProperty(SessionFactoryProvider.STARTUP_REPORT_PROPERTY, "true");
+            }else if(args[i].equals("--export") && i + 1 < args.length){
+                exportFile = args[++i];
+            }else if(args[i].equals("--analytics") && i + 1 < args.length){
+                analyticsFile = args[++i];
+            }else if(args[i].equals("--batch") && i + 1 < args.length){
+                scriptFile = args[++i];
+            }else if(args[i].equals("--command") && i + 1 < args.length){
+                commands.add(args[++i]);
+            }else if(args[i].equals("--serve") && i + 1 < args.length && args[i + 1].matches("\\d{1,5}")){
+                port = Integer.parseInt(args[++i]);
+            }else if(args[i].equals("--shards") && i + 1 < args.length){
+                shardUrls.addAll(Arrays.asList(args[++i].split(",")));
+            }else if(args[i].equals("--replica") && i + 1 < args.length){
+                replicaUrl = args[++i];
+            }else if(args[i].equals("--format") && i + 1 < args.length){
+                try{
+                    format = OutputFormat.fromName(args[++i]);
+                }catch(IllegalArgumentException iae){
+                    System.out.printf("%s%n", iae.getMessage());
+                    System.exit(1);
+                }
+            }else{
+                System.out.printf(USAGE);
+                System.exit(1);
+            }
+        }
+
+        if(exportFile != null && analyticsFile != null ||
+                analyticsFile != null && (!shardUrls.isEmpty() || replicaUrl != null)){
+            System.out.printf(USAGE);
+            System.exit(1);
+        }
+
+        String file = exportFile != null ? exportFile : analyticsFile;
+        try{
+            if(exportFile != null){
+                int rows = ColumnarFileWriter.export(openDatabase(shardUrls), Paths.get(exportFile));
+                System.out.printf("Exported %d countries to %s%n", rows, exportFile);
+                System.exit(0);
+            }
+
+            if(scriptFile != null || !commands.isEmpty()){
+                if(scriptFile != null){
+                    try{
+                        commands.addAll(0, BatchRunner.readScript(scriptFile));
+                    }catch(IOException ioe){
+                        System.out.printf("The file %s couldn't be used: %s%n", scriptFile, ioe.getMessage());
+                        System.exit(1);
+                    }
+                }
+                // The commands run in one unit of work of the database, so they see the changes of the commands
+                // before them, and the replica is left alone. A snapshot file holds no yearly indicator values.
+                CountryDAO countryDAO;
+                IndicatorDAO indicatorDAO = analyticsFile == null ? openIndicators(shardUrls) : null;
+                if(analyticsFile != null){
+                    countryDAO = new MappedCountryDAO(MappedCountryFile.open(Paths.get(analyticsFile)));
+                }else{
+                    countryDAO = openDatabase(shardUrls);
+                }
+                System.exit(new BatchRunner(countryDAO, indicatorDAO, analyticsFile != null, format,
+                        System.out).run(commands) ? 0 : 1);
+            }
+
+            // The shards build their own session factories on first use
+            if(analyticsFile == null && shardUrls.isEmpty()){
+                SessionFactoryProvider.startInBackground();
+            }
+
+            if(port >= 0){
+                serve(analyticsFile, openDatabase(shardUrls), replicaUrl, port);
+                return;
+            }
+
+            Prompter prompter;
+            if(analyticsFile != null){
+                prompter = new Prompter(new MetricsCountryDAO(new MappedCountryDAO(
+                        MappedCountryFile.open(Paths.get(analyticsFile))), MetricsRegistry.register("calls")), true);
+            }else{
+                prompter = new Prompter(openDatabase(shardUrls), replicaUrl);
+            }
+            StartupTimings.mark("menu shown");
+            prompter.run();
+        }catch(IOException ioe){
+            System.out.printf("The file %s couldn't be used: %s%n", file, ioe.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // The DAO of the Country table: the one of data/worldbank, or the shards given with --shards
+    private static CountryDAO openDatabase(List<String> shardUrls){
+        if(shardUrls.isEmpty()){
+            return new SimpleCountryDAO();
+        }
+        return ShardedCountryDAO.open(shardUrls, StatisticsMode.DATABASE);
+    }
+
+    // The DAO of the yearly indicator values, which live in the same databases as their countries
+    private static IndicatorDAO openIndicators(List<String> shardUrls){
+        if(shardUrls.isEmpty()){
+            return new SimpleIndicatorDAO();
+        }
+        return ShardedIndicatorDAO.open(shardUrls);
+    }
+
+    // Starts the query server, which keeps the application running until it is stopped. The database is read
+    // through caches shared by all the server threads, and the statistics are calculated over a snapshot of the
+    // table that the threads read without locking, or read from the read replica if one was given.
+    private static void serve(String analyticsFile, CountryDAO database, String replicaUrl, int port)
+            throws IOException{
+        MetricsRegistry metrics = MetricsRegistry.register("http");
+        CountryDAO countryDAO;
+        if(analyticsFile != null){
+            countryDAO = new MetricsCountryDAO(new MappedCountryDAO(
+                    MappedCountryFile.open(Paths.get(analyticsFile))), metrics);
+        }else if(replicaUrl != null){
+            countryDAO = new MetricsCountryDAO(new NameIndexCountryDAO(ReplicaCountryDAO.open(
+                    new CachingCountryDAO(database, CACHE_SIZE), replicaUrl)), metrics);
+        }else{
+            countryDAO = new MetricsCountryDAO(new NameIndexCountryDAO(new CachingCountryDAO(
+                    new SnapshotCountryDAO(database), CACHE_SIZE)), metrics);
+        }
+
+        QueryServer server;
+        try{
+            server = new QueryServer(countryDAO, new InetSocketAddress(port), SERVER_THREADS);
+        }catch(IOException ioe){
+            System.out.printf("The port %d couldn't be used: %s%n", port, ioe.getMessage());
+            System.exit(1);
+            return;
+        }
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        System.out.printf("Serving on http://localhost:%d/ with %d threads%n", server.getPort(), SERVER_THREADS);
     }
 }
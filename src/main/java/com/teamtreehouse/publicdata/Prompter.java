@@ -3,17 +3,75 @@ package com.teamtreehouse.publicdata;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import com.teamtreehouse.publicdata.dao.AsyncCountryDAO;
+import com.teamtreehouse.publicdata.dao.CachingCountryDAO;
+import com.teamtreehouse.publicdata.dao.CountryDAO;
+import com.teamtreehouse.publicdata.dao.CountryFilter;
+import com.teamtreehouse.publicdata.dao.HibernateStatistics;
+import com.teamtreehouse.publicdata.dao.IncrementalStatisticsCountryDAO;
+import com.teamtreehouse.publicdata.dao.MetricsCountryDAO;
+import com.teamtreehouse.publicdata.dao.NameIndexCountryDAO;
+import com.teamtreehouse.publicdata.dao.ReplicaCountryDAO;
 import com.teamtreehouse.publicdata.dao.SimpleCountryDAO;
+import com.teamtreehouse.publicdata.importer.CountryImporter;
+import com.teamtreehouse.publicdata.importer.ImportResult;
+import com.teamtreehouse.publicdata.metrics.MetricsRegistry;
 import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.ColumnStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
 
 public class Prompter {
+    private static final int CACHE_SIZE = 1000;
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    private static final int PAGE_SIZE = 20;
+    private static final int RANKING_SIZE = 10;
+    private static final int SUGGESTION_COUNT = 10;
+
     private BufferedReader bufferedReader;
-    private SimpleCountryDAO simpleCountryDAO;
+    private CountryDAO countryDAO;
+    // Runs the independent queries of a menu option at the same time
+    private AsyncCountryDAO asyncCountryDAO;
+    // In a read-only run the options that change the table aren't offered
+    private boolean readOnly;
 
     public Prompter(){
+        this(new SimpleCountryDAO(), null);
+    }
+
+    // The calls are measured both as the prompter makes them and as they reach the database below the caches.
+    // The name index sits above the cache, so the countries a name search finds are read from it.
+    // The statistics are kept up to date in memory, or with a replica URL they are read from that read replica,
+    // above the cache so every refresh of the replica shows.
+    public Prompter(CountryDAO database, String replicaUrl){
+        this(new MetricsCountryDAO(new NameIndexCountryDAO(replicaUrl == null
+                ? new CachingCountryDAO(new IncrementalStatisticsCountryDAO(measured(database)), CACHE_SIZE)
+                : ReplicaCountryDAO.open(new CachingCountryDAO(measured(database), CACHE_SIZE), replicaUrl)),
+                MetricsRegistry.register("calls")), false);
+    }
+
+    public Prompter(CountryDAO countryDAO, boolean readOnly){
         bufferedReader = new BufferedReader(new InputStreamReader(System.in));
-        simpleCountryDAO = new SimpleCountryDAO();
+        this.countryDAO = countryDAO;
+        this.asyncCountryDAO = new AsyncCountryDAO(countryDAO);
+        this.readOnly = readOnly;
+    }
+
+    private static CountryDAO measured(CountryDAO database){
+        return new MetricsCountryDAO(database, MetricsRegistry.register("database"));
     }
 
     // This method launches the application. It is called by the main method in the Application class.
@@ -23,13 +81,17 @@ public class Prompter {
 
         while(true){
             System.out.printf("%n%n1. View data table%n2. View statistics%n3. Add a country%n");
-            System.out.printf("4. Edit a country%n5. Delete a country%n6. Quit%n%n");
+            System.out.printf("4. Edit a country%n5. Delete a country%n6. Import countries from a file%n");
+            System.out.printf("7. View metrics%n8. Quit%n%n");
             System.out.printf("Choose:  ");
 
             try {
                 choice = Integer.parseInt(bufferedReader.readLine());
-                if(choice < 1 || choice > 6){
-                    System.out.printf("%nThe value you entered is not between the 1-6 range.%n");
+                if(choice < 1 || choice > 8){
+                    System.out.printf("%nThe value you entered is not between the 1-8 range.%n");
+                }else if(readOnly && choice >= 3 && choice <= 6){
+                    System.out.printf("%nThe table can't be changed in a read-only run.%n");
+                    continue;
                 }
 
                 switch(choice){
@@ -49,6 +111,12 @@ public class Prompter {
                         deleteCountry();
                         break;
                     case 6:
+                        importCountries();
+                        break;
+                    case 7:
+                        viewMetrics();
+                        break;
+                    case 8:
                         quitVariable = true;
                 }
 
@@ -67,27 +135,73 @@ public class Prompter {
 
     }
 
-    // Lists all the rows of the Country table
-    private void viewCountries(){
-        System.out.printf("%nCode\t\t\t\tCountry\t\t\t\t\t\t\t\tInternet Users\t\t\t\tLiteracy%n");
-        System.out.printf("-----------------------------------------------------------------------------------------------%n");
-        for(Country country : simpleCountryDAO.fetchAllCountries()){
-            System.out.printf("%-20s", country.getCode());
-            System.out.printf("%-40s", country.getName());
-            if(country.getInternetUsers() == null){
-                System.out.printf("--\t\t\t\t\t\t");
-            }else{
-                System.out.printf("%.2f\t\t\t\t\t", country.getInternetUsers());
-            }
+    // Lists the rows of the Country table, optionally filtered by name. The rows are either streamed from
+    // the database as they are read, or shown one page at a time.
+    private void viewCountries() throws IOException{
+        System.out.printf("%nEnter a part of the country name to filter by (leave blank for all countries):  ");
+        CountryFilter filter = new CountryFilter().withNameContaining(bufferedReader.readLine().trim());
+
+        System.out.printf("%nDo you want to view the table page by page ? (YES/any other value)  ");
+        String response = bufferedReader.readLine().toUpperCase();
 
-            if(country.getAdultLiteracyRate() == null){
-                System.out.printf("--%n");
+        if(response.equals("Y") || response.equals("YES")){
+            viewCountriesByPage(filter);
+        }else{
+            printTableHeader();
+            countryDAO.forEachCountry(filter, this::printCountry);
+        }
+    }
+
+    // Shows the table one page at a time, and lets the user move to the next or the previous page.
+    // The code each shown page started after is kept, so going back doesn't need an offset query.
+    private void viewCountriesByPage(CountryFilter filter) throws IOException{
+        Deque<String> previousPages = new ArrayDeque<>();
+        String afterCode = null;
+
+        while(true){
+            List<Country> page = countryDAO.fetchCountriesPage(filter, afterCode, PAGE_SIZE);
+            printTableHeader();
+            page.forEach(this::printCountry);
+
+            boolean hasNext = page.size() == PAGE_SIZE;
+            System.out.printf("%nPage %d. %s%sany other value = back to the menu:  ", previousPages.size() + 1,
+                    hasNext ? "N = next page, " : "", previousPages.isEmpty() ? "" : "P = previous page, ");
+            String response = bufferedReader.readLine().toUpperCase();
+
+            if(response.equals("N") && hasNext){
+                previousPages.push(afterCode == null ? "" : afterCode);
+                afterCode = page.get(page.size() - 1).getCode();
+            }else if(response.equals("P") && !previousPages.isEmpty()){
+                afterCode = previousPages.pop();
+                afterCode = afterCode.isEmpty() ? null : afterCode;
             }else{
-                System.out.printf("%.2f%n", country.getAdultLiteracyRate());
+                break;
             }
         }
     }
 
+    private void printTableHeader(){
+        System.out.printf("%nCode\t\t\t\tCountry\t\t\t\t\t\t\t\tInternet Users\t\t\t\tLiteracy%n");
+        System.out.printf("-----------------------------------------------------------------------------------------------%n");
+    }
+
+    // Prints one row of the Country table
+    private void printCountry(Country country){
+        System.out.printf("%-20s", country.getCode());
+        System.out.printf("%-40s", country.getName());
+        if(country.getInternetUsers() == null){
+            System.out.printf("--\t\t\t\t\t\t");
+        }else{
+            System.out.printf("%.2f\t\t\t\t\t", country.getInternetUsers());
+        }
+
+        if(country.getAdultLiteracyRate() == null){
+            System.out.printf("--%n");
+        }else{
+            System.out.printf("%.2f%n", country.getAdultLiteracyRate());
+        }
+    }
+
     // This method prompts the user for a fractional number between 0.0 and 100.0.
     private Double promptForPercent(String column, String action) throws IOException, IllegalArgumentException{
         String response;
@@ -147,14 +261,17 @@ public class Prompter {
                     .CountryBuilder(code, countryName).
                     withInternetUsers(internetUsers).
                     withAdultLiteracyRate(adultLiteracy));
-            simpleCountryDAO.addCountry(country);
+            countryDAO.addCountry(country);
     }
 
-    // This method prompts you to put new information for a selected country from the database
+    // This method prompts you to put new information for a selected country from the database.
+    // The edits are applied to the country as it is when they are saved, and applied again if another writer saves
+    // it at the same moment, so neither change is lost.
     private void updateCountry() throws IOException, IllegalArgumentException{
         String response, countryName;
         Country country;
         Double internetUsers, adultLiteracy;
+        Consumer<Country> change = edited -> {};
 
             country = getExistingCountry();
 
@@ -164,21 +281,49 @@ public class Prompter {
 
             if(response.equals("Y") || response.equals("YES")){
                 countryName = getFilteredCountryName();
-                country.setName(countryName);
+                change = edited -> edited.setName(countryName);
             }
 
             internetUsers = promptForPercent("Internet Users", "edit");
             adultLiteracy = promptForPercent("Adult Literacy", "edit");
-            country.setInternetUsers(internetUsers);
-            country.setAdultLiteracyRate(adultLiteracy);
-
-            simpleCountryDAO.updateCountry(country);
+            change = change.andThen(edited -> {
+                edited.setInternetUsers(internetUsers);
+                edited.setAdultLiteracyRate(adultLiteracy);
+            });
+
+            if(countryDAO.modifyCountry(country.getCode(), change) == null){
+                System.out.printf("%nThe country %s was deleted before your changes could be saved.%n",
+                        country.getCode());
+            }
     }
 
-    // This method prompts you for a code of a country you want to remove from the database
+    // This method prompts you for a code of a country you want to remove from the database, until it gets one
+    // that references an existing country. The country is deleted by its code, without being loaded first.
     private void deleteCountry() throws IOException{
-        Country country = getExistingCountry();
-        simpleCountryDAO.deleteCountry(country);
+        while(countryDAO.deleteCountries(Collections.singletonList(getFilteredCountryCode())) == 0){
+            System.out.printf("%nThe country code you've entered doesn't reference a country from the database. Try again.%n");
+        }
+    }
+
+    // This method prompts you for the path of a CSV or World Bank file, and merges the countries it holds into the database.
+    // The batches are committed together in one unit of work, so no reader ever sees half of the file imported.
+    private void importCountries() throws IOException{
+        System.out.printf("%nEnter the path of the file to import:  ");
+        String path = bufferedReader.readLine().trim();
+
+        try{
+            ImportResult result = countryDAO.inUnitOfWork(unitDAO -> {
+                try{
+                    return new CountryImporter(unitDAO, IMPORT_BATCH_SIZE).importFile(Paths.get(path));
+                }catch(IOException ioe){
+                    throw new UncheckedIOException(ioe);
+                }
+            });
+            System.out.printf("%nImported %d rows in %d batches in %.2f seconds (%.0f rows/second).%n",
+                    result.getRows(), result.getBatches(), result.getElapsedSeconds(), result.getRowsPerSecond());
+        }catch(UncheckedIOException uioe){
+            System.out.printf("%nThe file couldn't be imported: %s%n", uioe.getCause().getMessage());
+        }
     }
 
     // Returns a filtered country code that the user inputs.
@@ -207,38 +352,102 @@ public class Prompter {
         return code;
     }
 
-    // This method prompts the user for a country code, until it gets one that returns an existing country from the database
+    // This method prompts the user for a country code or the beginning of a country name, until it gets one that
+    // returns an existing country from the database. A name that several countries start with lists them, so the
+    // user can pick one by its code.
     private Country getExistingCountry() throws IOException{
-        Country country;
         while(true){
-            country = simpleCountryDAO.getCountryByCode(getFilteredCountryCode());
-            if(country != null){
-                break;
+            System.out.printf("%nEnter a country code, or the beginning of a country name:  ");
+            String response = bufferedReader.readLine().trim();
+
+            if(response.matches("[a-zA-Z]{1,3}")){
+                Country country = countryDAO.getCountryByCode(response.toUpperCase());
+                if(country != null){
+                    return country;
+                }
             }
 
-            System.out.printf("%nThe country code you've entered doesn't reference a country from the database. Try again.%n");
+            List<Country> countries = response.isEmpty() ? Collections.emptyList()
+                    : countryDAO.findCountriesByName(response, true, SUGGESTION_COUNT);
+            if(countries.size() == 1){
+                System.out.printf("%nFound %s (%s).%n", countries.get(0).getName(), countries.get(0).getCode());
+                return countries.get(0);
+            }else if(countries.isEmpty()){
+                System.out.printf("%nThe text you've entered doesn't reference a country from the database. Try again.%n");
+            }else{
+                System.out.printf("%nSeveral countries match, enter one of their codes:%n");
+                for(Country country : countries){
+                    System.out.printf("%-8s%s%n", country.getCode(), country.getName());
+                }
+            }
         }
-
-        return country;
     }
 
-    // This method prints out the following statistics: min, max of Internet usage and adult literacy,
-    // and the correlation coefficient between the two columns
+    // This method prints out the following statistics for every numeric column: min, max, mean, standard deviation,
+    // median and 90th percentile, the top and bottom ranking of countries, and the correlation matrix of the columns.
+    // The statistics are gathered in one scan of the table and every ranking in one more, without sorting the table.
+    // The scans are independent, so they are all started at once and run concurrently.
     private void viewStatistics(){
-        Double correlationCoefficient = simpleCountryDAO.getCorrelationCoefficient();
-        Country country = simpleCountryDAO.getCountryWithMaxInternetUsage();
-        System.out.printf("%nCountry with greatest internet usage percent: %s --> %.2f%n",
-                country.getName(), country.getInternetUsers());
-        country = simpleCountryDAO.getCountryWithMinInternetUsage();
-        System.out.printf("%nCountry with least internet usage percent: %s --> %.2f%n",
-                country.getName(), country.getInternetUsers());
-        country = simpleCountryDAO.getCountryWithMaxAdultLiteracy();
-        System.out.printf("%nCountry with greatest adult literacy percent: %s --> %.2f%n",
-                country.getName(), country.getAdultLiteracyRate());
-        country = simpleCountryDAO.getCountryWithMinAdultLiteracy();
-        System.out.printf("%nCountry with least adult literacy percent: %s --> %.2f%n",
-                country.getName(), country.getAdultLiteracyRate());
-        System.out.printf("Correlation coefficient (Internet Usage <-> Adult Literacy): %.2f",
-                correlationCoefficient);
+        CompletableFuture<MultiColumnStatistics> statisticsFuture =
+                asyncCountryDAO.getStatistics(Arrays.asList(CountryColumn.values()));
+        Map<CountryColumn, CompletableFuture<ColumnRanking>> rankings = new EnumMap<>(CountryColumn.class);
+        for(CountryColumn column : CountryColumn.values()){
+            rankings.put(column, asyncCountryDAO.getRanking(column, RANKING_SIZE));
+        }
+        MultiColumnStatistics statistics = AsyncCountryDAO.await(statisticsFuture);
+
+        for(CountryColumn column : statistics.getColumns()){
+            if(statistics.getColumnStatistics(column).getCount() == 0){
+                System.out.printf("%nThere are not enough values in the database to calculate the statistics.%n");
+                return;
+            }
+        }
+
+        for(CountryColumn column : statistics.getColumns()){
+            ColumnStatistics columnStatistics = statistics.getColumnStatistics(column);
+            String label = column.getLabel().toLowerCase();
+            System.out.printf("%nCountry with greatest %s percent: %s --> %.2f%n",
+                    label, columnStatistics.getCountryWithMax().getName(), columnStatistics.getMax());
+            System.out.printf("Country with least %s percent: %s --> %.2f%n",
+                    label, columnStatistics.getCountryWithMin().getName(), columnStatistics.getMin());
+            System.out.printf("Mean: %.2f, standard deviation: %.2f, median: %.2f, 90th percentile: %.2f%n",
+                    columnStatistics.getMean(), columnStatistics.getStandardDeviation(),
+                    statistics.getPercentile(column, 50), statistics.getPercentile(column, 90));
+
+            ColumnRanking ranking = AsyncCountryDAO.await(rankings.get(column));
+            printRanking("Top", column, ranking.getGreatest());
+            printRanking("Bottom", column, ranking.getLeast());
+        }
+
+        System.out.printf("%nCorrelation coefficients:%n%-16s", "");
+        for(CountryColumn column : statistics.getColumns()){
+            System.out.printf("%16s", column.getLabel());
+        }
+        double[][] matrix = statistics.getCorrelationMatrix();
+        for(int i = 0; i < matrix.length; i++){
+            System.out.printf("%n%-16s", statistics.getColumns().get(i).getLabel());
+            for(double coefficient : matrix[i]){
+                System.out.printf("%16.2f", coefficient);
+            }
+        }
+        System.out.printf("%n");
+    }
+
+    // Prints the call counts, rows and latencies of every measured DAO, and the Hibernate statistics.
+    // A read-only run never starts Hibernate, so it has no Hibernate statistics.
+    private void viewMetrics(){
+        for(MetricsRegistry metrics : MetricsRegistry.getRegistered()){
+            System.out.printf("%n%s", metrics.getReport());
+        }
+        if(!readOnly){
+            System.out.printf("%n%s", HibernateStatistics.report());
+        }
+    }
+
+    private void printRanking(String title, CountryColumn column, List<Country> countries){
+        System.out.printf("%s %d countries by %s:%n", title, countries.size(), column.getLabel().toLowerCase());
+        for(int i = 0; i < countries.size(); i++){
+            System.out.printf("%4d. %-32s %8.2f%n", i + 1, countries.get(i).getName(), column.getValue(countries.get(i)));
+        }
     }
 }
@@ -0,0 +1,526 @@
+package com.teamtreehouse.publicdata.batch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import com.teamtreehouse.publicdata.columnar.ColumnarFileWriter;
+import com.teamtreehouse.publicdata.dao.CountryDAO;
+import com.teamtreehouse.publicdata.dao.CountryFilter;
+import com.teamtreehouse.publicdata.dao.IndicatorDAO;
+import com.teamtreehouse.publicdata.importer.CorrectionImporter;
+import com.teamtreehouse.publicdata.importer.CountryImporter;
+import com.teamtreehouse.publicdata.importer.ImportResult;
+import com.teamtreehouse.publicdata.importer.IndicatorImporter;
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.model.IndicatorValue;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.ColumnStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
+
+// Runs a list of commands without prompting, and prints their results in a machine-readable OutputFormat.
+// All the commands run in one unit of work, so they share one session, one connection and the statements it
+// has already prepared, and a script pays for the JVM and the session factory only once. The commands are:
+//  stats [column...]            count, mean, standard deviation, min, max, median and 90th percentile per column
+//  correlation                  the correlation coefficient of every pair of columns
+//  get <code>                   one country
+//  list [name part]             the countries, optionally only those whose name contains the text
+//  search <prefix> [limit]      the countries whose name starts with the prefix, ignoring case
+//  range <column> <min> <max> [limit]  the countries whose value of the column is between min and max
+//  ranking <column> [size]      the countries with the greatest and least values of a column
+//  import <file>                merges a CSV or World Bank file into the table
+//  export <file>                writes the table to a columnar snapshot file
+//  set <column> <value> <code>...  sets a column of the countries to a value, or clears it with the value null
+//  delete <code>...             deletes the countries
+//  delete-empty                 deletes the countries that have no value in any column and no yearly value
+//  correct <file>               applies a code,column,value CSV file of corrections to existing countries
+//  import-indicators <file>     merges the yearly values of a World Bank indicator download
+//  indicator <indicator> <from> <to>  the values of an indicator for every country between two years
+//  history <code> <indicator> <from> <to> [window]  the values of an indicator for one country between two years,
+//                               or their trailing moving average over window years
+//  indicator-correlation <indicator> <indicator> <from> <to>  the correlation of two indicators across the
+//                               countries, for every year between from and to
+// set, delete, delete-empty and correct are set-based updates and deletes that don't load the countries.
+// The indicator commands need the database, so they can't run over a snapshot file, and neither can the commands
+// that change the table: import, set, delete, delete-empty and correct. The yearly values are read and
+// written in transactions of their own, so an import-indicators stays committed even if a later command fails.
+// The columns are named like the Country properties (internetUsers, adultLiteracyRate). A script holds one
+// command per line; blank lines and lines starting with # are skipped, and an argument holding spaces can be
+// put in double quotes. The run stops at the first failing command, and nothing the run changed is committed.
+public class BatchRunner {
+    private static final int DEFAULT_RANKING_SIZE = 10;
+    private static final int DEFAULT_SEARCH_LIMIT = 100;
+    private static final int IMPORT_BATCH_SIZE = 1000;
+
+    private final CountryDAO countryDAO;
+    // The DAO of the yearly indicator values, or null if there are none, e.g. over a snapshot file
+    private final IndicatorDAO indicatorDAO;
+    // Whether the table can't be changed, like over a snapshot file
+    private final boolean readOnly;
+    private final OutputFormat format;
+    private final PrintStream out;
+
+    public BatchRunner(CountryDAO countryDAO, IndicatorDAO indicatorDAO, boolean readOnly, OutputFormat format,
+                       PrintStream out){
+        this.countryDAO = countryDAO;
+        this.indicatorDAO = indicatorDAO;
+        this.readOnly = readOnly;
+        this.format = format;
+        this.out = out;
+    }
+
+    // Reads the commands of a script file, or of the standard input if the path is -
+    public static List<String> readScript(String path) throws IOException{
+        BufferedReader reader = path.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8);
+        List<String> commands = new ArrayList<>();
+        try{
+            String line;
+            while((line = reader.readLine()) != null){
+                commands.add(line);
+            }
+        }finally{
+            if(!path.equals("-")){
+                reader.close();
+            }
+        }
+        return commands;
+    }
+
+    // Runs the commands and prints their results. The commands are all checked before the first one runs.
+    // Returns false if a command was invalid or failed, in which case the error is printed to the standard error.
+    public boolean run(List<String> commandLines){
+        List<List<String>> commands = new ArrayList<>();
+        for(String line : commandLines){
+            String trimmed = line.trim();
+            if(trimmed.isEmpty() || trimmed.startsWith("#")){
+                continue;
+            }
+            try{
+                List<String> command = tokenize(trimmed);
+                command.set(0, command.get(0).toLowerCase());
+                validate(command);
+                commands.add(command);
+            }catch(IllegalArgumentException iae){
+                System.err.printf("Invalid command '%s': %s%n", trimmed, iae.getMessage());
+                return false;
+            }
+        }
+        if(commands.isEmpty()){
+            return true;
+        }
+
+        try{
+            countryDAO.inUnitOfWork(unitDAO -> {
+                for(List<String> command : commands){
+                    out.print(format.format(execute(unitDAO, command)));
+                    if(format == OutputFormat.CSV && command != commands.get(commands.size() - 1)){
+                        out.println();
+                    }
+                }
+                return null;
+            });
+            out.flush();
+            return true;
+        }catch(RuntimeException re){
+            out.flush();
+            System.err.printf("The batch failed, and none of its changes were committed: %s%n", re.getMessage());
+            return false;
+        }
+    }
+
+    private void validate(List<String> command){
+        String verb = command.get(0);
+        int arguments = command.size() - 1;
+        switch(verb){
+            case "stats":
+                command.subList(1, command.size()).forEach(CountryColumn::fromPropertyName);
+                break;
+            case "correlation":
+                expectArguments(verb, arguments, 0, 0);
+                break;
+            case "get":
+            case "export":
+                expectArguments(verb, arguments, 1, 1);
+                break;
+            case "import":
+            case "correct":
+                expectWritable(verb);
+                expectArguments(verb, arguments, 1, 1);
+                break;
+            case "delete-empty":
+                expectWritable(verb);
+                expectArguments(verb, arguments, 0, 0);
+                break;
+            case "delete":
+                expectWritable(verb);
+                expectArguments(verb, arguments, 1, Integer.MAX_VALUE);
+                break;
+            case "set":
+                expectWritable(verb);
+                expectArguments(verb, arguments, 3, Integer.MAX_VALUE);
+                CountryColumn.fromPropertyName(command.get(1));
+                parseValue(command.get(2));
+                break;
+            case "list":
+                expectArguments(verb, arguments, 0, 1);
+                break;
+            case "search":
+                expectArguments(verb, arguments, 1, 2);
+                if(arguments == 2){
+                    parseSize(command.get(2));
+                }
+                break;
+            case "range":
+                expectArguments(verb, arguments, 3, 4);
+                CountryColumn.fromPropertyName(command.get(1));
+                parseBound(command.get(2));
+                parseBound(command.get(3));
+                if(arguments == 4){
+                    parseSize(command.get(4));
+                }
+                break;
+            case "ranking":
+                expectArguments(verb, arguments, 1, 2);
+                CountryColumn.fromPropertyName(command.get(1));
+                if(arguments == 2){
+                    parseSize(command.get(2));
+                }
+                break;
+            case "import-indicators":
+                expectIndicators(verb);
+                expectArguments(verb, arguments, 1, 1);
+                break;
+            case "indicator":
+                expectIndicators(verb);
+                expectArguments(verb, arguments, 3, 3);
+                parseYear(command.get(2));
+                parseYear(command.get(3));
+                break;
+            case "history":
+                expectIndicators(verb);
+                expectArguments(verb, arguments, 4, 5);
+                parseYear(command.get(3));
+                parseYear(command.get(4));
+                if(arguments == 5){
+                    parseSize(command.get(5));
+                }
+                break;
+            case "indicator-correlation":
+                expectIndicators(verb);
+                expectArguments(verb, arguments, 4, 4);
+                parseYear(command.get(3));
+                parseYear(command.get(4));
+                break;
+            default:
+                throw new IllegalArgumentException("There is no command named " + verb + ".");
+        }
+    }
+
+    private static void expectArguments(String verb, int arguments, int min, int max){
+        if(arguments < min || arguments > max){
+            String expected = min == max ? "" + min : max == Integer.MAX_VALUE ? "at least " + min : min + " to " + max;
+            throw new IllegalArgumentException(verb + " takes " + expected + " arguments, not " + arguments + ".");
+        }
+    }
+
+    private void expectIndicators(String verb){
+        if(indicatorDAO == null){
+            throw new IllegalArgumentException(verb + " needs the yearly indicator values of the database.");
+        }
+    }
+
+    private void expectWritable(String verb){
+        if(readOnly){
+            throw new IllegalArgumentException(verb + " changes the table, which can't be changed in a read-only run.");
+        }
+    }
+
+    private ResultTable execute(CountryDAO dao, List<String> command){
+        String text = String.join(" ", command);
+        switch(command.get(0)){
+            case "stats":
+                return stats(dao, text, command.subList(1, command.size()));
+            case "correlation":
+                return correlation(dao, text);
+            case "get":
+                ResultTable country = countryTable(text);
+                addCountry(country, dao.getCountryByCode(command.get(1).toUpperCase()));
+                return country;
+            case "list":
+                ResultTable countries = countryTable(text);
+                CountryFilter filter = new CountryFilter().withNameContaining(command.size() > 1 ? command.get(1) : "");
+                dao.forEachCountry(filter, found -> addCountry(countries, found));
+                return countries;
+            case "search":
+                ResultTable found = countryTable(text);
+                dao.findCountriesByName(command.get(1), true, command.size() > 2 ? parseSize(command.get(2))
+                        : DEFAULT_SEARCH_LIMIT).forEach(match -> addCountry(found, match));
+                return found;
+            case "range":
+                ResultTable inRange = countryTable(text);
+                dao.findCountriesInRange(CountryColumn.fromPropertyName(command.get(1)), parseBound(command.get(2)),
+                        parseBound(command.get(3)), command.size() > 4 ? parseSize(command.get(4)) : DEFAULT_SEARCH_LIMIT)
+                        .forEach(match -> addCountry(inRange, match));
+                return inRange;
+            case "ranking":
+                return ranking(dao, text, CountryColumn.fromPropertyName(command.get(1)),
+                        command.size() > 2 ? parseSize(command.get(2)) : DEFAULT_RANKING_SIZE);
+            case "import":
+                return importFile(dao, text, command.get(1));
+            case "set":
+                return changed(text, dao.updateColumn(CountryColumn.fromPropertyName(command.get(1)),
+                        parseValue(command.get(2)), upperCase(command.subList(3, command.size()))));
+            case "delete":
+                return changed(text, dao.deleteCountries(upperCase(command.subList(1, command.size()))));
+            case "delete-empty":
+                return changed(text, dao.deleteCountries(dao.fetchCodesWithoutValues()));
+            case "correct":
+                return correct(dao, text, command.get(1));
+            case "import-indicators":
+                return importIndicators(text, command.get(1));
+            case "indicator":
+                return indicator(text, command.get(1), parseYear(command.get(2)), parseYear(command.get(3)));
+            case "history":
+                return history(text, command.get(1).toUpperCase(), command.get(2), parseYear(command.get(3)),
+                        parseYear(command.get(4)), command.size() > 5 ? parseSize(command.get(5)) : 0);
+            case "indicator-correlation":
+                return yearly(new ResultTable(text, "year", "coefficient"), indicatorDAO.getCorrelationByYear(
+                        command.get(1), command.get(2), parseYear(command.get(3)), parseYear(command.get(4))));
+            case "export":
+                return exportFile(dao, text, command.get(1));
+            default:
+                throw new IllegalStateException("The command " + command.get(0) + " wasn't validated.");
+        }
+    }
+
+    private static ResultTable stats(CountryDAO dao, String text, List<String> columnNames){
+        List<CountryColumn> columns = new ArrayList<>();
+        for(String name : columnNames){
+            columns.add(CountryColumn.fromPropertyName(name));
+        }
+        if(columns.isEmpty()){
+            columns.addAll(Arrays.asList(CountryColumn.values()));
+        }
+
+        MultiColumnStatistics statistics = dao.getStatistics(columns);
+        ResultTable table = new ResultTable(text, "column", "count", "mean", "standardDeviation",
+                "min", "minCode", "max", "maxCode", "median", "p90");
+        for(CountryColumn column : columns){
+            ColumnStatistics columnStatistics = statistics.getColumnStatistics(column);
+            boolean empty = columnStatistics.getCount() == 0;
+            table.addRow(column.getPropertyName(), columnStatistics.getCount(),
+                    columnStatistics.getMean(), columnStatistics.getStandardDeviation(),
+                    empty ? null : columnStatistics.getMin(),
+                    empty ? null : columnStatistics.getCountryWithMin().getCode(),
+                    empty ? null : columnStatistics.getMax(),
+                    empty ? null : columnStatistics.getCountryWithMax().getCode(),
+                    statistics.getPercentile(column, 50), statistics.getPercentile(column, 90));
+        }
+        return table;
+    }
+
+    private static ResultTable correlation(CountryDAO dao, String text){
+        MultiColumnStatistics statistics = dao.getStatistics(Arrays.asList(CountryColumn.values()));
+        ResultTable table = new ResultTable(text, "firstColumn", "secondColumn", "count", "coefficient");
+        List<CountryColumn> columns = statistics.getColumns();
+        for(int i = 0; i < columns.size(); i++){
+            for(int j = i + 1; j < columns.size(); j++){
+                table.addRow(columns.get(i).getPropertyName(), columns.get(j).getPropertyName(),
+                        statistics.getCorrelation(columns.get(i), columns.get(j)).getCount(),
+                        statistics.getCorrelation(columns.get(i), columns.get(j)).getCorrelationCoefficient());
+            }
+        }
+        return table;
+    }
+
+    private static ResultTable ranking(CountryDAO dao, String text, CountryColumn column, int size){
+        ColumnRanking ranking = dao.getRanking(column, size);
+        ResultTable table = new ResultTable(text, "end", "rank", "code", "name", column.getPropertyName());
+        addRanking(table, "greatest", column, ranking.getGreatest());
+        addRanking(table, "least", column, ranking.getLeast());
+        return table;
+    }
+
+    private static void addRanking(ResultTable table, String end, CountryColumn column, List<Country> countries){
+        for(int i = 0; i < countries.size(); i++){
+            Country country = countries.get(i);
+            table.addRow(end, i + 1, country.getCode(), country.getName(), column.getValue(country));
+        }
+    }
+
+    private static ResultTable importFile(CountryDAO dao, String text, String path){
+        try{
+            ImportResult result = new CountryImporter(dao, IMPORT_BATCH_SIZE).importFile(Paths.get(path));
+            return new ResultTable(text, "rows", "batches", "seconds")
+                    .addRow(result.getRows(), result.getBatches(), result.getElapsedSeconds());
+        }catch(IOException ioe){
+            throw new UncheckedIOException("The file " + path + " couldn't be imported: " + ioe.getMessage(), ioe);
+        }
+    }
+
+    private static ResultTable correct(CountryDAO dao, String text, String path){
+        try{
+            ImportResult result = new CorrectionImporter(dao, IMPORT_BATCH_SIZE).importFile(Paths.get(path));
+            return new ResultTable(text, "rows", "batches", "seconds")
+                    .addRow(result.getRows(), result.getBatches(), result.getElapsedSeconds());
+        }catch(IOException ioe){
+            throw new UncheckedIOException("The corrections of " + path + " couldn't be applied: " + ioe.getMessage(), ioe);
+        }
+    }
+
+    private ResultTable importIndicators(String text, String path){
+        try{
+            ImportResult result = new IndicatorImporter(indicatorDAO, IMPORT_BATCH_SIZE).importFile(Paths.get(path));
+            return new ResultTable(text, "rows", "batches", "seconds")
+                    .addRow(result.getRows(), result.getBatches(), result.getElapsedSeconds());
+        }catch(IOException ioe){
+            throw new UncheckedIOException("The file " + path + " couldn't be imported: " + ioe.getMessage(), ioe);
+        }
+    }
+
+    private ResultTable indicator(String text, String indicator, int fromYear, int toYear){
+        ResultTable table = new ResultTable(text, "year", "code", "value");
+        for(IndicatorValue value : indicatorDAO.getValues(indicator, fromYear, toYear)){
+            table.addRow(value.getYear(), value.getCountryCode(), value.getValue());
+        }
+        return table;
+    }
+
+    // The values of one country, or their moving average if the window is at least 1
+    private ResultTable history(String text, String code, String indicator, int fromYear, int toYear, int window){
+        if(window > 0){
+            return yearly(new ResultTable(text, "year", "movingAverage"),
+                    indicatorDAO.getMovingAverage(code, indicator, fromYear, toYear, window));
+        }
+        ResultTable table = new ResultTable(text, "year", "value");
+        for(IndicatorValue value : indicatorDAO.getValues(code, indicator, fromYear, toYear)){
+            table.addRow(value.getYear(), value.getValue());
+        }
+        return table;
+    }
+
+    private static ResultTable yearly(ResultTable table, SortedMap<Integer, Double> valuesByYear){
+        for(Map.Entry<Integer, Double> value : valuesByYear.entrySet()){
+            table.addRow(value.getKey(), value.getValue());
+        }
+        return table;
+    }
+
+    private static ResultTable changed(String text, int rows){
+        return new ResultTable(text, "rows").addRow(rows);
+    }
+
+    private static List<String> upperCase(List<String> codes){
+        List<String> upperCase = new ArrayList<>(codes.size());
+        for(String code : codes){
+            upperCase.add(code.toUpperCase());
+        }
+        return upperCase;
+    }
+
+    // A value of the set command: a number, or null to clear the column
+    private static Double parseValue(String value){
+        if(value.equalsIgnoreCase("null")){
+            return null;
+        }
+        try{
+            return Double.parseDouble(value);
+        }catch(NumberFormatException nfe){
+            throw new IllegalArgumentException("The value must be a number or null, not " + value + ".");
+        }
+    }
+
+    private static ResultTable exportFile(CountryDAO dao, String text, String path){
+        try{
+            return new ResultTable(text, "rows", "file")
+                    .addRow(ColumnarFileWriter.export(dao, Paths.get(path)), path);
+        }catch(IOException ioe){
+            throw new UncheckedIOException("The file " + path + " couldn't be written: " + ioe.getMessage(), ioe);
+        }
+    }
+
+    private static ResultTable countryTable(String text){
+        return new ResultTable(text, "code", "name", CountryColumn.INTERNET_USERS.getPropertyName(),
+                CountryColumn.ADULT_LITERACY_RATE.getPropertyName());
+    }
+
+    private static void addCountry(ResultTable table, Country country){
+        if(country != null){
+            table.addRow(country.getCode(), country.getName(), country.getInternetUsers(), country.getAdultLiteracyRate());
+        }
+    }
+
+    private static int parseSize(String size){
+        try{
+            int parsed = Integer.parseInt(size);
+            if(parsed < 1){
+                throw new IllegalArgumentException("The size must be at least 1, not " + size + ".");
+            }
+            return parsed;
+        }catch(NumberFormatException nfe){
+            throw new IllegalArgumentException("The size must be a whole number, not " + size + ".");
+        }
+    }
+
+    private static int parseYear(String year){
+        try{
+            return Integer.parseInt(year);
+        }catch(NumberFormatException nfe){
+            throw new IllegalArgumentException("The year must be a whole number, not " + year + ".");
+        }
+    }
+
+    private static double parseBound(String bound){
+        try{
+            return Double.parseDouble(bound);
+        }catch(NumberFormatException nfe){
+            throw new IllegalArgumentException("The range bounds must be numbers, not " + bound + ".");
+        }
+    }
+
+    // Splits a command on whitespace, keeping the text between double quotes together
+    static List<String> tokenize(String line){
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = null;
+        boolean quoted = false;
+        for(int i = 0; i < line.length(); i++){
+            char c = line.charAt(i);
+            if(c == '"'){
+                quoted = !quoted;
+                if(token == null){
+                    token = new StringBuilder();
+                }
+            }else if(Character.isWhitespace(c) && !quoted){
+                if(token != null){
+                    tokens.add(token.toString());
+                    token = null;
+                }
+            }else{
+                if(token == null){
+                    token = new StringBuilder();
+                }
+                token.append(c);
+            }
+        }
+        if(quoted){
+            throw new IllegalArgumentException("A quote isn't closed.");
+        }
+        if(token != null){
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,67 @@
+package com.teamtreehouse.publicdata.batch;
+
+import java.util.List;
+
+import com.teamtreehouse.publicdata.json.JsonWriter;
+
+// How the results of a batch run are printed:
+//  - CSV prints a header line and one line per row for every command, with a blank line between commands
+//  - JSON prints one object per command and line (JSON Lines): {"command": ..., "rows": [{column: value, ...}]}
+public enum OutputFormat {
+    CSV, JSON;
+
+    // Finds a format by name, ignoring the case
+    public static OutputFormat fromName(String name){
+        for(OutputFormat format : values()){
+            if(format.name().equalsIgnoreCase(name)){
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("The output format must be csv or json, not " + name + ".");
+    }
+
+    // Formats a table, ending with a line break
+    public String format(ResultTable table){
+        return this == CSV ? formatCsv(table) : formatJson(table);
+    }
+
+    private static String formatCsv(ResultTable table){
+        StringBuilder csv = new StringBuilder();
+        appendCsvLine(csv, table.getColumns());
+        for(List<Object> row : table.getRows()){
+            appendCsvLine(csv, row);
+        }
+        return csv.toString();
+    }
+
+    private static void appendCsvLine(StringBuilder csv, List<?> values){
+        for(int i = 0; i < values.size(); i++){
+            if(i > 0){
+                csv.append(',');
+            }
+            Object value = values.get(i);
+            if(value instanceof Double && ((Double) value).isNaN()){
+                continue;
+            }
+            String text = value == null ? "" : value.toString();
+            if(text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")){
+                csv.append('"').append(text.replace("\"", "\"\"")).append('"');
+            }else{
+                csv.append(text);
+            }
+        }
+        csv.append(System.lineSeparator());
+    }
+
+    private static String formatJson(ResultTable table){
+        JsonWriter json = new JsonWriter().beginObject().member("command", table.getCommand()).name("rows").beginArray();
+        for(List<Object> row : table.getRows()){
+            json.beginObject();
+            for(int i = 0; i < row.size(); i++){
+                json.member(table.getColumns().get(i), row.get(i));
+            }
+            json.endObject();
+        }
+        return json.endArray().endObject() + System.lineSeparator();
+    }
+}
@@ -0,0 +1,38 @@
+package com.teamtreehouse.publicdata.batch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// The result of one batch command: named columns and rows of values. A value is a String, a Number or null.
+public class ResultTable {
+    private final String command;
+    private final List<String> columns;
+    private final List<List<Object>> rows = new ArrayList<>();
+
+    public ResultTable(String command, String... columns){
+        this.command = command;
+        this.columns = Collections.unmodifiableList(Arrays.asList(columns));
+    }
+
+    public ResultTable addRow(Object... values){
+        if(values.length != columns.size()){
+            throw new IllegalArgumentException("A row of " + command + " must have " + columns.size() + " values.");
+        }
+        rows.add(Collections.unmodifiableList(Arrays.asList(values)));
+        return this;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public List<List<Object>> getRows() {
+        return Collections.unmodifiableList(rows);
+    }
+}
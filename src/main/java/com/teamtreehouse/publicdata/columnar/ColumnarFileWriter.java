@@ -0,0 +1,144 @@
+package com.teamtreehouse.publicdata.columnar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.teamtreehouse.publicdata.dao.CountryDAO;
+import com.teamtreehouse.publicdata.dao.CountryFilter;
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+
+// Writes the Country table to a columnar file (see ColumnarLayout) that MappedCountryFile reads back.
+// The rows are collected into primitive arrays, one per column, and the file is written through a mapped
+// buffer to a temporary file that replaces the target once it is complete, so a reader never maps half a file.
+public class ColumnarFileWriter {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final CountryColumn[] columns = CountryColumn.values();
+    private String[] codes = new String[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private double[][] values = new double[columns.length][INITIAL_CAPACITY];
+    private long[][] present = new long[columns.length][(INITIAL_CAPACITY + 63) >>> 6];
+    private int size;
+    // The length of the longest code and name added
+    private int codeWidth;
+    private int nameWidth;
+
+    // Streams every country of the DAO into a columnar file and returns the number of rows written
+    public static int export(CountryDAO countryDAO, Path path) throws IOException{
+        ColumnarFileWriter writer = new ColumnarFileWriter();
+        countryDAO.forEachCountry(new CountryFilter(), writer::add);
+        writer.write(path);
+        return writer.size;
+    }
+
+    // Adds a country. The countries must be added in code order, the order CountryDAO.forEachCountry streams them in.
+    public void add(Country country){
+        String code = country.getCode();
+        if(size > 0 && codes[size - 1].compareTo(code) >= 0){
+            throw new IllegalArgumentException("The countries must be added in code order, but " + code +
+                    " came after " + codes[size - 1] + ".");
+        }
+        if(size == codes.length){
+            grow();
+        }
+
+        codes[size] = code;
+        names[size] = country.getName() == null ? "" : country.getName();
+        codeWidth = Math.max(codeWidth, code.length());
+        nameWidth = Math.max(nameWidth, names[size].length());
+        for(int column = 0; column < columns.length; column++){
+            Double value = columns[column].getValue(country);
+            if(value != null){
+                values[column][size] = value;
+                present[column][size >>> 6] |= 1L << size;
+            }
+        }
+        size++;
+    }
+
+    // Writes the added countries to the file, replacing it if it exists
+    public void write(Path path) throws IOException{
+        List<String> columnNames = new ArrayList<>();
+        for(CountryColumn column : columns){
+            columnNames.add(column.getPropertyName());
+        }
+        ColumnarLayout layout = new ColumnarLayout(size, codeWidth, nameWidth, columnNames);
+        if(layout.getFileSize() > Integer.MAX_VALUE){
+            throw new IOException("The table is too large to be mapped as a single file.");
+        }
+
+        Path absolute = path.toAbsolutePath();
+        Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try{
+            try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, layout.getFileSize());
+                writeHeader(buffer, columnNames);
+                writeText(buffer, layout);
+                for(int column = 0; column < columns.length; column++){
+                    buffer.position((int) layout.getValuesOffset(column));
+                    buffer.asDoubleBuffer().put(values[column], 0, size);
+                    buffer.position((int) layout.getPresentOffset(column));
+                    buffer.asLongBuffer().put(present[column], 0, layout.getBitmapWords());
+                }
+                buffer.force();
+            }
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }finally{
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void writeHeader(ByteBuffer buffer, List<String> columnNames){
+        buffer.putInt(ColumnarLayout.MAGIC);
+        buffer.putInt(ColumnarLayout.VERSION);
+        buffer.putInt(size);
+        buffer.putInt(codeWidth);
+        buffer.putInt(nameWidth);
+        buffer.putInt(columnNames.size());
+        for(String name : columnNames){
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private void writeText(ByteBuffer buffer, ColumnarLayout layout){
+        buffer.position((int) layout.getTextOffset());
+        CharBuffer text = buffer.asCharBuffer();
+        for(int row = 0; row < size; row++){
+            putPadded(text, codes[row], codeWidth);
+            putPadded(text, names[row], nameWidth);
+        }
+    }
+
+    // Writes the text in exactly width chars, padded with '\0'
+    private static void putPadded(CharBuffer text, String value, int width){
+        text.put(value);
+        for(int i = value.length(); i < width; i++){
+            text.put('\0');
+        }
+    }
+
+    private void grow(){
+        int capacity = codes.length * 2;
+        codes = Arrays.copyOf(codes, capacity);
+        names = Arrays.copyOf(names, capacity);
+        for(int column = 0; column < columns.length; column++){
+            values[column] = Arrays.copyOf(values[column], capacity);
+            present[column] = Arrays.copyOf(present[column], (capacity + 63) >>> 6);
+        }
+    }
+}
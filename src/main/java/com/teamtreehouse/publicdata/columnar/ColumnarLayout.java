@@ -0,0 +1,81 @@
+package com.teamtreehouse.publicdata.columnar;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// The layout of a columnar country file. All numbers are big-endian.
+//  - header: magic, version, row count, code width, name width, column count, then every column as a short length
+//    and its UTF-8 property name, padded to a multiple of 8 bytes
+//  - text: for every row, the code in code width chars and the name in name width chars (UTF-16),
+//    padded with '\0' and the section padded to a multiple of 8 bytes
+//  - one section per column: the double value of every row, then the null bitmap as longs (bit set = value present)
+// The widths are those of the longest code and name of the table, so no value is cut.
+// The rows are sorted by code, so a code is found by binary search over the text section.
+final class ColumnarLayout {
+    static final int MAGIC = 0x43545259;
+    static final int VERSION = 2;
+    // The number of ints the header starts with, before the column names
+    static final int HEADER_INTS = 6;
+
+    private final int rowCount;
+    private final int codeWidth;
+    private final int nameWidth;
+    private final int columnCount;
+    private final long headerSize;
+
+    ColumnarLayout(int rowCount, int codeWidth, int nameWidth, List<String> columnNames){
+        this.rowCount = rowCount;
+        this.codeWidth = codeWidth;
+        this.nameWidth = nameWidth;
+        this.columnCount = columnNames.size();
+        long size = HEADER_INTS * Integer.BYTES;
+        for(String name : columnNames){
+            size += Short.BYTES + name.getBytes(StandardCharsets.UTF_8).length;
+        }
+        headerSize = align(size);
+    }
+
+    long getHeaderSize() {
+        return headerSize;
+    }
+
+    int getCodeWidth() {
+        return codeWidth;
+    }
+
+    int getNameWidth() {
+        return nameWidth;
+    }
+
+    int getRowTextWidth() {
+        return codeWidth + nameWidth;
+    }
+
+    long getTextOffset() {
+        return headerSize;
+    }
+
+    long getValuesOffset(int column) {
+        return align(headerSize + (long) rowCount * getRowTextWidth() * Character.BYTES) + column * getColumnSize();
+    }
+
+    long getPresentOffset(int column) {
+        return getValuesOffset(column) + (long) rowCount * Double.BYTES;
+    }
+
+    int getBitmapWords() {
+        return (rowCount + 63) >>> 6;
+    }
+
+    long getFileSize() {
+        return getValuesOffset(columnCount);
+    }
+
+    private long getColumnSize(){
+        return (long) rowCount * Double.BYTES + (long) getBitmapWords() * Long.BYTES;
+    }
+
+    private static long align(long offset){
+        return (offset + 7) & ~7L;
+    }
+}
@@ -0,0 +1,344 @@
+package com.teamtreehouse.publicdata.columnar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.ColumnStatistics;
+import com.teamtreehouse.publicdata.stats.CorrelationStatistics;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
+import com.teamtreehouse.publicdata.stats.QuantileSketch;
+
+// A read-only view of a columnar country file written by ColumnarFileWriter, memory-mapped with
+// FileChannel.map. Nothing is copied when the file is opened: the values are read straight from the mapped
+// buffer by the scans, and the operating system pages the file in as it is touched.
+// The columns of CountryColumn that the file doesn't hold read as null.
+public class MappedCountryFile {
+    private final int size;
+    // The chars every row takes in the text section for its code and its name
+    private final int codeWidth;
+    private final int nameWidth;
+    private final CharBuffer text;
+    // The values and null bitmap of every CountryColumn, by ordinal, or null if the file doesn't hold it
+    private final DoubleBuffer[] values;
+    private final LongBuffer[] present;
+
+    private MappedCountryFile(int size, int codeWidth, int nameWidth, CharBuffer text, DoubleBuffer[] values,
+                              LongBuffer[] present){
+        this.size = size;
+        this.codeWidth = codeWidth;
+        this.nameWidth = nameWidth;
+        this.text = text;
+        this.values = values;
+        this.present = present;
+    }
+
+    public static MappedCountryFile open(Path path) throws IOException{
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            if(channel.size() > Integer.MAX_VALUE){
+                throw new IOException("The file " + path + " is too large to be mapped.");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if(buffer.remaining() < ColumnarLayout.HEADER_INTS * Integer.BYTES || buffer.getInt() != ColumnarLayout.MAGIC){
+            throw new IOException("The file " + path + " isn't a columnar country file.");
+        }
+        int version = buffer.getInt();
+        if(version != ColumnarLayout.VERSION){
+            throw new IOException("The file " + path + " has version " + version + ", but only version " +
+                    ColumnarLayout.VERSION + " can be read.");
+        }
+        int size = buffer.getInt();
+        int codeWidth = buffer.getInt();
+        int nameWidth = buffer.getInt();
+        int columnCount = buffer.getInt();
+        List<String> columnNames = new ArrayList<>(columnCount);
+        for(int i = 0; i < columnCount; i++){
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            columnNames.add(new String(name, StandardCharsets.UTF_8));
+        }
+
+        ColumnarLayout layout = new ColumnarLayout(size, codeWidth, nameWidth, columnNames);
+        if(buffer.capacity() < layout.getFileSize()){
+            throw new IOException("The file " + path + " is truncated.");
+        }
+
+        CharBuffer text = slice(buffer, layout.getTextOffset()).asCharBuffer();
+        DoubleBuffer[] values = new DoubleBuffer[CountryColumn.values().length];
+        LongBuffer[] present = new LongBuffer[values.length];
+        for(CountryColumn column : CountryColumn.values()){
+            int index = columnNames.indexOf(column.getPropertyName());
+            if(index >= 0){
+                values[column.ordinal()] = slice(buffer, layout.getValuesOffset(index)).asDoubleBuffer();
+                present[column.ordinal()] = slice(buffer, layout.getPresentOffset(index)).asLongBuffer();
+            }
+        }
+
+        return new MappedCountryFile(size, codeWidth, nameWidth, text, values, present);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Finds the row of a code. If it isn't there, returns (-(insertion point) - 1) like Arrays.binarySearch
+    public int indexOf(String code){
+        int low = 0;
+        int high = size - 1;
+        while(low <= high){
+            int middle = (low + high) >>> 1;
+            int comparison = getCode(middle).compareTo(code);
+            if(comparison < 0){
+                low = middle + 1;
+            }else if(comparison > 0){
+                high = middle - 1;
+            }else{
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    public String getCode(int row){
+        return readPadded(row * (codeWidth + nameWidth), codeWidth);
+    }
+
+    public String getName(int row){
+        return readPadded(row * (codeWidth + nameWidth) + codeWidth, nameWidth);
+    }
+
+    // Returns the value a row holds for the column, or null if it has no value
+    public Double getValue(CountryColumn column, int row){
+        return isPresent(column, row) ? values[column.ordinal()].get(row) : null;
+    }
+
+    public Country getCountry(int row){
+        return new Country(new Country
+                .CountryBuilder(getCode(row), getName(row))
+                .withInternetUsers(getValue(CountryColumn.INTERNET_USERS, row))
+                .withAdultLiteracyRate(getValue(CountryColumn.ADULT_LITERACY_RATE, row)));
+    }
+
+    // Gathers the statistics of two columns and their correlation in one pass over the mapped columns.
+    // Only the countries holding the min and max values are read as objects.
+    public CountryStatistics getStatistics(CountryColumn firstColumn, CountryColumn secondColumn){
+        return new CountryStatistics(firstColumn, secondColumn, getColumnStatistics(firstColumn),
+                getColumnStatistics(secondColumn), getCorrelation(firstColumn, secondColumn));
+    }
+
+    // Gathers the statistics of any number of columns and their correlation matrix with one pass over the mapped
+    // values of every column and one over every pair of them. Only the countries holding a min or max are read.
+    public MultiColumnStatistics getStatistics(List<CountryColumn> columns){
+        MultiColumnStatistics statistics = new MultiColumnStatistics(columns);
+        for(CountryColumn column : columns){
+            statistics.setColumn(column, getColumnStatistics(column), getSketch(column));
+        }
+        for(int i = 0; i < columns.size(); i++){
+            CountryColumn first = columns.get(i);
+            for(int j = i + 1; j < columns.size(); j++){
+                CountryColumn second = columns.get(j);
+                statistics.setCorrelation(first, second, getCorrelation(first, second));
+            }
+        }
+        return statistics;
+    }
+
+    // Gathers the countries with the greatest and least values of a column, ranking the rows by their index and
+    // mapped value. Only the countries of the rows that made it to either end are read.
+    public ColumnRanking getRanking(CountryColumn column, int size){
+        ColumnRanking ranking = new ColumnRanking(column, size);
+        if(values[column.ordinal()] == null){
+            return ranking;
+        }
+        int[] greatest = rankRows(column, size, true);
+        int[] least = rankRows(column, size, false);
+
+        // A row can be at both ends of a small file, and must only be added once
+        int[] rows = Arrays.copyOf(greatest, greatest.length + least.length);
+        System.arraycopy(least, 0, rows, greatest.length, least.length);
+        Arrays.sort(rows);
+        for(int i = 0; i < rows.length; i++){
+            if(i == 0 || rows[i] != rows[i - 1]){
+                ranking.add(getCountry(rows[i]));
+            }
+        }
+        return ranking;
+    }
+
+    // Gathers the statistics of one column in one pass over its mapped values
+    public ColumnStatistics getColumnStatistics(CountryColumn column){
+        DoubleBuffer columnValues = values[column.ordinal()];
+        if(columnValues == null){
+            return new ColumnStatistics();
+        }
+
+        long count = 0;
+        double mean = 0.0;
+        double sumOfSquaredDeviations = 0.0;
+        int minRow = -1;
+        int maxRow = -1;
+        double min = Double.NaN;
+        double max = Double.NaN;
+
+        for(int row = 0; row < size; row++){
+            if(!isPresent(column, row)){
+                continue;
+            }
+            double value = columnValues.get(row);
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            sumOfSquaredDeviations += delta * (value - mean);
+
+            if(minRow < 0 || value < min){
+                minRow = row;
+                min = value;
+            }
+            if(maxRow < 0 || value > max){
+                maxRow = row;
+                max = value;
+            }
+        }
+
+        if(count == 0){
+            return new ColumnStatistics();
+        }
+
+        return new ColumnStatistics(count, mean, sumOfSquaredDeviations, getCountry(minRow), min, getCountry(maxRow), max);
+    }
+
+    private CorrelationStatistics getCorrelation(CountryColumn firstColumn, CountryColumn secondColumn){
+        CorrelationStatistics correlation = new CorrelationStatistics();
+        DoubleBuffer first = values[firstColumn.ordinal()];
+        DoubleBuffer second = values[secondColumn.ordinal()];
+        if(first != null && second != null){
+            for(int row = 0; row < size; row++){
+                if(isPresent(firstColumn, row) && isPresent(secondColumn, row)){
+                    correlation.add(first.get(row), second.get(row));
+                }
+            }
+        }
+        return correlation;
+    }
+
+    private QuantileSketch getSketch(CountryColumn column){
+        QuantileSketch sketch = new QuantileSketch();
+        DoubleBuffer columnValues = values[column.ordinal()];
+        if(columnValues != null){
+            for(int row = 0; row < size; row++){
+                if(isPresent(column, row)){
+                    sketch.add(columnValues.get(row));
+                }
+            }
+        }
+        return sketch;
+    }
+
+    // Finds the rows holding the count greatest (or least) values with a binary heap of row indexes whose root is
+    // the kept row that ranks last, like CountrySnapshot does over its arrays. The rows are in code order, so
+    // between equal values the lower row, holding the lower code, ranks first.
+    private int[] rankRows(CountryColumn column, int count, boolean greatest){
+        DoubleBuffer columnValues = values[column.ordinal()];
+        int[] heap = new int[Math.min(count, size)];
+        int kept = 0;
+        for(int row = 0; row < size; row++){
+            if(!isPresent(column, row)){
+                continue;
+            }
+            if(kept < heap.length){
+                heap[kept] = row;
+                siftUp(heap, kept++, columnValues, greatest);
+            }else if(kept > 0 && ranksBefore(columnValues, row, heap[0], greatest)){
+                heap[0] = row;
+                siftDown(heap, kept, columnValues, greatest);
+            }
+        }
+        return Arrays.copyOf(heap, kept);
+    }
+
+    private static void siftUp(int[] heap, int position, DoubleBuffer values, boolean greatest){
+        while(position > 0){
+            int parent = (position - 1) >>> 1;
+            if(!ranksBefore(values, heap[parent], heap[position], greatest)){
+                return;
+            }
+            swap(heap, parent, position);
+            position = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int kept, DoubleBuffer values, boolean greatest){
+        int position = 0;
+        while(true){
+            int last = position;
+            for(int child = 2 * position + 1; child <= 2 * position + 2 && child < kept; child++){
+                if(ranksBefore(values, heap[last], heap[child], greatest)){
+                    last = child;
+                }
+            }
+            if(last == position){
+                return;
+            }
+            swap(heap, position, last);
+            position = last;
+        }
+    }
+
+    // Whether row a ranks before row b
+    private static boolean ranksBefore(DoubleBuffer values, int a, int b, boolean greatest){
+        int comparison = Double.compare(values.get(a), values.get(b));
+        if(greatest){
+            comparison = -comparison;
+        }
+        return comparison < 0 || (comparison == 0 && a < b);
+    }
+
+    private static void swap(int[] heap, int i, int j){
+        int row = heap[i];
+        heap[i] = heap[j];
+        heap[j] = row;
+    }
+
+    private boolean isPresent(CountryColumn column, int row){
+        LongBuffer bitmap = present[column.ordinal()];
+        return bitmap != null && (bitmap.get(row >>> 6) & (1L << row)) != 0;
+    }
+
+    // Reads width chars of the text section, up to the first '\0'
+    private String readPadded(int offset, int width){
+        char[] chars = new char[width];
+        int length = 0;
+        while(length < width){
+            char c = text.get(offset + length);
+            if(c == '\0'){
+                break;
+            }
+            chars[length++] = c;
+        }
+        return new String(chars, 0, length);
+    }
+
+    // A view of the buffer that starts at the given offset
+    private static ByteBuffer slice(ByteBuffer buffer, long offset){
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position((int) offset);
+        return duplicate.slice();
+    }
+}
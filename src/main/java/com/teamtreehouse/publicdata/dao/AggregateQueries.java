@@ -0,0 +1,99 @@
+package com.teamtreehouse.publicdata.dao;
+
+import org.hibernate.Session;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnStatistics;
+import com.teamtreehouse.publicdata.stats.CorrelationStatistics;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+
+// HQL aggregate queries that let the database do the statistics work instead of loading every Country entity.
+// The variances and the co-moment are summed as deviations from the means of a first query, which keeps them
+// as accurate as the single pass Java computation.
+class AggregateQueries {
+    private AggregateQueries(){}
+
+    // Gets the country with the greatest (or least) value of a column, loading only that one row
+    private static Country getCountryWithExtremeValue(Session session, CountryColumn column, boolean max){
+        String property = column.getPropertyName();
+        return (Country) session.createQuery("from Country c where c." + property + " is not null " +
+                "order by c." + property + (max ? " desc" : " asc") + ", c.code asc")
+                .setMaxResults(1)
+                .uniqueResult();
+    }
+
+    // Gathers the statistics of two columns and their correlation with aggregate queries
+    static CountryStatistics getStatistics(Session session, CountryColumn firstColumn, CountryColumn secondColumn){
+        String first = "c." + firstColumn.getPropertyName();
+        String second = "c." + secondColumn.getPropertyName();
+
+        Object[] means = (Object[]) session.createQuery("select count(" + first + "), avg(" + first + "), " +
+                "count(" + second + "), avg(" + second + ") from Country c")
+                .uniqueResult();
+        double firstMean = toDouble(means[1]);
+        double secondMean = toDouble(means[3]);
+
+        Object[] deviations = (Object[]) session.createQuery("select sum((" + first + " - :firstMean) * (" +
+                first + " - :firstMean)), sum((" + second + " - :secondMean) * (" + second + " - :secondMean)) " +
+                "from Country c")
+                .setParameter("firstMean", firstMean)
+                .setParameter("secondMean", secondMean)
+                .uniqueResult();
+
+        ColumnStatistics firstStatistics = getColumnStatistics(session, firstColumn,
+                toLong(means[0]), firstMean, toDouble(deviations[0]));
+        ColumnStatistics secondStatistics = getColumnStatistics(session, secondColumn,
+                toLong(means[2]), secondMean, toDouble(deviations[1]));
+
+        return new CountryStatistics(firstColumn, secondColumn, firstStatistics, secondStatistics,
+                getCorrelation(session, first, second));
+    }
+
+    // Completes the aggregated values of a column with the countries holding its min and max values
+    private static ColumnStatistics getColumnStatistics(Session session, CountryColumn column, long count,
+                                                        double mean, double sumOfSquaredDeviations){
+        if(count == 0){
+            return new ColumnStatistics();
+        }
+        Country countryWithMin = getCountryWithExtremeValue(session, column, false);
+        Country countryWithMax = getCountryWithExtremeValue(session, column, true);
+
+        return new ColumnStatistics(count, mean, sumOfSquaredDeviations,
+                countryWithMin, column.getValue(countryWithMin), countryWithMax, column.getValue(countryWithMax));
+    }
+
+    // Gathers the correlation of two columns over the rows where both of them hold a value
+    private static CorrelationStatistics getCorrelation(Session session, String first, String second){
+        String pairs = " from Country c where " + first + " is not null and " + second + " is not null";
+
+        Object[] means = (Object[]) session.createQuery("select count(*), avg(" + first + "), avg(" + second + ")" +
+                pairs).uniqueResult();
+        long count = toLong(means[0]);
+        if(count == 0){
+            return new CorrelationStatistics();
+        }
+        double firstMean = toDouble(means[1]);
+        double secondMean = toDouble(means[2]);
+
+        Object[] sums = (Object[]) session.createQuery("select " +
+                "sum((" + first + " - :firstMean) * (" + first + " - :firstMean)), " +
+                "sum((" + second + " - :secondMean) * (" + second + " - :secondMean)), " +
+                "sum((" + first + " - :firstMean) * (" + second + " - :secondMean))" + pairs)
+                .setParameter("firstMean", firstMean)
+                .setParameter("secondMean", secondMean)
+                .uniqueResult();
+
+        return new CorrelationStatistics(count, firstMean, secondMean,
+                toDouble(sums[0]), toDouble(sums[1]), toDouble(sums[2]));
+    }
+
+    // Aggregates over no rows come back as null
+    private static double toDouble(Object value){
+        return value == null ? Double.NaN : ((Number) value).doubleValue();
+    }
+
+    private static long toLong(Object value){
+        return value == null ? 0 : ((Number) value).longValue();
+    }
+}
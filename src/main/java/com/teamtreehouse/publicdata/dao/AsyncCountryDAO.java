@@ -0,0 +1,172 @@
+package com.teamtreehouse.publicdata.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
+
+// The non-blocking variant of a CountryDAO: every call runs on an executor of its own and returns a
+// CompletableFuture at once, so independent queries run at the same time and their results can be combined,
+// and many lookups can be sent without waiting for each round-trip. The wrapped DAO must be safe to share by
+// several threads, like SimpleCountryDAO and the caching decorators are.
+// forEachCountry and inUnitOfWork aren't offered: the DAO of a unit of work is bound to one session, which only
+// one thread may use. Run a whole unit of work as one call with supply instead.
+public class AsyncCountryDAO {
+    // Without virtual threads, every call holds a platform thread and a connection while it runs, so there are
+    // as many threads as the connection pool holds connections (hikari.maximumPoolSize)
+    private static final int PLATFORM_THREADS = 10;
+
+    private final CountryDAO countryDAO;
+    private final Executor executor;
+
+    public AsyncCountryDAO(CountryDAO countryDAO){
+        this(countryDAO, newExecutor());
+    }
+
+    public AsyncCountryDAO(CountryDAO countryDAO, Executor executor){
+        this.countryDAO = countryDAO;
+        this.executor = executor;
+    }
+
+    // A virtual thread per call on Java 21 and later, found by reflection since the code is compiled for Java 8,
+    // or else a fixed pool of daemon threads
+    public static ExecutorService newExecutor(){
+        try{
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }catch(ReflectiveOperationException roe){
+            AtomicInteger threadNumber = new AtomicInteger();
+            ThreadFactory threadFactory = runnable -> {
+                Thread thread = new Thread(runnable, "country-dao-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newFixedThreadPool(PLATFORM_THREADS, threadFactory);
+        }
+    }
+
+    // Waits for a future and returns its result. A failure is thrown as the exception the DAO threw, instead
+    // of the CompletionException wrapping it, so callers handle it as they would a blocking call.
+    public static <T> T await(CompletableFuture<T> future){
+        try{
+            return future.join();
+        }catch(CompletionException ce){
+            if(ce.getCause() instanceof RuntimeException){
+                throw (RuntimeException) ce.getCause();
+            }
+            if(ce.getCause() instanceof Error){
+                throw (Error) ce.getCause();
+            }
+            throw ce;
+        }
+    }
+
+    // Runs any call of the wrapped DAO on the executor
+    public <T> CompletableFuture<T> supply(Function<CountryDAO, T> call){
+        return CompletableFuture.supplyAsync(() -> call.apply(countryDAO), executor);
+    }
+
+    private CompletableFuture<Void> run(Consumer<CountryDAO> call){
+        return CompletableFuture.runAsync(() -> call.accept(countryDAO), executor);
+    }
+
+    public CompletableFuture<List<Country>> fetchAllCountries() {
+        return supply(CountryDAO::fetchAllCountries);
+    }
+
+    public CompletableFuture<List<Country>> fetchCountriesPage(CountryFilter filter, String afterCode, int pageSize) {
+        return supply(dao -> dao.fetchCountriesPage(filter, afterCode, pageSize));
+    }
+
+    public CompletableFuture<Country> getCountryByCode(String code) {
+        return supply(dao -> dao.getCountryByCode(code));
+    }
+
+    // Sends a lookup for every code at once and completes when all of them are answered, with the countries in
+    // the order of the codes and null for the codes that aren't in the table. It fails if any lookup fails.
+    public CompletableFuture<List<Country>> getCountriesByCode(List<String> codes) {
+        List<CompletableFuture<Country>> lookups = new ArrayList<>(codes.size());
+        for(String code : codes){
+            lookups.add(getCountryByCode(code));
+        }
+        return CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[lookups.size()])).thenApply(done -> {
+            List<Country> countries = new ArrayList<>(lookups.size());
+            for(CompletableFuture<Country> lookup : lookups){
+                countries.add(lookup.join());
+            }
+            return countries;
+        });
+    }
+
+    public CompletableFuture<List<Country>> findCountriesByName(String prefix, boolean ignoreCase, int limit) {
+        return supply(dao -> dao.findCountriesByName(prefix, ignoreCase, limit));
+    }
+
+    public CompletableFuture<List<Country>> findCountriesInRange(CountryColumn column, double min, double max,
+                                                                 int limit) {
+        return supply(dao -> dao.findCountriesInRange(column, min, max, limit));
+    }
+
+    public CompletableFuture<Void> addCountry(Country country) {
+        return run(dao -> dao.addCountry(country));
+    }
+
+    public CompletableFuture<Void> updateCountry(Country country) {
+        return run(dao -> dao.updateCountry(country));
+    }
+
+    public CompletableFuture<Country> modifyCountry(String code, Consumer<Country> change) {
+        return supply(dao -> dao.modifyCountry(code, change));
+    }
+
+    public CompletableFuture<Void> deleteCountry(Country country) {
+        return run(dao -> dao.deleteCountry(country));
+    }
+
+    public CompletableFuture<Void> mergeCountries(List<Country> countries, Set<CountryColumn> columns) {
+        return run(dao -> dao.mergeCountries(countries, columns));
+    }
+
+    public CompletableFuture<Integer> updateColumn(CountryColumn column, Double value, Collection<String> codes) {
+        return supply(dao -> dao.updateColumn(column, value, codes));
+    }
+
+    public CompletableFuture<Integer> updateValues(CountryColumn column, Map<String, Double> valuesByCode) {
+        return supply(dao -> dao.updateValues(column, valuesByCode));
+    }
+
+    public CompletableFuture<Integer> deleteCountries(Collection<String> codes) {
+        return supply(dao -> dao.deleteCountries(codes));
+    }
+
+    public CompletableFuture<List<String>> fetchCodesWithoutValues() {
+        return supply(CountryDAO::fetchCodesWithoutValues);
+    }
+
+    public CompletableFuture<CountryStatistics> getStatistics(CountryColumn firstColumn, CountryColumn secondColumn) {
+        return supply(dao -> dao.getStatistics(firstColumn, secondColumn));
+    }
+
+    public CompletableFuture<MultiColumnStatistics> getStatistics(List<CountryColumn> columns) {
+        return supply(dao -> dao.getStatistics(columns));
+    }
+
+    public CompletableFuture<ColumnRanking> getRanking(CountryColumn column, int size) {
+        return supply(dao -> dao.getRanking(column, size));
+    }
+}
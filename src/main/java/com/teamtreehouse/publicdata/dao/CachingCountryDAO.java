@@ -0,0 +1,228 @@
+package com.teamtreehouse.publicdata.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
+
+// A CountryDAO that keeps the results of its reads in memory, so repeated reads don't go back to the database.
+// The countries looked up by code and the computed statistics are held in size bounded LRU caches.
+// Writes go through to the delegate first and then update or invalidate exactly the cached entries they affect.
+// It can be shared by several threads: the caches are only touched while holding the lock of this DAO, but the
+// delegate is called without it, and a value loaded while a write invalidated the caches isn't cached.
+public class CachingCountryDAO extends ForwardingCountryDAO{
+    private final Map<String, Country> countriesByCode;
+    private final Map<String, CountryStatistics> statistics;
+    private final Map<String, MultiColumnStatistics> multiColumnStatistics;
+    private final Map<String, ColumnRanking> rankings;
+    private List<Country> allCountries;
+    // Incremented by every write and invalidation, so a load that overlapped one can tell its value may be stale
+    private long generation;
+
+    public CachingCountryDAO(CountryDAO delegate, int maximumSize){
+        super(delegate);
+        countriesByCode = new LruCache<>(maximumSize);
+        statistics = new LruCache<>(maximumSize);
+        multiColumnStatistics = new LruCache<>(maximumSize);
+        rankings = new LruCache<>(maximumSize);
+    }
+
+    // Drops everything that is cached. Call it when the table was changed without going through this DAO.
+    public synchronized void invalidate(){
+        generation++;
+        countriesByCode.clear();
+        statistics.clear();
+        multiColumnStatistics.clear();
+        rankings.clear();
+        allCountries = null;
+    }
+
+    // Like getCountryByCode, caches copies of the countries and hands out copies of those, so a caller editing
+    // one of them doesn't change the listing of every other caller. A miss returns the delegate's own list, which
+    // no one else holds, and caches a copy of it. A hit still copies every country, so it saves the query but not
+    // the allocation of the listing.
+    @Override
+    public List<Country> fetchAllCountries() {
+        long loadGeneration;
+        List<Country> cached;
+        synchronized(this){
+            cached = allCountries;
+            loadGeneration = generation;
+        }
+        if(cached != null){
+            return copyAll(cached);
+        }
+        List<Country> loaded = delegate.fetchAllCountries();
+        List<Country> copies = Collections.unmodifiableList(copyAll(loaded));
+        synchronized(this){
+            if(generation == loadGeneration){
+                allCountries = copies;
+            }
+        }
+        return loaded;
+    }
+
+    // Returns a copy of the cached country, so a caller editing it doesn't change the cache before the edit is saved
+    @Override
+    public Country getCountryByCode(String code) {
+        Country country = cached(countriesByCode, code, () -> {
+            Country loaded = delegate.getCountryByCode(code);
+            return loaded == null ? null : copy(loaded);
+        });
+        return country == null ? null : copy(country);
+    }
+
+    @Override
+    public void addCountry(Country country) {
+        delegate.addCountry(country);
+        synchronized(this){
+            countriesByCode.put(country.getCode(), copy(country));
+            invalidateTable();
+        }
+    }
+
+    @Override
+    public void updateCountry(Country country) {
+        delegate.updateCountry(country);
+        synchronized(this){
+            countriesByCode.put(country.getCode(), copy(country));
+            invalidateTable();
+        }
+    }
+
+    @Override
+    public Country modifyCountry(String code, Consumer<Country> change) {
+        Country country = delegate.modifyCountry(code, change);
+        synchronized(this){
+            if(country != null){
+                countriesByCode.put(code, copy(country));
+            }else{
+                countriesByCode.remove(code);
+            }
+            invalidateTable();
+        }
+        return country;
+    }
+
+    @Override
+    public void deleteCountry(Country country) {
+        delegate.deleteCountry(country);
+        synchronized(this){
+            countriesByCode.remove(country.getCode());
+            invalidateTable();
+        }
+    }
+
+    @Override
+    public void mergeCountries(List<Country> countries, Set<CountryColumn> columns) {
+        delegate.mergeCountries(countries, columns);
+        invalidate();
+    }
+
+    @Override
+    public int updateColumn(CountryColumn column, Double value, Collection<String> codes) {
+        int changed = delegate.updateColumn(column, value, codes);
+        invalidateCountries(codes);
+        return changed;
+    }
+
+    @Override
+    public int updateValues(CountryColumn column, Map<String, Double> valuesByCode) {
+        int changed = delegate.updateValues(column, valuesByCode);
+        invalidateCountries(valuesByCode.keySet());
+        return changed;
+    }
+
+    @Override
+    public int deleteCountries(Collection<String> codes) {
+        int changed = delegate.deleteCountries(codes);
+        invalidateCountries(codes);
+        return changed;
+    }
+
+    @Override
+    public CountryStatistics getStatistics(CountryColumn firstColumn, CountryColumn secondColumn) {
+        return cached(statistics, firstColumn + "," + secondColumn,
+                () -> delegate.getStatistics(firstColumn, secondColumn));
+    }
+
+    @Override
+    public MultiColumnStatistics getStatistics(List<CountryColumn> columns) {
+        return cached(multiColumnStatistics, columns.toString(), () -> delegate.getStatistics(columns));
+    }
+
+    @Override
+    public ColumnRanking getRanking(CountryColumn column, int size) {
+        return cached(rankings, column + "," + size, () -> delegate.getRanking(column, size));
+    }
+
+    // Gets a cached value, or loads it from the delegate without holding the lock and caches it, unless a
+    // write invalidated the caches while it was loading. Null values aren't cached.
+    private <V> V cached(Map<String, V> cache, String key, Supplier<V> loader){
+        long loadGeneration;
+        synchronized(this){
+            V cached = cache.get(key);
+            if(cached != null){
+                return cached;
+            }
+            loadGeneration = generation;
+        }
+        V loaded = loader.get();
+        synchronized(this){
+            if(loaded != null && generation == loadGeneration){
+                cache.put(key, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    // A bulk write drops exactly the countries it changed, and the table as a whole
+    private synchronized void invalidateCountries(Collection<String> codes){
+        for(String code : codes){
+            countriesByCode.remove(code);
+        }
+        invalidateTable();
+    }
+
+    // A write changes the table as a whole, so the full listing and every statistic are dropped.
+    // It is called holding the lock.
+    private void invalidateTable(){
+        generation++;
+        allCountries = null;
+        statistics.clear();
+        multiColumnStatistics.clear();
+        rankings.clear();
+    }
+
+    private static Country copy(Country country){
+        return new Country(country);
+    }
+
+    private static List<Country> copyAll(List<Country> countries){
+        List<Country> copies = new ArrayList<>(countries.size());
+        for(Country country : countries){
+            copies.add(copy(country));
+        }
+        return copies;
+    }
+
+    // The unit of work writes through a DAO bound to its own session, so the cache can't follow its
+    // changes one by one and is dropped once it commits
+    @Override
+    public <T> T inUnitOfWork(Function<CountryDAO, T> work) {
+        T result = delegate.inUnitOfWork(work);
+        invalidate();
+        return result;
+    }
+}
@@ -1,18 +1,36 @@
 package com.teamtreehouse.publicdata.dao;
 
 import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public interface CountryDAO {
     List<Country> fetchAllCountries();
+    void forEachCountry(CountryFilter filter, Consumer<Country> action);
+    List<Country> fetchCountriesPage(CountryFilter filter, String afterCode, int pageSize);
     Country getCountryByCode(String code);
+    List<Country> findCountriesByName(String prefix, boolean ignoreCase, int limit);
+    List<Country> findCountriesInRange(CountryColumn column, double min, double max, int limit);
     void addCountry(Country country);
     void updateCountry(Country country);
+    Country modifyCountry(String code, Consumer<Country> change);
     void deleteCountry(Country country);
-    Country getCountryWithMaxInternetUsage();
-    Country getCountryWithMinInternetUsage();
-    Country getCountryWithMaxAdultLiteracy();
-    Country getCountryWithMinAdultLiteracy();
-    double getCorrelationCoefficient();
+    void mergeCountries(List<Country> countries, Set<CountryColumn> columns);
+    int updateColumn(CountryColumn column, Double value, Collection<String> codes);
+    int updateValues(CountryColumn column, Map<String, Double> valuesByCode);
+    int deleteCountries(Collection<String> codes);
+    List<String> fetchCodesWithoutValues();
+    CountryStatistics getStatistics(CountryColumn firstColumn, CountryColumn secondColumn);
+    MultiColumnStatistics getStatistics(List<CountryColumn> columns);
+    ColumnRanking getRanking(CountryColumn column, int size);
+    <T> T inUnitOfWork(Function<CountryDAO, T> work);
 }
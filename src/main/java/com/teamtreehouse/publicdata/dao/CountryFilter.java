@@ -0,0 +1,71 @@
+package com.teamtreehouse.publicdata.dao;
+
+import org.hibernate.Criteria;
+import org.hibernate.criterion.MatchMode;
+import org.hibernate.criterion.Restrictions;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+
+// Restricts the countries returned by the streaming and paged reads of a CountryDAO.
+// A filter without any restriction matches every country.
+public class CountryFilter {
+    private String nameContains;
+    private final Map<CountryColumn, Double> minimums = new EnumMap<>(CountryColumn.class);
+    private final Map<CountryColumn, Double> maximums = new EnumMap<>(CountryColumn.class);
+
+    // Keeps only the countries whose name contains the given text, ignoring case
+    public CountryFilter withNameContaining(String text){
+        this.nameContains = text;
+        return this;
+    }
+
+    // Keeps only the countries whose value of the column is between min and max (inclusive).
+    // Either bound may be null, and countries without a value for the column are left out.
+    public CountryFilter withRange(CountryColumn column, Double min, Double max){
+        if(min != null){
+            minimums.put(column, min);
+        }
+        if(max != null){
+            maximums.put(column, max);
+        }
+        return this;
+    }
+
+    // Adds the restrictions of this filter to a Criteria query on Country
+    void applyTo(Criteria criteria){
+        if(nameContains != null && !nameContains.isEmpty()){
+            criteria.add(Restrictions.ilike("name", nameContains, MatchMode.ANYWHERE));
+        }
+        for(Map.Entry<CountryColumn, Double> minimum : minimums.entrySet()){
+            criteria.add(Restrictions.ge(minimum.getKey().getPropertyName(), minimum.getValue()));
+        }
+        for(Map.Entry<CountryColumn, Double> maximum : maximums.entrySet()){
+            criteria.add(Restrictions.le(maximum.getKey().getPropertyName(), maximum.getValue()));
+        }
+    }
+
+    // Tells whether a country passes this filter, for filtering countries that are already in memory
+    public boolean matches(Country country){
+        if(nameContains != null && !nameContains.isEmpty() && (country.getName() == null ||
+                !country.getName().toLowerCase().contains(nameContains.toLowerCase()))){
+            return false;
+        }
+        for(Map.Entry<CountryColumn, Double> minimum : minimums.entrySet()){
+            Double value = minimum.getKey().getValue(country);
+            if(value == null || value < minimum.getValue()){
+                return false;
+            }
+        }
+        for(Map.Entry<CountryColumn, Double> maximum : maximums.entrySet()){
+            Double value = maximum.getKey().getValue(country);
+            if(value == null || value > maximum.getValue()){
+                return false;
+            }
+        }
+        return true;
+    }
+}
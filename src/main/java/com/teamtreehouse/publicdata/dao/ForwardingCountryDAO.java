@@ -0,0 +1,119 @@
+package com.teamtreehouse.publicdata.dao;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
+
+// A CountryDAO that forwards every call to another CountryDAO. Decorators extend it
+// and override only the methods they change.
+public abstract class ForwardingCountryDAO implements CountryDAO{
+    protected final CountryDAO delegate;
+
+    protected ForwardingCountryDAO(CountryDAO delegate){
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Country> fetchAllCountries() {
+        return delegate.fetchAllCountries();
+    }
+
+    @Override
+    public void forEachCountry(CountryFilter filter, Consumer<Country> action) {
+        delegate.forEachCountry(filter, action);
+    }
+
+    @Override
+    public List<Country> fetchCountriesPage(CountryFilter filter, String afterCode, int pageSize) {
+        return delegate.fetchCountriesPage(filter, afterCode, pageSize);
+    }
+
+    @Override
+    public Country getCountryByCode(String code) {
+        return delegate.getCountryByCode(code);
+    }
+
+    @Override
+    public List<Country> findCountriesByName(String prefix, boolean ignoreCase, int limit) {
+        return delegate.findCountriesByName(prefix, ignoreCase, limit);
+    }
+
+    @Override
+    public List<Country> findCountriesInRange(CountryColumn column, double min, double max, int limit) {
+        return delegate.findCountriesInRange(column, min, max, limit);
+    }
+
+    @Override
+    public void addCountry(Country country) {
+        delegate.addCountry(country);
+    }
+
+    @Override
+    public void updateCountry(Country country) {
+        delegate.updateCountry(country);
+    }
+
+    @Override
+    public Country modifyCountry(String code, Consumer<Country> change) {
+        return delegate.modifyCountry(code, change);
+    }
+
+    @Override
+    public void deleteCountry(Country country) {
+        delegate.deleteCountry(country);
+    }
+
+    @Override
+    public void mergeCountries(List<Country> countries, Set<CountryColumn> columns) {
+        delegate.mergeCountries(countries, columns);
+    }
+
+    @Override
+    public int updateColumn(CountryColumn column, Double value, Collection<String> codes) {
+        return delegate.updateColumn(column, value, codes);
+    }
+
+    @Override
+    public int updateValues(CountryColumn column, Map<String, Double> valuesByCode) {
+        return delegate.updateValues(column, valuesByCode);
+    }
+
+    @Override
+    public int deleteCountries(Collection<String> codes) {
+        return delegate.deleteCountries(codes);
+    }
+
+    @Override
+    public List<String> fetchCodesWithoutValues() {
+        return delegate.fetchCodesWithoutValues();
+    }
+
+    @Override
+    public CountryStatistics getStatistics(CountryColumn firstColumn, CountryColumn secondColumn) {
+        return delegate.getStatistics(firstColumn, secondColumn);
+    }
+
+    @Override
+    public MultiColumnStatistics getStatistics(List<CountryColumn> columns) {
+        return delegate.getStatistics(columns);
+    }
+
+    @Override
+    public ColumnRanking getRanking(CountryColumn column, int size) {
+        return delegate.getRanking(column, size);
+    }
+
+    @Override
+    public <T> T inUnitOfWork(Function<CountryDAO, T> work) {
+        return delegate.inUnitOfWork(work);
+    }
+}
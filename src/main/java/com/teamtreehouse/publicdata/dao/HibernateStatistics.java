@@ -0,0 +1,114 @@
+package com.teamtreehouse.publicdata.dao;
+
+import org.hibernate.stat.Statistics;
+
+// Exposes the counters Hibernate keeps when hibernate.generate_statistics is true: sessions, connections,
+// statements, queries and entity operations. Hibernate 5.1 no longer ships a statistics MBean of its own.
+public class HibernateStatistics implements HibernateStatisticsMXBean {
+    private final Statistics statistics;
+
+    HibernateStatistics(Statistics statistics){
+        this.statistics = statistics;
+    }
+
+    // Gets a report of the shared session factory, without waiting for it to be built
+    public static String report(){
+        Statistics statistics = SessionFactoryProvider.getStatisticsIfBuilt();
+        if(statistics == null){
+            return String.format("The session factory isn't built yet.%n");
+        }
+        return new HibernateStatistics(statistics).getReport();
+    }
+
+    @Override
+    public long getSessionOpenCount() {
+        return statistics.getSessionOpenCount();
+    }
+
+    @Override
+    public long getSessionCloseCount() {
+        return statistics.getSessionCloseCount();
+    }
+
+    @Override
+    public long getTransactionCount() {
+        return statistics.getTransactionCount();
+    }
+
+    @Override
+    public long getConnectCount() {
+        return statistics.getConnectCount();
+    }
+
+    @Override
+    public long getPrepareStatementCount() {
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Override
+    public long getQueryExecutionCount() {
+        return statistics.getQueryExecutionCount();
+    }
+
+    @Override
+    public long getQueryExecutionMaxTime() {
+        return statistics.getQueryExecutionMaxTime();
+    }
+
+    @Override
+    public String getQueryExecutionMaxTimeQueryString() {
+        return statistics.getQueryExecutionMaxTimeQueryString();
+    }
+
+    @Override
+    public long getEntityLoadCount() {
+        return statistics.getEntityLoadCount();
+    }
+
+    @Override
+    public long getEntityFetchCount() {
+        return statistics.getEntityFetchCount();
+    }
+
+    @Override
+    public long getEntityInsertCount() {
+        return statistics.getEntityInsertCount();
+    }
+
+    @Override
+    public long getEntityUpdateCount() {
+        return statistics.getEntityUpdateCount();
+    }
+
+    @Override
+    public long getEntityDeleteCount() {
+        return statistics.getEntityDeleteCount();
+    }
+
+    @Override
+    public long getFlushCount() {
+        return statistics.getFlushCount();
+    }
+
+    @Override
+    public String getReport() {
+        if(!statistics.isStatisticsEnabled()){
+            return String.format("Hibernate statistics are off (hibernate.generate_statistics=false).%n");
+        }
+        return String.format("Hibernate:%n" +
+                        "Sessions opened: %d, closed: %d, transactions: %d, connections obtained: %d%n" +
+                        "Statements prepared: %d, queries executed: %d, flushes: %d%n" +
+                        "Entities loaded: %d, fetched: %d, inserted: %d, updated: %d, deleted: %d%n" +
+                        "Slowest query: %d ms%s%n",
+                getSessionOpenCount(), getSessionCloseCount(), getTransactionCount(), getConnectCount(),
+                getPrepareStatementCount(), getQueryExecutionCount(), getFlushCount(),
+                getEntityLoadCount(), getEntityFetchCount(), getEntityInsertCount(), getEntityUpdateCount(),
+                getEntityDeleteCount(), getQueryExecutionMaxTime(),
+                getQueryExecutionMaxTimeQueryString() == null ? "" : " (" + getQueryExecutionMaxTimeQueryString() + ")");
+    }
+
+    @Override
+    public void reset() {
+        statistics.clear();
+    }
+}
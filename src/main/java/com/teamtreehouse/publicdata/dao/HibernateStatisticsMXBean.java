@@ -0,0 +1,37 @@
+package com.teamtreehouse.publicdata.dao;
+
+// The JMX view of the Hibernate statistics of the shared session factory, registered as
+// com.teamtreehouse.publicdata:type=HibernateStatistics,name=sessionFactory once the factory is built
+public interface HibernateStatisticsMXBean {
+    long getSessionOpenCount();
+
+    long getSessionCloseCount();
+
+    long getTransactionCount();
+
+    long getConnectCount();
+
+    long getPrepareStatementCount();
+
+    long getQueryExecutionCount();
+
+    long getQueryExecutionMaxTime();
+
+    String getQueryExecutionMaxTimeQueryString();
+
+    long getEntityLoadCount();
+
+    long getEntityFetchCount();
+
+    long getEntityInsertCount();
+
+    long getEntityUpdateCount();
+
+    long getEntityDeleteCount();
+
+    long getFlushCount();
+
+    String getReport();
+
+    void reset();
+}
@@ -0,0 +1,164 @@
+package com.teamtreehouse.publicdata.dao;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+import com.teamtreehouse.publicdata.stats.MaterializedStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
+
+// A CountryDAO that answers the statistics from MaterializedStatistics, which are updated in O(log n) after
+// every add, update or delete of this DAO commits. The statistics are loaded by streaming the table once,
+// on the first statistics call, and loaded again after writes it can't follow one by one.
+// It can be shared by several threads: the statistics are only read and updated while holding the lock of this DAO,
+// but the table is streamed without it, so a load never blocks the writers.
+public class IncrementalStatisticsCountryDAO extends ForwardingCountryDAO{
+    private MaterializedStatistics statistics;
+    // Incremented by every write and invalidation, so a load that overlapped one can tell it may have missed it
+    private long generation;
+
+    public IncrementalStatisticsCountryDAO(CountryDAO delegate){
+        super(delegate);
+    }
+
+    // Gets the statistics, loading them from the delegate if they aren't loaded yet. They are changed by the writes
+    // of this DAO, so a thread sharing it should hold its lock while reading them. A load that overlapped a write
+    // isn't kept, since it may have missed the write, and is only returned to the caller that loaded it.
+    public MaterializedStatistics getMaterializedStatistics(){
+        long loadGeneration;
+        synchronized(this){
+            if(statistics != null){
+                return statistics;
+            }
+            loadGeneration = generation;
+        }
+        MaterializedStatistics loaded = new MaterializedStatistics();
+        delegate.forEachCountry(new CountryFilter(), loaded::put);
+        synchronized(this){
+            if(statistics == null && generation == loadGeneration){
+                statistics = loaded;
+            }
+        }
+        return loaded;
+    }
+
+    // Drops the statistics, so the next statistics call loads them again. Call it when the table was
+    // changed without going through this DAO.
+    public synchronized void invalidate(){
+        generation++;
+        statistics = null;
+    }
+
+    @Override
+    public void addCountry(Country country) {
+        delegate.addCountry(country);
+        put(country);
+    }
+
+    @Override
+    public void updateCountry(Country country) {
+        delegate.updateCountry(country);
+        put(country);
+    }
+
+    @Override
+    public Country modifyCountry(String code, Consumer<Country> change) {
+        Country country = delegate.modifyCountry(code, change);
+        if(country != null){
+            put(country);
+        }
+        return country;
+    }
+
+    @Override
+    public void deleteCountry(Country country) {
+        delegate.deleteCountry(country);
+        remove(Collections.singletonList(country.getCode()));
+    }
+
+    // Merged rows may only carry some of the columns, so the statistics are loaded again on the next call
+    @Override
+    public void mergeCountries(List<Country> countries, Set<CountryColumn> columns) {
+        delegate.mergeCountries(countries, columns);
+        invalidate();
+    }
+
+    // A bulk update only carries one column of the rows, so the statistics are loaded again on the next call
+    @Override
+    public int updateColumn(CountryColumn column, Double value, Collection<String> codes) {
+        int changed = delegate.updateColumn(column, value, codes);
+        invalidate();
+        return changed;
+    }
+
+    @Override
+    public int updateValues(CountryColumn column, Map<String, Double> valuesByCode) {
+        int changed = delegate.updateValues(column, valuesByCode);
+        invalidate();
+        return changed;
+    }
+
+    // The deleted countries are taken out of the statistics one by one
+    @Override
+    public int deleteCountries(Collection<String> codes) {
+        int changed = delegate.deleteCountries(codes);
+        remove(codes);
+        return changed;
+    }
+
+    @Override
+    public CountryStatistics getStatistics(CountryColumn firstColumn, CountryColumn secondColumn) {
+        MaterializedStatistics current = getMaterializedStatistics();
+        synchronized(this){
+            return current.getStatistics(firstColumn, secondColumn);
+        }
+    }
+
+    // The percentiles come from sketches kept next to the statistics, so this doesn't stream the table either
+    @Override
+    public MultiColumnStatistics getStatistics(List<CountryColumn> columns) {
+        MaterializedStatistics current = getMaterializedStatistics();
+        synchronized(this){
+            return current.getStatistics(columns);
+        }
+    }
+
+    @Override
+    public ColumnRanking getRanking(CountryColumn column, int size) {
+        MaterializedStatistics current = getMaterializedStatistics();
+        synchronized(this){
+            return current.getRanking(column, size);
+        }
+    }
+
+    private synchronized void put(Country country){
+        generation++;
+        if(statistics != null){
+            statistics.put(country);
+        }
+    }
+
+    private synchronized void remove(Collection<String> codes){
+        generation++;
+        if(statistics != null){
+            codes.forEach(statistics::remove);
+        }
+    }
+
+    // The unit of work writes through a DAO bound to its own session, so the statistics can't follow its
+    // changes one by one and are dropped once it commits
+    @Override
+    public <T> T inUnitOfWork(Function<CountryDAO, T> work) {
+        T result = delegate.inUnitOfWork(work);
+        invalidate();
+        return result;
+    }
+}
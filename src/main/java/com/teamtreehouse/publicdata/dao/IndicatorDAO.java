@@ -0,0 +1,16 @@
+package com.teamtreehouse.publicdata.dao;
+
+import java.util.List;
+import java.util.SortedMap;
+
+import com.teamtreehouse.publicdata.model.IndicatorValue;
+
+public interface IndicatorDAO {
+    void mergeValues(List<IndicatorValue> values);
+    List<IndicatorValue> getValues(String indicator, int fromYear, int toYear);
+    List<IndicatorValue> getValues(String countryCode, String indicator, int fromYear, int toYear);
+    SortedMap<Integer, Double> getCorrelationByYear(String firstIndicator, String secondIndicator,
+                                                    int fromYear, int toYear);
+    SortedMap<Integer, Double> getMovingAverage(String countryCode, String indicator, int fromYear, int toYear,
+                                                int window);
+}
@@ -0,0 +1,20 @@
+package com.teamtreehouse.publicdata.dao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// A size bounded map that evicts the least recently used entry once it grows past its maximum size.
+class LruCache<K, V> extends LinkedHashMap<K, V> {
+    private static final long serialVersionUID = 1L;
+    private final int maximumSize;
+
+    LruCache(int maximumSize){
+        super(16, 0.75f, true);
+        this.maximumSize = maximumSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > maximumSize;
+    }
+}
@@ -0,0 +1,180 @@
+package com.teamtreehouse.publicdata.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.teamtreehouse.publicdata.columnar.MappedCountryFile;
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
+
+// A read-only CountryDAO over a memory-mapped columnar file, for reporting runs that don't need the database.
+// It never touches Hibernate or H2, so it is ready as soon as the file is mapped. Every write throws an
+// UnsupportedOperationException.
+public class MappedCountryDAO implements CountryDAO{
+    private final MappedCountryFile file;
+
+    public MappedCountryDAO(MappedCountryFile file){
+        this.file = file;
+    }
+
+    @Override
+    public List<Country> fetchAllCountries() {
+        List<Country> countries = new ArrayList<>(file.size());
+        for(int row = 0; row < file.size(); row++){
+            countries.add(file.getCountry(row));
+        }
+        return countries;
+    }
+
+    @Override
+    public void forEachCountry(CountryFilter filter, Consumer<Country> action) {
+        for(int row = 0; row < file.size(); row++){
+            Country country = file.getCountry(row);
+            if(filter.matches(country)){
+                action.accept(country);
+            }
+        }
+    }
+
+    // The rows are sorted by code, so the page starts right after the binary search position of afterCode
+    @Override
+    public List<Country> fetchCountriesPage(CountryFilter filter, String afterCode, int pageSize) {
+        int row = 0;
+        if(afterCode != null){
+            int index = file.indexOf(afterCode);
+            row = index >= 0 ? index + 1 : -index - 1;
+        }
+
+        List<Country> page = new ArrayList<>(pageSize);
+        for(; row < file.size() && page.size() < pageSize; row++){
+            Country country = file.getCountry(row);
+            if(filter.matches(country)){
+                page.add(country);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public Country getCountryByCode(String code) {
+        int row = file.indexOf(code);
+        return row < 0 ? null : file.getCountry(row);
+    }
+
+    // The rows are sorted by code, so the names are searched with a scan
+    @Override
+    public List<Country> findCountriesByName(String prefix, boolean ignoreCase, int limit) {
+        List<Country> countries = new ArrayList<>();
+        for(int row = 0; row < file.size(); row++){
+            String name = file.getName(row);
+            if(name.regionMatches(ignoreCase, 0, prefix, 0, prefix.length())){
+                countries.add(file.getCountry(row));
+            }
+        }
+        countries.sort(Comparator.comparing(Country::getName).thenComparing(Country::getCode));
+        return countries.subList(0, Math.min(limit, countries.size()));
+    }
+
+    @Override
+    public List<Country> findCountriesInRange(CountryColumn column, double min, double max, int limit) {
+        List<Country> countries = new ArrayList<>();
+        for(int row = 0; row < file.size(); row++){
+            Double value = file.getValue(column, row);
+            if(value != null && value >= min && value <= max){
+                countries.add(file.getCountry(row));
+            }
+        }
+        countries.sort(Comparator.comparing(column::getValue).thenComparing(Country::getCode));
+        return countries.subList(0, Math.min(limit, countries.size()));
+    }
+
+    @Override
+    public void addCountry(Country country) {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateCountry(Country country) {
+        throw readOnly();
+    }
+
+    @Override
+    public Country modifyCountry(String code, Consumer<Country> change) {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteCountry(Country country) {
+        throw readOnly();
+    }
+
+    @Override
+    public void mergeCountries(List<Country> countries, Set<CountryColumn> columns) {
+        throw readOnly();
+    }
+
+    @Override
+    public int updateColumn(CountryColumn column, Double value, Collection<String> codes) {
+        throw readOnly();
+    }
+
+    @Override
+    public int updateValues(CountryColumn column, Map<String, Double> valuesByCode) {
+        throw readOnly();
+    }
+
+    @Override
+    public int deleteCountries(Collection<String> codes) {
+        throw readOnly();
+    }
+
+    // A mapped file holds no yearly indicator values, so only the columns are checked
+    @Override
+    public List<String> fetchCodesWithoutValues() {
+        List<String> codes = new ArrayList<>();
+        for(int row = 0; row < file.size(); row++){
+            boolean empty = true;
+            for(CountryColumn column : CountryColumn.values()){
+                empty &= file.getValue(column, row) == null;
+            }
+            if(empty){
+                codes.add(file.getCode(row));
+            }
+        }
+        return codes;
+    }
+
+    @Override
+    public CountryStatistics getStatistics(CountryColumn firstColumn, CountryColumn secondColumn) {
+        return file.getStatistics(firstColumn, secondColumn);
+    }
+
+    @Override
+    public MultiColumnStatistics getStatistics(List<CountryColumn> columns) {
+        return file.getStatistics(columns);
+    }
+
+    @Override
+    public ColumnRanking getRanking(CountryColumn column, int size) {
+        return file.getRanking(column, size);
+    }
+
+    // There is nothing to commit, so the work simply runs against this DAO
+    @Override
+    public <T> T inUnitOfWork(Function<CountryDAO, T> work) {
+        return work.apply(this);
+    }
+
+    private static UnsupportedOperationException readOnly(){
+        return new UnsupportedOperationException("The countries of a mapped file can't be changed.");
+    }
+}
@@ -0,0 +1,156 @@
+package com.teamtreehouse.publicdata.dao;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import com.teamtreehouse.publicdata.metrics.MetricsRegistry;
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
+
+// A decorator that records the calls, failures, latency and rows of every CountryDAO method in a
+// MetricsRegistry. The rows are the countries a method returned, streamed or wrote.
+// Put one above and one below a caching decorator to see how many of the calls reach the database.
+public class MetricsCountryDAO extends ForwardingCountryDAO{
+    private final MetricsRegistry metrics;
+
+    public MetricsCountryDAO(CountryDAO delegate, MetricsRegistry metrics){
+        super(delegate);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public List<Country> fetchAllCountries() {
+        return time("fetchAllCountries", delegate::fetchAllCountries, List::size);
+    }
+
+    @Override
+    public void forEachCountry(CountryFilter filter, Consumer<Country> action) {
+        LongAdder rows = new LongAdder();
+        time("forEachCountry", () -> {
+            delegate.forEachCountry(filter, country -> {
+                rows.increment();
+                action.accept(country);
+            });
+            return null;
+        }, ignored -> rows.sum());
+    }
+
+    @Override
+    public List<Country> fetchCountriesPage(CountryFilter filter, String afterCode, int pageSize) {
+        return time("fetchCountriesPage", () -> delegate.fetchCountriesPage(filter, afterCode, pageSize), List::size);
+    }
+
+    @Override
+    public Country getCountryByCode(String code) {
+        return time("getCountryByCode", () -> delegate.getCountryByCode(code), country -> country == null ? 0 : 1);
+    }
+
+    @Override
+    public List<Country> findCountriesByName(String prefix, boolean ignoreCase, int limit) {
+        return time("findCountriesByName", () -> delegate.findCountriesByName(prefix, ignoreCase, limit), List::size);
+    }
+
+    @Override
+    public List<Country> findCountriesInRange(CountryColumn column, double min, double max, int limit) {
+        return time("findCountriesInRange", () -> delegate.findCountriesInRange(column, min, max, limit), List::size);
+    }
+
+    @Override
+    public void addCountry(Country country) {
+        run("addCountry", () -> delegate.addCountry(country), 1);
+    }
+
+    @Override
+    public void updateCountry(Country country) {
+        run("updateCountry", () -> delegate.updateCountry(country), 1);
+    }
+
+    @Override
+    public Country modifyCountry(String code, Consumer<Country> change) {
+        return time("modifyCountry", () -> delegate.modifyCountry(code, change), country -> country == null ? 0 : 1);
+    }
+
+    @Override
+    public void deleteCountry(Country country) {
+        run("deleteCountry", () -> delegate.deleteCountry(country), 1);
+    }
+
+    @Override
+    public void mergeCountries(List<Country> countries, Set<CountryColumn> columns) {
+        run("mergeCountries", () -> delegate.mergeCountries(countries, columns), countries.size());
+    }
+
+    @Override
+    public int updateColumn(CountryColumn column, Double value, Collection<String> codes) {
+        return time("updateColumn", () -> delegate.updateColumn(column, value, codes), Integer::longValue);
+    }
+
+    @Override
+    public int updateValues(CountryColumn column, Map<String, Double> valuesByCode) {
+        return time("updateValues", () -> delegate.updateValues(column, valuesByCode), Integer::longValue);
+    }
+
+    @Override
+    public int deleteCountries(Collection<String> codes) {
+        return time("deleteCountries", () -> delegate.deleteCountries(codes), Integer::longValue);
+    }
+
+    @Override
+    public List<String> fetchCodesWithoutValues() {
+        return time("fetchCodesWithoutValues", delegate::fetchCodesWithoutValues, List::size);
+    }
+
+    @Override
+    public CountryStatistics getStatistics(CountryColumn firstColumn, CountryColumn secondColumn) {
+        return time("getStatistics", () -> delegate.getStatistics(firstColumn, secondColumn), statistics -> 0);
+    }
+
+    @Override
+    public MultiColumnStatistics getStatistics(List<CountryColumn> columns) {
+        return time("getMultiColumnStatistics", () -> delegate.getStatistics(columns), statistics -> 0);
+    }
+
+    @Override
+    public ColumnRanking getRanking(CountryColumn column, int size) {
+        return time("getRanking", () -> delegate.getRanking(column, size),
+                ranking -> ranking.getGreatest().size() + ranking.getLeast().size());
+    }
+
+    // The whole unit is timed, and the calls made inside it are recorded like any other call
+    @Override
+    public <T> T inUnitOfWork(Function<CountryDAO, T> work) {
+        return time("inUnitOfWork",
+                () -> delegate.inUnitOfWork(countryDAO -> work.apply(new MetricsCountryDAO(countryDAO, metrics))),
+                result -> 0);
+    }
+
+    private void run(String method, Runnable call, long rows){
+        time(method, () -> {
+            call.run();
+            return null;
+        }, ignored -> rows);
+    }
+
+    private <T> T time(String method, Supplier<T> call, ToLongFunction<T> rows){
+        long start = System.nanoTime();
+        T result = null;
+        boolean failed = true;
+        try{
+            result = call.get();
+            failed = false;
+            return result;
+        }finally{
+            metrics.getMethod(method).record(System.nanoTime() - start, failed ? 0 : rows.applyAsLong(result), failed);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.teamtreehouse.publicdata.dao;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+// The country codes sorted by lower case name, for case-insensitive prefix lookups in O(log n + results).
+// A lookup walks the sub-map that starts at the prefix, so it stays in the microseconds at millions of names.
+// It isn't thread safe.
+public class NameIndex {
+    // Between the name and the code of a key, so equal names stay apart and sort by code
+    private static final char SEPARATOR = '\0';
+
+    private final TreeMap<String, String> codesByKey = new TreeMap<>();
+    private final Map<String, String> keysByCode = new HashMap<>();
+
+    public int size(){
+        return keysByCode.size();
+    }
+
+    // Adds a country, or renames it if its code is already indexed
+    public void put(String code, String name){
+        remove(code);
+        String key = (name == null ? "" : name.toLowerCase(Locale.ROOT)) + SEPARATOR + code;
+        codesByKey.put(key, code);
+        keysByCode.put(code, key);
+    }
+
+    public void remove(String code){
+        String key = keysByCode.remove(code);
+        if(key != null){
+            codesByKey.remove(key);
+        }
+    }
+
+    // Gets the codes of at most limit countries whose name starts with the prefix, ignoring case, in name order
+    public List<String> find(String prefix, int limit){
+        String lowerCasePrefix = prefix.toLowerCase(Locale.ROOT);
+        List<String> codes = new ArrayList<>(Math.min(limit, 16));
+        for(Map.Entry<String, String> entry : codesByKey.tailMap(lowerCasePrefix, true).entrySet()){
+            if(codes.size() == limit || !entry.getKey().startsWith(lowerCasePrefix)){
+                break;
+            }
+            codes.add(entry.getValue());
+        }
+        return codes;
+    }
+}
@@ -0,0 +1,149 @@
+package com.teamtreehouse.publicdata.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+
+// A CountryDAO that answers the case-insensitive name searches from a NameIndex, which the database indexes
+// can't serve. The index is loaded by streaming the table once, on the first search, and is kept up to date by
+// the writes of this DAO; the found countries are then read by code. Case-sensitive searches go to the delegate.
+// It can be shared by several threads: the index is only used while holding the lock of this DAO, but the table is
+// streamed without it, so a load never blocks the writers or the other searches.
+public class NameIndexCountryDAO extends ForwardingCountryDAO{
+    private NameIndex index;
+    // Incremented by every write and invalidation, so a load that overlapped one can tell it may have missed it
+    private long generation;
+
+    public NameIndexCountryDAO(CountryDAO delegate){
+        super(delegate);
+    }
+
+    // Drops the index, so the next search loads it again. Call it when the table was changed without going
+    // through this DAO.
+    public synchronized void invalidate(){
+        generation++;
+        index = null;
+    }
+
+    @Override
+    public List<Country> findCountriesByName(String prefix, boolean ignoreCase, int limit) {
+        if(!ignoreCase){
+            return delegate.findCountriesByName(prefix, false, limit);
+        }
+
+        List<String> codes = findCodes(prefix, limit);
+
+        List<Country> countries = new ArrayList<>(codes.size());
+        for(String code : codes){
+            Country country = delegate.getCountryByCode(code);
+            if(country != null){
+                countries.add(country);
+            }
+        }
+        return countries;
+    }
+
+    @Override
+    public void addCountry(Country country) {
+        delegate.addCountry(country);
+        put(country);
+    }
+
+    @Override
+    public void updateCountry(Country country) {
+        delegate.updateCountry(country);
+        put(country);
+    }
+
+    @Override
+    public Country modifyCountry(String code, Consumer<Country> change) {
+        Country country = delegate.modifyCountry(code, change);
+        if(country != null){
+            put(country);
+        }
+        return country;
+    }
+
+    @Override
+    public void deleteCountry(Country country) {
+        delegate.deleteCountry(country);
+        remove(Collections.singletonList(country.getCode()));
+    }
+
+    // Merged rows may be new or renamed, so the index is loaded again on the next search
+    @Override
+    public void mergeCountries(List<Country> countries, Set<CountryColumn> columns) {
+        delegate.mergeCountries(countries, columns);
+        invalidate();
+    }
+
+    // The bulk updates never change a name, so the index stays as it is
+    @Override
+    public int updateColumn(CountryColumn column, Double value, Collection<String> codes) {
+        return delegate.updateColumn(column, value, codes);
+    }
+
+    @Override
+    public int updateValues(CountryColumn column, Map<String, Double> valuesByCode) {
+        return delegate.updateValues(column, valuesByCode);
+    }
+
+    @Override
+    public int deleteCountries(Collection<String> codes) {
+        int changed = delegate.deleteCountries(codes);
+        remove(codes);
+        return changed;
+    }
+
+    // The unit of work writes through a DAO bound to its own session, so the index can't follow its
+    // changes one by one and is dropped once it commits
+    @Override
+    public <T> T inUnitOfWork(Function<CountryDAO, T> work) {
+        T result = delegate.inUnitOfWork(work);
+        invalidate();
+        return result;
+    }
+
+    // Searches the index, loading it from the delegate if it isn't loaded yet. A load that overlapped a write isn't
+    // kept, since it may have missed the write, and only answers the search that loaded it.
+    private List<String> findCodes(String prefix, int limit){
+        long loadGeneration;
+        synchronized(this){
+            if(index != null){
+                return index.find(prefix, limit);
+            }
+            loadGeneration = generation;
+        }
+        NameIndex loaded = new NameIndex();
+        delegate.forEachCountry(new CountryFilter(), country -> loaded.put(country.getCode(), country.getName()));
+        synchronized(this){
+            if(index == null && generation == loadGeneration){
+                index = loaded;
+                return index.find(prefix, limit);
+            }
+        }
+        return loaded.find(prefix, limit);
+    }
+
+    private synchronized void put(Country country){
+        generation++;
+        if(index != null){
+            index.put(country.getCode(), country.getName());
+        }
+    }
+
+    private synchronized void remove(Collection<String> codes){
+        generation++;
+        if(index != null){
+            codes.forEach(index::remove);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.teamtreehouse.publicdata.dao;
+
+import org.hibernate.Criteria;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+
+// Gathers the statistics over ranges of country codes on a ForkJoinPool. Every range is scanned by its own
+// stateless session into an accumulator of its own, and the accumulators are merged in code order, so the
+// result matches a sequential pass over the table.
+// The pools are shared by every instance with the same parallelism and live as long as the application; their
+// threads are daemons and end when idle, so a DAO that is dropped leaves nothing behind.
+class ParallelStatistics {
+    // More ranges than threads, so a thread that finishes early can steal the remaining ones
+    private static final int PARTITIONS_PER_THREAD = 4;
+    private static final int SCROLL_FETCH_SIZE = 500;
+    private static final ConcurrentMap<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    private final SessionFactory sessionFactory;
+    private final ForkJoinPool pool;
+
+    ParallelStatistics(SessionFactory sessionFactory, int parallelism){
+        this.sessionFactory = sessionFactory;
+        this.pool = POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    CountryStatistics getStatistics(CountryColumn firstColumn, CountryColumn secondColumn){
+        return aggregate(() -> new CountryStatistics(firstColumn, secondColumn),
+                CountryStatistics::add, CountryStatistics::merge);
+    }
+
+    // Scans every range into a new accumulator of the factory and merges the accumulators into one
+    <S> S aggregate(Supplier<S> factory, BiConsumer<S, Country> add, BiConsumer<S, S> merge){
+        List<String> boundaries = getBoundaries(pool.getParallelism() * PARTITIONS_PER_THREAD);
+        return pool.invoke(new PartitionTask<>(new Accumulation<>(factory, add, merge),
+                boundaries, 0, boundaries.size() - 1));
+    }
+
+    // Splits the table into ranges of about the same number of rows. The list holds the first code of every range
+    // followed by a null upper bound; range i holds the codes from boundaries[i] up to (excluding) boundaries[i + 1].
+    // The codes are read in one forward scroll, keeping every rowsPerPartition-th of them.
+    private List<String> getBoundaries(int partitions){
+        List<String> boundaries = new ArrayList<>();
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try{
+            long rows = (Long) session.createQuery("select count(*) from Country").uniqueResult();
+            long rowsPerPartition = Math.max(1, (rows + partitions - 1) / partitions);
+
+            boundaries.add(null);
+            ScrollableResults codes = session.createQuery("select c.code from Country c order by c.code")
+                    .setFetchSize(SCROLL_FETCH_SIZE)
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            try{
+                for(long row = 0; codes.next(); row++){
+                    if(row > 0 && row % rowsPerPartition == 0){
+                        boundaries.add(codes.getString(0));
+                    }
+                }
+            }finally{
+                codes.close();
+            }
+            boundaries.add(null);
+        }finally{
+            session.close();
+        }
+
+        return boundaries;
+    }
+
+    // Scans the ranges [from, to) of the boundaries, splitting them in halves until a task holds one range.
+    // ForkJoinTask is Serializable, but a task is never serialized: it only lives in the pool that runs it.
+    @SuppressWarnings("serial")
+    private class PartitionTask<S> extends RecursiveTask<S> {
+        private final Accumulation<S> accumulation;
+        private final List<String> boundaries;
+        private final int from;
+        private final int to;
+
+        PartitionTask(Accumulation<S> accumulation, List<String> boundaries, int from, int to){
+            this.accumulation = accumulation;
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected S compute() {
+            if(to - from == 1){
+                return scan(boundaries.get(from), boundaries.get(to));
+            }
+
+            int middle = (from + to) >>> 1;
+            PartitionTask<S> right = new PartitionTask<>(accumulation, boundaries, middle, to);
+            right.fork();
+            S statistics = new PartitionTask<>(accumulation, boundaries, from, middle).compute();
+            accumulation.merge.accept(statistics, right.join());
+            return statistics;
+        }
+
+        // Scans the countries with lowerCode <= code < upperCode. A null bound leaves that side open.
+        private S scan(String lowerCode, String upperCode){
+            S statistics = accumulation.factory.get();
+            StatelessSession session = sessionFactory.openStatelessSession();
+            try{
+                Criteria criteria = session.createCriteria(Country.class)
+                        .addOrder(Order.asc("code"))
+                        .setFetchSize(SCROLL_FETCH_SIZE)
+                        .setReadOnly(true);
+                if(lowerCode != null){
+                    criteria.add(Restrictions.ge("code", lowerCode));
+                }
+                if(upperCode != null){
+                    criteria.add(Restrictions.lt("code", upperCode));
+                }
+
+                ScrollableResults results = criteria.scroll(ScrollMode.FORWARD_ONLY);
+                try{
+                    while(results.next()){
+                        accumulation.add.accept(statistics, (Country) results.get(0));
+                    }
+                }finally{
+                    results.close();
+                }
+            }finally{
+                session.close();
+            }
+            return statistics;
+        }
+    }
+
+    // How the accumulators of the ranges are created, filled and merged
+    private static class Accumulation<S> {
+        private final Supplier<S> factory;
+        private final BiConsumer<S, Country> add;
+        private final BiConsumer<S, S> merge;
+
+        Accumulation(Supplier<S> factory, BiConsumer<S, Country> add, BiConsumer<S, S> merge){
+            this.factory = factory;
+            this.add = add;
+            this.merge = merge;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.teamtreehouse.publicdata.dao;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
+
+// A CountryDAO that sends the analytics to a read replica: the statistics and the rankings. Every other read and
+// every write goes to the primary, so the listings and the caches built from them always see the latest rows.
+// The replica is a copy of the primary in another database, made by refresh(), so the scans of the analytics don't
+// compete with the writers for the connections and locks of the primary. The price is that the analytics see the
+// table as it was at the last refresh. Until the first refresh is done, they are answered by the primary.
+public class ReplicaCountryDAO extends ForwardingCountryDAO{
+    // The number of rows a refresh merges into the replica in one batch
+    private static final int REFRESH_BATCH_SIZE = 500;
+    // How often the replica opened by open() is refreshed
+    private static final long REFRESH_PERIOD_SECONDS = 60;
+    private final CountryDAO replica;
+    private volatile boolean refreshed;
+    // The fingerprint of every row the replica holds, as of the last refresh, or null before the first one
+    private Map<String, Long> copied;
+    private ScheduledExecutorService refresher;
+
+    public ReplicaCountryDAO(CountryDAO primary, CountryDAO replica){
+        super(primary);
+        this.replica = replica;
+    }
+
+    // Creates a DAO whose analytics are read from the H2 database at the given JDBC URL, which is refreshed from
+    // the primary at once and then every REFRESH_PERIOD_SECONDS
+    public static ReplicaCountryDAO open(CountryDAO primary, String url){
+        ReplicaCountryDAO countryDAO = new ReplicaCountryDAO(primary,
+                new SimpleCountryDAO(url, StatisticsMode.DATABASE));
+        countryDAO.startRefreshing(REFRESH_PERIOD_SECONDS, TimeUnit.SECONDS);
+        return countryDAO;
+    }
+
+    // Brings the replica up to date with the primary in one transaction of the replica, so the readers of the
+    // replica see either the old copy or the new one. The rows of the primary are streamed, and only those that
+    // changed since the last refresh are merged, in batches; the rows that are no longer in the primary are deleted.
+    // The first refresh copies every row and checks the whole replica, which may hold rows of an earlier run.
+    // Returns the number of rows merged or deleted.
+    public synchronized int refresh(){
+        Map<String, Long> previous = copied;
+        Map<String, Long> current = new HashMap<>();
+        int changed = replica.inUnitOfWork(replicaDAO -> {
+            AtomicInteger merged = new AtomicInteger();
+            List<Country> batch = new ArrayList<>(REFRESH_BATCH_SIZE);
+            delegate.forEachCountry(new CountryFilter(), country -> {
+                Long fingerprint = fingerprint(country);
+                current.put(country.getCode(), fingerprint);
+                if(fingerprint == null || previous == null || !fingerprint.equals(previous.get(country.getCode()))){
+                    batch.add(country);
+                    merged.incrementAndGet();
+                }
+                if(batch.size() == REFRESH_BATCH_SIZE){
+                    replicaDAO.mergeCountries(batch, EnumSet.allOf(CountryColumn.class));
+                    batch.clear();
+                }
+            });
+            if(!batch.isEmpty()){
+                replicaDAO.mergeCountries(batch, EnumSet.allOf(CountryColumn.class));
+            }
+
+            List<String> removed = new ArrayList<>();
+            if(previous == null){
+                replicaDAO.forEachCountry(new CountryFilter(), country -> {
+                    if(!current.containsKey(country.getCode())){
+                        removed.add(country.getCode());
+                    }
+                });
+            }else{
+                for(String code : previous.keySet()){
+                    if(!current.containsKey(code)){
+                        removed.add(code);
+                    }
+                }
+            }
+            replicaDAO.deleteCountries(removed);
+            return merged.get() + removed.size();
+        });
+        copied = current;
+        refreshed = true;
+        return changed;
+    }
+
+    // Tells the rows that changed since the last refresh apart. Every write of the primary increments the version
+    // of the row, and the hash of the values covers a row deleted and added again, which starts over at version 0.
+    // A row without a version is always copied.
+    private static Long fingerprint(Country country){
+        if(country.getVersion() == null){
+            return null;
+        }
+        int values = Objects.hash(country.getName(), country.getInternetUsers(), country.getAdultLiteracyRate());
+        return country.getVersion() << 32 ^ (values & 0xFFFFFFFFL);
+    }
+
+    // Refreshes the replica now and then every period on a daemon thread, until stopRefreshing() is called.
+    // A failed refresh is reported on the standard error and tried again at the next period.
+    public synchronized void startRefreshing(long period, TimeUnit unit){
+        if(refresher != null){
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try{
+                refresh();
+            }catch(RuntimeException re){
+                System.err.printf("The read replica couldn't be refreshed: %s%n", re);
+            }
+        }, 0, period, unit);
+    }
+
+    public synchronized void stopRefreshing(){
+        if(refresher != null){
+            refresher.shutdown();
+            refresher = null;
+        }
+    }
+
+    private CountryDAO analytics(){
+        return refreshed ? replica : delegate;
+    }
+
+    @Override
+    public CountryStatistics getStatistics(CountryColumn firstColumn, CountryColumn secondColumn) {
+        return analytics().getStatistics(firstColumn, secondColumn);
+    }
+
+    @Override
+    public MultiColumnStatistics getStatistics(List<CountryColumn> columns) {
+        return analytics().getStatistics(columns);
+    }
+
+    @Override
+    public ColumnRanking getRanking(CountryColumn column, int size) {
+        return analytics().getRanking(column, size);
+    }
+}
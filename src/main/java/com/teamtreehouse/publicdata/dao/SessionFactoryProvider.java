@@ -0,0 +1,173 @@
+package com.teamtreehouse.publicdata.dao;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.Statistics;
+import org.hibernate.tool.hbm2ddl.SchemaUpdate;
+import org.hibernate.tool.schema.TargetType;
+
+import com.teamtreehouse.publicdata.metrics.MetricsRegistry;
+
+import java.util.EnumSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Holds the one session factory the DAOs share. It is built on first use, or ahead of it on a background
+// thread once startInBackground() is called, so the bootstrap overlaps with whatever the application does first.
+// Every phase of the bootstrap is recorded in StartupTimings.
+// It also holds the session factories of other H2 databases with the same mapping, such as shards or a read
+// replica, each one built on first use.
+public class SessionFactoryProvider {
+    // Set to true to print the startup phases to the standard error once the session factory is ready
+    public static final String STARTUP_REPORT_PROPERTY = "publicdata.startupReport";
+    private static final String SCHEMA_UPDATE = "update";
+    // An empty hbm2ddl.auto runs no schema action at all
+    private static final String NO_SCHEMA_ACTION = "";
+
+    private static final FutureTask<SessionFactory> bootstrap = new FutureTask<>(() -> buildSessionFactory(null));
+    private static final ConcurrentMap<String, FutureTask<SessionFactory>> otherDatabases = new ConcurrentHashMap<>();
+    private static final AtomicBoolean started = new AtomicBoolean();
+    private static volatile boolean schemaUpdateSkipped;
+
+    private SessionFactoryProvider(){}
+
+    // Starts building the session factory on a daemon thread, unless it is already being built
+    public static void startInBackground(){
+        if(started.compareAndSet(false, true)){
+            Thread thread = new Thread(bootstrap, "session-factory-bootstrap");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    // Skips the schema action of the shared session factory, for runs against a database whose schema is known to
+    // be current. The factories of the other databases still run theirs, so a new shard or replica gets its tables.
+    public static void skipSchemaUpdate(){
+        schemaUpdateSkipped = true;
+    }
+
+    // Gets the session factory, building it in the calling thread if nobody started it yet, or waiting for
+    // the background bootstrap to finish
+    static SessionFactory getSessionFactory(){
+        if(started.compareAndSet(false, true)){
+            bootstrap.run();
+        }
+        return await(bootstrap);
+    }
+
+    // Gets the session factory of the H2 database at the given JDBC URL, or the shared one for a null URL.
+    // It is built in the calling thread on first use, while the other callers wait for it.
+    static SessionFactory getSessionFactory(String url){
+        if(url == null){
+            return getSessionFactory();
+        }
+        FutureTask<SessionFactory> build = otherDatabases.computeIfAbsent(url,
+                key -> new FutureTask<>(() -> buildSessionFactory(key)));
+        build.run();
+        return await(build);
+    }
+
+    private static SessionFactory await(FutureTask<SessionFactory> build){
+        try{
+            return build.get();
+        }catch(InterruptedException ie){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the session factory.", ie);
+        }catch(ExecutionException ee){
+            if(ee.getCause() instanceof RuntimeException){
+                throw (RuntimeException) ee.getCause();
+            }
+            if(ee.getCause() instanceof Error){
+                throw (Error) ee.getCause();
+            }
+            throw new IllegalStateException("The session factory couldn't be built.", ee.getCause());
+        }
+    }
+
+    // Gets the statistics of the session factory, or null while it is still being built or wasn't started
+    static Statistics getStatisticsIfBuilt(){
+        if(!bootstrap.isDone()){
+            return null;
+        }
+        try{
+            return bootstrap.get().getStatistics();
+        }catch(InterruptedException | ExecutionException e){
+            return null;
+        }
+    }
+
+    // Builds the session factory. A session factory is used to generate database sessions.
+    // A session is constituted of one or more SQL statements executed at a time.
+    // Any hibernate.* system property overrides the matching setting of hibernate.cfg.xml.
+    // A schema update is run as a phase of its own instead of inside the session factory build, so it can be
+    // timed; the first query is run right away, which also opens the connection pool.
+    // A non-null URL replaces the connection URL, for another database. Its cache regions get a prefix of their
+    // own, since the region factory is shared by the JVM, and its phases aren't recorded in StartupTimings.
+    private static SessionFactory buildSessionFactory(String url){
+        long start = System.nanoTime();
+        StandardServiceRegistryBuilder registryBuilder = new StandardServiceRegistryBuilder().configure();
+        for(String name : System.getProperties().stringPropertyNames()){
+            if(name.startsWith("hibernate.")){
+                registryBuilder.applySetting(name, System.getProperty(name));
+            }
+        }
+        if(url != null){
+            registryBuilder.applySetting(AvailableSettings.URL, url);
+            registryBuilder.applySetting(AvailableSettings.CACHE_REGION_PREFIX, url.replaceAll("\\W", "_"));
+        }
+        String schemaAction = System.getProperty(AvailableSettings.HBM2DDL_AUTO, (String) registryBuilder
+                .getAggregatedCfgXml().getConfigurationValues().get(AvailableSettings.HBM2DDL_AUTO));
+        boolean skipped = url == null && schemaUpdateSkipped;
+        boolean schemaUpdate = !skipped && SCHEMA_UPDATE.equals(schemaAction);
+        if(skipped || schemaUpdate){
+            registryBuilder.applySetting(AvailableSettings.HBM2DDL_AUTO, NO_SCHEMA_ACTION);
+        }
+        final StandardServiceRegistry registry = registryBuilder.build();
+        start = record(url, "service registry", start);
+
+        Metadata metadata = new MetadataSources(registry).buildMetadata();
+        start = record(url, "metadata", start);
+
+        if(schemaUpdate){
+            new SchemaUpdate().execute(EnumSet.of(TargetType.DATABASE), metadata, registry);
+            start = record(url, "schema update", start);
+        }else if(url == null){
+            StartupTimings.mark("schema update skipped");
+        }
+
+        SessionFactory sessionFactory = metadata.buildSessionFactory();
+        start = record(url, "session factory", start);
+
+        Session session = sessionFactory.openSession();
+        try{
+            session.createQuery("select count(*) from Country").uniqueResult();
+        }finally{
+            session.close();
+        }
+        record(url, "first query", start);
+
+        MetricsRegistry.registerMBean(new HibernateStatistics(sessionFactory.getStatistics()),
+                "HibernateStatistics", url == null ? "sessionFactory" : url);
+
+        if(url == null && Boolean.getBoolean(STARTUP_REPORT_PROPERTY)){
+            System.err.print(StartupTimings.report());
+        }
+        return sessionFactory;
+    }
+
+    private static long record(String url, String phase, long start){
+        long end = System.nanoTime();
+        if(url == null){
+            StartupTimings.record(phase, end - start);
+        }
+        return end;
+    }
+}
@@ -0,0 +1,343 @@
+package com.teamtreehouse.publicdata.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
+
+// A CountryDAO that partitions the countries across several databases (shards), each one reached through a
+// CountryDAO of its own. A country lives in the shard picked by the hash of its code, so a lookup or a write
+// of one country goes to that shard alone, and a bulk write sends every shard only the codes it owns.
+// The reads that span the table are sent to all the shards at once and their results are combined: listings,
+// pages and searches are merged in the order one database would return them, and the statistics and rankings
+// are gathered by every shard over its own rows and merged, like ParallelStatistics merges those of code ranges.
+// The shards must always be given in the same order, and their number can't change once countries were
+// written, since both decide where every code lives.
+// A write that spans several shards commits in each of them separately, so a failure can leave it done in some
+// shards only. Even a unit of work commits the shards one after another, without a two-phase commit.
+public class ShardedCountryDAO implements CountryDAO{
+    // The number of countries forEachCountry reads from a shard at a time
+    private static final int SCAN_PAGE_SIZE = 500;
+    private static final Comparator<Country> BY_CODE = Comparator.comparing(Country::getCode);
+    private static final Comparator<Country> BY_NAME = Comparator.comparing(Country::getName).thenComparing(BY_CODE);
+
+    private final List<CountryDAO> shards;
+    private final List<AsyncCountryDAO> asyncShards = new ArrayList<>();
+
+    public ShardedCountryDAO(List<CountryDAO> shards){
+        this(shards, AsyncCountryDAO.newExecutor());
+    }
+
+    // The calls sent to all the shards run on the executor, one per shard
+    public ShardedCountryDAO(List<CountryDAO> shards, Executor executor){
+        if(shards.isEmpty()){
+            throw new IllegalArgumentException("At least one shard is needed.");
+        }
+        this.shards = new ArrayList<>(shards);
+        for(CountryDAO shard : shards){
+            asyncShards.add(new AsyncCountryDAO(shard, executor));
+        }
+    }
+
+    // Creates a DAO over one SimpleCountryDAO per database, given by their JDBC URLs
+    public static ShardedCountryDAO open(List<String> urls, StatisticsMode statisticsMode){
+        List<CountryDAO> shards = new ArrayList<>(urls.size());
+        for(String url : urls){
+            shards.add(new SimpleCountryDAO(url, statisticsMode));
+        }
+        return new ShardedCountryDAO(shards);
+    }
+
+    // The index of the shard a code lives in. String.hashCode is the same in every JVM, so the placement is stable.
+    public int shardOf(String code){
+        return shardOf(code, shards.size());
+    }
+
+    // The placement shared with ShardedIndicatorDAO, so the yearly values of a country live in its shard
+    static int shardOf(String code, int shards){
+        return Math.floorMod(code.hashCode(), shards);
+    }
+
+    private CountryDAO shardFor(String code){
+        return shards.get(shardOf(code));
+    }
+
+    // Sends a call to every shard at once and waits for all the results, in the order of the shards.
+    // A single shard is called directly.
+    private <T> List<T> scatter(Function<CountryDAO, T> call){
+        List<T> results = new ArrayList<>(shards.size());
+        if(shards.size() == 1){
+            results.add(call.apply(shards.get(0)));
+            return results;
+        }
+        List<CompletableFuture<T>> calls = new ArrayList<>(shards.size());
+        for(AsyncCountryDAO shard : asyncShards){
+            calls.add(shard.supply(call));
+        }
+        for(CompletableFuture<T> shardCall : calls){
+            results.add(AsyncCountryDAO.await(shardCall));
+        }
+        return results;
+    }
+
+    // Splits the codes by the shard they live in
+    private List<List<String>> partition(Collection<String> codes){
+        List<List<String>> parts = new ArrayList<>(shards.size());
+        for(int i = 0; i < shards.size(); i++){
+            parts.add(new ArrayList<>());
+        }
+        for(String code : codes){
+            parts.get(shardOf(code)).add(code);
+        }
+        return parts;
+    }
+
+    // Sends every shard a bulk write of its own part of the codes, skipping the shards with no part, and sums
+    // the rows they changed
+    private <P> int writeParts(List<P> parts, Predicate<P> isEmpty, ShardWrite<P> write){
+        List<CompletableFuture<Integer>> writes = new ArrayList<>();
+        for(int i = 0; i < shards.size(); i++){
+            P part = parts.get(i);
+            if(!isEmpty.test(part)){
+                writes.add(asyncShards.get(i).supply(shard -> write.apply(shard, part)));
+            }
+        }
+        int changed = 0;
+        for(CompletableFuture<Integer> shardWrite : writes){
+            changed += AsyncCountryDAO.await(shardWrite);
+        }
+        return changed;
+    }
+
+    private interface ShardWrite<P> {
+        int apply(CountryDAO shard, P part);
+    }
+
+    // Merges the lists the shards returned, each one sorted by the comparator, and keeps the first limit countries
+    private static List<Country> merge(List<List<Country>> lists, Comparator<Country> order, int limit){
+        List<Country> merged = new ArrayList<>();
+        for(List<Country> list : lists){
+            merged.addAll(list);
+        }
+        merged.sort(order);
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    // The countries of all the shards, in code order
+    @Override
+    public List<Country> fetchAllCountries() {
+        return merge(scatter(CountryDAO::fetchAllCountries), BY_CODE, Integer.MAX_VALUE);
+    }
+
+    // Passes every country matching the filter to the action, in code order, merging the shards as they are read:
+    // every shard is read a page at a time, so only a page per shard is held in memory
+    @Override
+    public void forEachCountry(CountryFilter filter, Consumer<Country> action) {
+        PriorityQueue<ShardCursor> cursors = new PriorityQueue<>(shards.size(),
+                (o1, o2) -> o1.peek().getCode().compareTo(o2.peek().getCode()));
+        for(CountryDAO shard : shards){
+            ShardCursor cursor = new ShardCursor(shard, filter);
+            if(cursor.hasNext()){
+                cursors.add(cursor);
+            }
+        }
+        while(!cursors.isEmpty()){
+            ShardCursor cursor = cursors.poll();
+            action.accept(cursor.next());
+            if(cursor.hasNext()){
+                cursors.add(cursor);
+            }
+        }
+    }
+
+    // Every shard holds the page of its own countries after the code, so the page of the whole table is the first
+    // pageSize countries of those pages together
+    @Override
+    public List<Country> fetchCountriesPage(CountryFilter filter, String afterCode, int pageSize) {
+        return merge(scatter(shard -> shard.fetchCountriesPage(filter, afterCode, pageSize)), BY_CODE, pageSize);
+    }
+
+    @Override
+    public Country getCountryByCode(String code) {
+        return shardFor(code).getCountryByCode(code);
+    }
+
+    @Override
+    public List<Country> findCountriesByName(String prefix, boolean ignoreCase, int limit) {
+        return merge(scatter(shard -> shard.findCountriesByName(prefix, ignoreCase, limit)), BY_NAME, limit);
+    }
+
+    @Override
+    public List<Country> findCountriesInRange(CountryColumn column, double min, double max, int limit) {
+        Comparator<Country> byValue = Comparator.comparing(column::getValue);
+        return merge(scatter(shard -> shard.findCountriesInRange(column, min, max, limit)),
+                byValue.thenComparing(BY_CODE), limit);
+    }
+
+    @Override
+    public void addCountry(Country country) {
+        shardFor(country.getCode()).addCountry(country);
+    }
+
+    @Override
+    public void updateCountry(Country country) {
+        shardFor(country.getCode()).updateCountry(country);
+    }
+
+    @Override
+    public Country modifyCountry(String code, Consumer<Country> change) {
+        return shardFor(code).modifyCountry(code, change);
+    }
+
+    @Override
+    public void deleteCountry(Country country) {
+        shardFor(country.getCode()).deleteCountry(country);
+    }
+
+    @Override
+    public void mergeCountries(List<Country> countries, Set<CountryColumn> columns) {
+        List<List<Country>> parts = new ArrayList<>(shards.size());
+        for(int i = 0; i < shards.size(); i++){
+            parts.add(new ArrayList<>());
+        }
+        for(Country country : countries){
+            parts.get(shardOf(country.getCode())).add(country);
+        }
+        writeParts(parts, List::isEmpty, (shard, part) -> {
+            shard.mergeCountries(part, columns);
+            return part.size();
+        });
+    }
+
+    @Override
+    public int updateColumn(CountryColumn column, Double value, Collection<String> codes) {
+        return writeParts(partition(codes), List::isEmpty, (shard, part) -> shard.updateColumn(column, value, part));
+    }
+
+    @Override
+    public int updateValues(CountryColumn column, Map<String, Double> valuesByCode) {
+        List<Map<String, Double>> parts = new ArrayList<>(shards.size());
+        for(int i = 0; i < shards.size(); i++){
+            parts.add(new HashMap<>());
+        }
+        for(Map.Entry<String, Double> value : valuesByCode.entrySet()){
+            parts.get(shardOf(value.getKey())).put(value.getKey(), value.getValue());
+        }
+        return writeParts(parts, Map::isEmpty, (shard, part) -> shard.updateValues(column, part));
+    }
+
+    @Override
+    public int deleteCountries(Collection<String> codes) {
+        return writeParts(partition(codes), List::isEmpty, CountryDAO::deleteCountries);
+    }
+
+    // The yearly indicator values are checked in the database of each shard, where ShardedIndicatorDAO puts
+    // those of its countries
+    @Override
+    public List<String> fetchCodesWithoutValues() {
+        List<String> codes = new ArrayList<>();
+        for(List<String> shardCodes : scatter(CountryDAO::fetchCodesWithoutValues)){
+            codes.addAll(shardCodes);
+        }
+        codes.sort(null);
+        return codes;
+    }
+
+    // The counts, means and deviation sums of the shards are combined by CountryStatistics.merge, which gives the
+    // statistics of the whole table and not an average of the shard averages
+    @Override
+    public CountryStatistics getStatistics(CountryColumn firstColumn, CountryColumn secondColumn) {
+        CountryStatistics statistics = new CountryStatistics(firstColumn, secondColumn);
+        for(CountryStatistics shardStatistics : scatter(shard -> shard.getStatistics(firstColumn, secondColumn))){
+            statistics.merge(shardStatistics);
+        }
+        return statistics;
+    }
+
+    @Override
+    public MultiColumnStatistics getStatistics(List<CountryColumn> columns) {
+        MultiColumnStatistics statistics = new MultiColumnStatistics(columns);
+        for(MultiColumnStatistics shardStatistics : scatter(shard -> shard.getStatistics(columns))){
+            statistics.merge(shardStatistics);
+        }
+        return statistics;
+    }
+
+    // Every shard ranks its own countries, and the size greatest and least of those are the ones of the table
+    @Override
+    public ColumnRanking getRanking(CountryColumn column, int size) {
+        ColumnRanking ranking = new ColumnRanking(column, size);
+        for(ColumnRanking shardRanking : scatter(shard -> shard.getRanking(column, size))){
+            ranking.merge(shardRanking);
+        }
+        return ranking;
+    }
+
+    // Opens a unit of work in every shard, one inside the other, and runs the work over a ShardedCountryDAO of
+    // the bound DAOs. The units commit in the reverse order they were opened, each one on its own, so a failure
+    // while committing can leave the shards committed before it changed. The bound DAOs are called one after
+    // another from the calling thread, since a session may only be used by one thread.
+    @Override
+    public <T> T inUnitOfWork(Function<CountryDAO, T> work) {
+        return inUnitOfWork(new ArrayList<>(), work);
+    }
+
+    private <T> T inUnitOfWork(List<CountryDAO> boundShards, Function<CountryDAO, T> work){
+        if(boundShards.size() == shards.size()){
+            return work.apply(new ShardedCountryDAO(boundShards, Runnable::run));
+        }
+        return shards.get(boundShards.size()).inUnitOfWork(boundShard -> {
+            List<CountryDAO> bound = new ArrayList<>(boundShards);
+            bound.add(boundShard);
+            return inUnitOfWork(bound, work);
+        });
+    }
+
+    // Reads the countries of one shard matching a filter a page at a time, in code order
+    private static class ShardCursor {
+        private final CountryDAO shard;
+        private final CountryFilter filter;
+        private List<Country> page = new ArrayList<>();
+        private int position;
+        private boolean lastPage;
+
+        private ShardCursor(CountryDAO shard, CountryFilter filter){
+            this.shard = shard;
+            this.filter = filter;
+        }
+
+        private boolean hasNext(){
+            if(position == page.size() && !lastPage){
+                String afterCode = page.isEmpty() ? null : page.get(page.size() - 1).getCode();
+                page = shard.fetchCountriesPage(filter, afterCode, SCAN_PAGE_SIZE);
+                position = 0;
+                lastPage = page.size() < SCAN_PAGE_SIZE;
+            }
+            return position < page.size();
+        }
+
+        // Only called after hasNext() returned true
+        private Country peek(){
+            return page.get(position);
+        }
+
+        private Country next(){
+            return page.get(position++);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.teamtreehouse.publicdata.dao;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.teamtreehouse.publicdata.model.IndicatorValue;
+import com.teamtreehouse.publicdata.stats.CorrelationStatistics;
+
+// An IndicatorDAO that keeps the yearly values of every country in the shard of ShardedCountryDAO holding the
+// country, so each shard can tell which of its countries have a history. The queries of one country go to its
+// shard alone; those across the countries ask every shard in turn and merge the values in year and code order,
+// and the correlations by year merge the accumulators of the shards, since every pair lies in one shard.
+// The shards must be given in the same order as to the ShardedCountryDAO. Like its writes, a merge that spans
+// several shards commits in each of them separately.
+public class ShardedIndicatorDAO implements IndicatorDAO{
+    private static final Comparator<IndicatorValue> BY_YEAR_AND_CODE = Comparator.comparingInt(IndicatorValue::getYear)
+            .thenComparing(IndicatorValue::getCountryCode);
+
+    private final List<SimpleIndicatorDAO> shards;
+
+    public ShardedIndicatorDAO(List<SimpleIndicatorDAO> shards){
+        if(shards.isEmpty()){
+            throw new IllegalArgumentException("At least one shard is needed.");
+        }
+        this.shards = new ArrayList<>(shards);
+    }
+
+    // Creates a DAO over one SimpleIndicatorDAO per database, given by their JDBC URLs
+    public static ShardedIndicatorDAO open(List<String> urls){
+        List<SimpleIndicatorDAO> shards = new ArrayList<>(urls.size());
+        for(String url : urls){
+            shards.add(new SimpleIndicatorDAO(url));
+        }
+        return new ShardedIndicatorDAO(shards);
+    }
+
+    private SimpleIndicatorDAO shardFor(String countryCode){
+        return shards.get(ShardedCountryDAO.shardOf(countryCode, shards.size()));
+    }
+
+    @Override
+    public void mergeValues(List<IndicatorValue> values) {
+        List<List<IndicatorValue>> parts = new ArrayList<>(shards.size());
+        for(int i = 0; i < shards.size(); i++){
+            parts.add(new ArrayList<>());
+        }
+        for(IndicatorValue value : values){
+            parts.get(ShardedCountryDAO.shardOf(value.getCountryCode(), shards.size())).add(value);
+        }
+        for(int i = 0; i < shards.size(); i++){
+            if(!parts.get(i).isEmpty()){
+                shards.get(i).mergeValues(parts.get(i));
+            }
+        }
+    }
+
+    @Override
+    public List<IndicatorValue> getValues(String indicator, int fromYear, int toYear) {
+        List<IndicatorValue> values = new ArrayList<>();
+        for(SimpleIndicatorDAO shard : shards){
+            values.addAll(shard.getValues(indicator, fromYear, toYear));
+        }
+        values.sort(BY_YEAR_AND_CODE);
+        return values;
+    }
+
+    @Override
+    public List<IndicatorValue> getValues(String countryCode, String indicator, int fromYear, int toYear) {
+        return shardFor(countryCode).getValues(countryCode, indicator, fromYear, toYear);
+    }
+
+    @Override
+    public SortedMap<Integer, Double> getCorrelationByYear(String firstIndicator, String secondIndicator,
+                                                           int fromYear, int toYear) {
+        SortedMap<Integer, CorrelationStatistics> correlations = new TreeMap<>();
+        for(SimpleIndicatorDAO shard : shards){
+            for(Map.Entry<Integer, CorrelationStatistics> correlation : shard.getCorrelationStatisticsByYear(
+                    firstIndicator, secondIndicator, fromYear, toYear).entrySet()){
+                correlations.merge(correlation.getKey(), correlation.getValue(), (merged, other) -> {
+                    merged.merge(other);
+                    return merged;
+                });
+            }
+        }
+        return SimpleIndicatorDAO.coefficients(correlations);
+    }
+
+    @Override
+    public SortedMap<Integer, Double> getMovingAverage(String countryCode, String indicator, int fromYear,
+                                                       int toYear, int window) {
+        return shardFor(countryCode).getMovingAverage(countryCode, indicator, fromYear, toYear, window);
+    }
+}
@@ -1,232 +1,538 @@
 package com.teamtreehouse.publicdata.dao;
 
+import org.h2.api.ErrorCode;
 import org.hibernate.Criteria;
+import org.hibernate.JDBCException;
+import org.hibernate.PessimisticLockException;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
-import org.hibernate.boot.MetadataSources;
-import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
-import org.hibernate.service.ServiceRegistry;
-
+import org.hibernate.StaleStateException;
+import org.hibernate.StatelessSession;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.exception.LockAcquisitionException;
+import org.hibernate.type.StandardBasicTypes;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
 
 public class SimpleCountryDAO implements CountryDAO{
-    private static final SessionFactory sessionFactory = buildSessionFactory();
+    private static final int SCROLL_FETCH_SIZE = 500;
+    // The number of codes a bulk update or delete sends in one statement and commits in one transaction
+    private static final int BULK_CHUNK_SIZE = 500;
+    // The number of times modifyCountry reads, changes and writes a country before it gives up on conflicts,
+    // and the longest pause before the first retry. The pause doubles with every attempt.
+    private static final int MAX_WRITE_ATTEMPTS = 10;
+    private static final long RETRY_BACKOFF_MILLIS = 2;
+    // The JDBC URL of the database, or null for the one of hibernate.cfg.xml
+    private final String url;
+    private final StatisticsMode statisticsMode;
+    private final int parallelism;
+    // The session of the unit of work this DAO is bound to, or null if every call opens its own session
+    private final Session boundSession;
+    private ParallelStatistics parallelStatistics;
+
+    // By default the statistics are aggregated by the database
+    public SimpleCountryDAO(){
+        this(StatisticsMode.DATABASE);
+    }
+
+    public SimpleCountryDAO(StatisticsMode statisticsMode){
+        this(statisticsMode, Runtime.getRuntime().availableProcessors());
+    }
+
+    // The parallelism is the number of threads the PARALLEL statistics mode uses
+    public SimpleCountryDAO(StatisticsMode statisticsMode, int parallelism){
+        this(null, statisticsMode, parallelism, null);
+    }
 
-    // Builds the session factory. A session factory is used to generate database sessions.
-    // A session is constituted of one or more SQL statements executed at a time.
-    private static SessionFactory buildSessionFactory(){
-        final ServiceRegistry registry = new StandardServiceRegistryBuilder().configure().build();
-        return new MetadataSources(registry).buildMetadata().buildSessionFactory();
+    // Works on another H2 database with the same schema, such as a shard or a read replica, given by its JDBC URL
+    // (e.g. jdbc:h2:./data/shard-0). The schema is created or updated on first use, like that of the main database.
+    public SimpleCountryDAO(String url, StatisticsMode statisticsMode){
+        this(url, statisticsMode, Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    private SimpleCountryDAO(String url, StatisticsMode statisticsMode, int parallelism, Session boundSession){
+        this.url = url;
+        this.statisticsMode = statisticsMode;
+        this.parallelism = parallelism;
+        this.boundSession = boundSession;
+    }
+
+    // Runs a read in the session of the unit of work, or in a session of its own that is closed afterwards
+    private <T> T read(Function<Session, T> work){
+        if(boundSession != null){
+            return work.apply(boundSession);
+        }
+
+        Session session = sessionFactory().openSession();
+        try{
+            return work.apply(session);
+        }finally{
+            session.close();
+        }
+    }
+
+    // Runs a write in the transaction of the unit of work, or in a session and transaction of its own
+    private void write(Consumer<Session> work){
+        if(boundSession != null){
+            work.accept(boundSession);
+            return;
+        }
+
+        inTransaction(session -> {
+            work.accept(session);
+            return null;
+        });
+    }
+
+    // Runs a write like write(Consumer), and returns the number of rows it changed
+    private int writeCounting(Function<Session, Integer> work){
+        if(boundSession != null){
+            return work.apply(boundSession);
+        }
+        return inTransaction(work);
+    }
+
+    // Opens a session, runs the work in one transaction and commits it. The transaction is rolled back
+    // if the work fails.
+    private <T> T inTransaction(Function<Session, T> work){
+        Session session = sessionFactory().openSession();
+        try{
+            session.beginTransaction();
+            T result = work.apply(session);
+            session.getTransaction().commit();
+            return result;
+        }catch(RuntimeException re){
+            if(session.getTransaction().getStatus().canRollback()){
+                session.getTransaction().rollback();
+            }
+            throw re;
+        }finally{
+            session.close();
+        }
+    }
+
+    // Runs several reads and writes against one session and one transaction. The DAO passed to the work
+    // is bound to that session, and the transaction commits once the work returns.
+    // Within the unit of work, update and delete the instances loaded by it, since they are attached to its session.
+    @Override
+    public <T> T inUnitOfWork(Function<CountryDAO, T> work) {
+        if(boundSession != null){
+            return work.apply(this);
+        }
+        return inTransaction(session -> work.apply(new SimpleCountryDAO(url, statisticsMode, parallelism, session)));
     }
 
     // Gets all the country objects available in the database.
     @Override
     @SuppressWarnings("unchecked")
     public List<Country> fetchAllCountries() {
-        Session session = sessionFactory.openSession();
-        Criteria criteria = session.createCriteria(Country.class);
-        List<Country> countries = criteria.list();
-        session.close();
+        return read(session -> {
+            Criteria criteria = session.createCriteria(Country.class);
+            criteria.setCacheable(true);
+            return (List<Country>) criteria.list();
+        });
+    }
+
+    // Passes every country matching the filter to the action, in code order, as the rows are read from the database.
+    // The rows are scrolled through a stateless session, so only the current country is held in memory.
+    @Override
+    public void forEachCountry(CountryFilter filter, Consumer<Country> action) {
+        StatelessSession session = openStatelessSession();
+        Criteria criteria = session.createCriteria(Country.class)
+                .addOrder(Order.asc("code"))
+                .setFetchSize(SCROLL_FETCH_SIZE)
+                .setReadOnly(true);
+        filter.applyTo(criteria);
+
+        ScrollableResults results = criteria.scroll(ScrollMode.FORWARD_ONLY);
+        try{
+            while(results.next()){
+                action.accept((Country) results.get(0));
+            }
+        }finally{
+            results.close();
+            session.close();
+        }
+    }
 
-        return countries;
+    // Opens a stateless session of its own, or within a unit of work one over the connection of the unit, so a scan
+    // sees the writes of the unit that weren't committed yet. The pending changes of the unit are flushed first.
+    private StatelessSession openStatelessSession(){
+        if(boundSession == null){
+            return sessionFactory().openStatelessSession();
+        }
+        boundSession.flush();
+        return sessionFactory().openStatelessSession(boundSession.doReturningWork(connection -> connection));
+    }
+
+    // Gets the page of countries matching the filter that comes right after the given code, in code order.
+    // Pass a null code for the first page. The page is found through the primary key (keyset pagination),
+    // so a page deep into the table costs the same as the first one.
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Country> fetchCountriesPage(CountryFilter filter, String afterCode, int pageSize) {
+        return read(session -> {
+            Criteria criteria = session.createCriteria(Country.class)
+                    .addOrder(Order.asc("code"))
+                    .setMaxResults(pageSize);
+            if(afterCode != null){
+                criteria.add(Restrictions.gt("code", afterCode));
+            }
+            filter.applyTo(criteria);
+            return (List<Country>) criteria.list();
+        });
     }
 
     // Gets a country object by a unique code you specify
     @Override
     public Country getCountryByCode(String code) {
-        Session session = sessionFactory.openSession();
-        Country country = session.get(Country.class, code);
-        session.close();
-        return country;
+        return read(session -> session.get(Country.class, code));
+    }
+
+    // Gets the countries whose name starts with the prefix, in name order. A case-sensitive search is a range
+    // scan of the name index. The index can't serve a case-insensitive search, which scans the table instead;
+    // NameIndexCountryDAO answers those from memory.
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Country> findCountriesByName(String prefix, boolean ignoreCase, int limit) {
+        return read(session -> {
+            Query query;
+            if(ignoreCase){
+                query = session.createQuery("from Country c where upper(c.name) like :pattern escape '!' " +
+                        "order by c.name, c.code")
+                        .setParameter("pattern", prefix.toUpperCase().replaceAll("[!%_]", "!$0") + "%");
+            }else{
+                query = session.createQuery("from Country c where c.name >= :prefix and c.name < :end " +
+                        "order by c.name, c.code")
+                        .setParameter("prefix", prefix)
+                        .setParameter("end", prefix + Character.MAX_VALUE);
+            }
+            return (List<Country>) query.setMaxResults(limit).list();
+        });
+    }
+
+    // Gets the countries whose value of the column is between min and max (inclusive), in value order, with a
+    // range scan of the index of the column
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Country> findCountriesInRange(CountryColumn column, double min, double max, int limit) {
+        String property = "c." + column.getPropertyName();
+        return read(session -> (List<Country>) session.createQuery("from Country c where " + property +
+                " between :min and :max order by " + property + ", c.code")
+                .setParameter("min", min)
+                .setParameter("max", max)
+                .setMaxResults(limit)
+                .list());
     }
 
     // Adds a country object to the database
     @Override
     public void addCountry(Country country) {
-        Session session = sessionFactory.openSession();
-        session.beginTransaction();
-        session.save(country);
-        session.getTransaction().commit();
-        session.close();
+        write(session -> session.save(country));
     }
 
     // Persists the changes you made to a specified country object
     @Override
     public void updateCountry(Country country) {
-        Session session = sessionFactory.openSession();
-        session.beginTransaction();
-        session.update(country);
-        session.getTransaction().commit();
-        session.close();
+        write(session -> session.update(country));
     }
 
-    // Deletes a country of your choice
+    // Reads the country with the given code, applies the change to it and writes it back in one transaction.
+    // If another writer changed or locked the row in between, the version check fails and the whole
+    // read-change-write is retried on the row as the other writer left it, after a random pause that grows with
+    // every attempt. Returns the written country, or null if there is no country with the code.
+    // Within a unit of work the change is written when the unit commits, and a conflict fails the unit.
     @Override
-    public void deleteCountry(Country country) {
-        Session session = sessionFactory.openSession();
-        session.beginTransaction();
-        session.delete(country);
-        session.getTransaction().commit();
-        session.close();
-    }
+    public Country modifyCountry(String code, Consumer<Country> change) {
+        Function<Session, Country> work = session -> {
+            Country country = session.get(Country.class, code);
+            if(country != null){
+                change.accept(country);
+                session.flush();
+            }
+            return country;
+        };
+        if(boundSession != null){
+            return work.apply(boundSession);
+        }
 
-    // Gets a list of all the countries that have an Internet Users value available
-    private List<Country> getNonNullInternetUsersCountries(){
-        return fetchAllCountries()
-                .stream()
-                .filter(country -> country.getInternetUsers() != null)
-                .collect(Collectors.toList());
+        for(int attempt = 1; ; attempt++){
+            try{
+                return inTransaction(work);
+            }catch(RuntimeException re){
+                if(attempt == MAX_WRITE_ATTEMPTS || !isConflict(re)){
+                    throw re;
+                }
+            }
+            backOff(attempt);
+        }
     }
 
-    // Find the country with the maximum Internet Usage percentage.
-    @Override
-    public Country getCountryWithMaxInternetUsage(){
+    // Tells whether a write failed because another transaction changed the same row: its version no longer
+    // matched, or H2 found the row changed or locked by a transaction that hadn't committed yet
+    private static boolean isConflict(RuntimeException re){
+        if(re instanceof StaleStateException || re instanceof LockAcquisitionException ||
+                re instanceof PessimisticLockException){
+            return true;
+        }
+        return re instanceof JDBCException && ((JDBCException) re).getErrorCode() == ErrorCode.CONCURRENT_UPDATE_1;
+    }
 
-        return getNonNullInternetUsersCountries().stream().max((o1, o2) -> {
-            if(o1.getInternetUsers() > o2.getInternetUsers()){
-                return 1;
-            }else if(o1.getInternetUsers() < o2.getInternetUsers()){
-                return -1;
-            }
-            return 0;
-        }).get();
+    private static void backOff(int attempt){
+        try{
+            Thread.sleep(ThreadLocalRandom.current().nextLong(RETRY_BACKOFF_MILLIS << (attempt - 1)) + 1);
+        }catch(InterruptedException ie){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry a write.", ie);
+        }
+    }
 
+    // Deletes a country of your choice, together with its yearly indicator values
+    @Override
+    public void deleteCountry(Country country) {
+        write(session -> {
+            deleteIndicatorValues(session, Collections.singletonList(country.getCode()));
+            session.delete(country);
+        });
     }
 
-    // Find the country with the minimum Internet Usage percentage.
+    // Inserts the countries that don't exist yet and updates the ones that do, in one transaction.
+    // Only the code, the name and the given columns are written, so the other columns of existing rows are kept.
+    // The rows are sent as a single JDBC batch of H2 MERGE statements, without loading any entity into the session.
+    // The version of an existing row is incremented, and a new row starts at version 0.
     @Override
-    public Country getCountryWithMinInternetUsage(){
+    public void mergeCountries(List<Country> countries, Set<CountryColumn> columns) {
+        StringBuilder columnNames = new StringBuilder("code, name");
+        StringBuilder parameters = new StringBuilder("?, ?");
+        for(CountryColumn column : columns){
+            columnNames.append(", ").append(column.getPropertyName());
+            parameters.append(", ?");
+        }
+        String sql = "MERGE INTO Country (" + columnNames + ", version) KEY (code) VALUES (" + parameters +
+                ", (SELECT COALESCE(MAX(version) + 1, 0) FROM Country WHERE code = ?))";
 
-        return getNonNullInternetUsersCountries().stream().max((o1, o2) -> {
-            if(o1.getInternetUsers() > o2.getInternetUsers()){
-                return -1;
-            }else if(o1.getInternetUsers() < o2.getInternetUsers()){
-                return 1;
+        if(boundSession != null){
+            // The pending changes of the unit of work go first, so they can't overwrite the merged rows
+            boundSession.flush();
+        }
+        write(session -> session.doWork(connection -> {
+            try(PreparedStatement statement = connection.prepareStatement(sql)){
+                for(Country country : countries){
+                    int index = 1;
+                    statement.setString(index++, country.getCode());
+                    statement.setString(index++, country.getName());
+                    for(CountryColumn column : columns){
+                        Double value = column.getValue(country);
+                        if(value == null){
+                            statement.setNull(index++, Types.DOUBLE);
+                        }else{
+                            statement.setDouble(index++, value);
+                        }
+                    }
+                    statement.setString(index, country.getCode());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
             }
-            return 0;
-        }).get();
-
+        }));
+        List<String> codes = new ArrayList<>(countries.size());
+        for(Country country : countries){
+            codes.add(country.getCode());
+        }
+        evict(codes);
     }
 
-    // Gets a list of all the countries that have an Adult Literacy rate value available.
-    private List<Country> getNonNullAdultLiteracyRateCountries(){
-        return fetchAllCountries()
-                .stream()
-                .filter(country -> country.getAdultLiteracyRate() != null)
-                .collect(Collectors.toList());
+    // Sets a column to one value, or clears it with a null value, for the countries with the given codes.
+    // It runs set-based HQL updates without loading any country, BULK_CHUNK_SIZE codes at a time, each chunk
+    // in a transaction of its own. Returns the number of rows changed; codes that aren't in the table are skipped.
+    // The versions of the changed rows are incremented.
+    @Override
+    public int updateColumn(CountryColumn column, Double value, Collection<String> codes) {
+        String hql = "update versioned Country set " + column.getPropertyName() + " = :value where code in (:codes)";
+        return inChunks(codes, (session, chunk) -> session.createQuery(hql)
+                .setParameter("value", value, StandardBasicTypes.DOUBLE)
+                .setParameterList("codes", chunk)
+                .executeUpdate());
     }
 
-    // Find the country with the maximum Adult Literacy percentage.
+    // Sets a column of every country in the map to its own value, as JDBC batches of UPDATE statements of
+    // BULK_CHUNK_SIZE rows, each in a transaction of its own. Nothing is loaded and no row is inserted.
+    // The versions of the changed rows are incremented.
     @Override
-    public Country getCountryWithMaxAdultLiteracy(){
-
-        return getNonNullAdultLiteracyRateCountries()
-                .stream()
-                .max((o1, o2) -> {
-            if(o1.getAdultLiteracyRate() > o2.getAdultLiteracyRate()){
-                return 1;
-            }else if(o1.getAdultLiteracyRate() < o2.getAdultLiteracyRate()){
-                return -1;
+    public int updateValues(CountryColumn column, Map<String, Double> valuesByCode) {
+        String sql = "UPDATE Country SET " + column.getPropertyName() + " = ?, version = version + 1 WHERE code = ?";
+        return inChunks(valuesByCode.keySet(), (session, chunk) -> session.doReturningWork(connection -> {
+            try(PreparedStatement statement = connection.prepareStatement(sql)){
+                for(String code : chunk){
+                    Double value = valuesByCode.get(code);
+                    if(value == null){
+                        statement.setNull(1, Types.DOUBLE);
+                    }else{
+                        statement.setDouble(1, value);
+                    }
+                    statement.setString(2, code);
+                    statement.addBatch();
+                }
+                int changed = 0;
+                for(int count : statement.executeBatch()){
+                    changed += Math.max(count, 0);
+                }
+                return changed;
             }
-            return 0;
-        }).get();
-
+        }));
     }
 
-    // Find the country with the minimum Adult Literacy percentage.
+    // Deletes the countries with the given codes with set-based HQL deletes, BULK_CHUNK_SIZE codes at a time.
+    // Their yearly indicator values are deleted in the same transaction as every chunk, so none is left without
+    // its country. Returns the number of countries deleted.
     @Override
-    public Country getCountryWithMinAdultLiteracy(){
+    public int deleteCountries(Collection<String> codes) {
+        return inChunks(codes, (session, chunk) -> {
+            deleteIndicatorValues(session, chunk);
+            return session.createQuery("delete from Country where code in (:codes)")
+                    .setParameterList("codes", chunk)
+                    .executeUpdate();
+        });
+    }
 
-        return getNonNullAdultLiteracyRateCountries()
-                .stream()
-                .max((o1, o2) -> {
-            if(o1.getAdultLiteracyRate() > o2.getAdultLiteracyRate()){
-                return -1;
-            }else if(o1.getAdultLiteracyRate() < o2.getAdultLiteracyRate()){
-                return 1;
-            }
-            return 0;
-        }).get();
+    private static void deleteIndicatorValues(Session session, Collection<String> codes){
+        session.createQuery("delete from IndicatorValue where countryCode in (:codes)")
+                .setParameterList("codes", codes)
+                .executeUpdate();
     }
 
-    // Get the correlation coefficient using the Internet Usage and Adult Literacy column values
+    // Gets the codes of the countries that have no value in any column and no yearly indicator value, in code order
     @Override
-    public double getCorrelationCoefficient(){
-        List<Double> internetUsageList = getInternetUsageValuesSubtractedByMeanList();
-        List<Double> adultLiteracyList = getAdultLiteracyValuesSubtractedByMeanList();
-        Double product = 0.0;
-        Double internetUsageSquared = 0.0;
-        Double adultLiteracySquared = 0.0;
-
-        for(int i = 0; i < internetUsageList.size();i++){
-            product = product + internetUsageList.get(i) * adultLiteracyList.get(i);
-            internetUsageSquared = internetUsageSquared + Math.pow(internetUsageList.get(i), 2);
-            adultLiteracySquared = adultLiteracySquared + Math.pow(adultLiteracyList.get(i), 2);
+    @SuppressWarnings("unchecked")
+    public List<String> fetchCodesWithoutValues() {
+        StringBuilder hql = new StringBuilder("select c.code from Country c where not exists " +
+                "(select v.year from IndicatorValue v where v.countryCode = c.code)");
+        for(CountryColumn column : CountryColumn.values()){
+            hql.append(" and c.").append(column.getPropertyName()).append(" is null");
         }
+        return read(session -> (List<String>) session.createQuery(hql.append(" order by c.code").toString()).list());
+    }
 
-        return product / Math.sqrt(internetUsageSquared * adultLiteracySquared);
+    // Runs a bulk write over the codes, BULK_CHUNK_SIZE at a time, and sums the rows the chunks changed.
+    // Within a unit of work the pending changes of the unit are flushed first, and the countries it loaded are
+    // evicted afterwards, since the statements bypass its session.
+    private int inChunks(Collection<String> codes, BiFunction<Session, List<String>, Integer> work){
+        if(boundSession != null){
+            boundSession.flush();
+        }
+        List<String> codeList = new ArrayList<>(codes);
+        int changed = 0;
+        for(int from = 0; from < codeList.size(); from += BULK_CHUNK_SIZE){
+            List<String> chunk = codeList.subList(from, Math.min(codeList.size(), from + BULK_CHUNK_SIZE));
+            changed += writeCounting(session -> work.apply(session, chunk));
+        }
+        evict(codeList);
+        return changed;
     }
 
-    // Gets the mean value of the Internet Usage column
-    private double getInternetUsageMeanValue(){
-        double internetUsageMeanValue = 0.0;
-        double counter = 0.0;
+    // Drops the countries with the given codes from the session of the unit of work, if they were loaded by it,
+    // and from the second-level and query caches, since statements sent through JDBC bypass both.
+    // Reading them again gets the written values.
+    private void evict(Collection<String> codes){
+        if(boundSession != null){
+            for(String code : codes){
+                boundSession.evict(boundSession.load(Country.class, code));
+            }
+        }
+        sessionFactory().getCache().evictEntityRegion(Country.class);
+        sessionFactory().getCache().evictQueryRegions();
+    }
 
-        for(Country country : getNonNullInternetUsersCountries()){
-                internetUsageMeanValue += country.getInternetUsers();
-                counter += 1.0;
+    // Gathers the statistics of two numeric columns and their correlation coefficient, either in a single scan
+    // of the Country table, with aggregate queries run by the database or over code ranges scanned in parallel.
+    // Within a unit of work the parallel mode scans the table in the unit's own session instead, so it sees
+    // the writes that weren't committed yet.
+    @Override
+    public CountryStatistics getStatistics(CountryColumn firstColumn, CountryColumn secondColumn){
+        if(statisticsMode == StatisticsMode.DATABASE){
+            return read(session -> AggregateQueries.getStatistics(session, firstColumn, secondColumn));
         }
 
-        return internetUsageMeanValue / counter;
-    }
+        if(statisticsMode == StatisticsMode.PARALLEL && boundSession == null){
+            return getParallelStatistics().getStatistics(firstColumn, secondColumn);
+        }
 
-    // Gets the mean value of the Adult Literacy column
-    private double getAdultLiteracyMeanValue(){
-        double adultLiteracyMeanValue = 0.0;
-        double counter = 0.0;
+        CountryStatistics statistics = new CountryStatistics(firstColumn, secondColumn);
 
-        for(Country country : getNonNullAdultLiteracyRateCountries()){
-                adultLiteracyMeanValue += country.getAdultLiteracyRate();
-                counter += 1.0;
+        for(Country country : fetchAllCountries()){
+            statistics.add(country);
         }
 
-        return adultLiteracyMeanValue / counter;
+        return statistics;
     }
 
-    private List<Country> getNonNullInternetUsageAndAdultLiteracyRateCountries(){
-        return fetchAllCountries()
-                .stream()
-                .filter(country -> country.getInternetUsers() != null && country.getAdultLiteracyRate() != null)
-                .collect(Collectors.toList());
+    // Gathers the statistics of any number of numeric columns and the correlation matrix of them in one scan of
+    // the Country table. The percentiles come from sketches filled during the scan, so unlike the two column
+    // statistics the DATABASE mode streams the rows instead of running aggregate queries.
+    @Override
+    public MultiColumnStatistics getStatistics(List<CountryColumn> columns){
+        return aggregate(() -> new MultiColumnStatistics(columns),
+                MultiColumnStatistics::add, MultiColumnStatistics::merge);
     }
 
-    //This method is used to calculate the correlation coefficient
-    private List<Double> getInternetUsageValuesSubtractedByMeanList(){
-        List<Double> internetUsageList = new ArrayList<>();
+    // Gathers the countries with the greatest and least values of a column in one scan of the Country table,
+    // keeping only size countries in memory for each end instead of sorting the table
+    @Override
+    public ColumnRanking getRanking(CountryColumn column, int size){
+        return aggregate(() -> new ColumnRanking(column, size), ColumnRanking::add, ColumnRanking::merge);
+    }
 
-        for(Country country : getNonNullInternetUsageAndAdultLiteracyRateCountries()){
-                internetUsageList.add(
-                        country.getInternetUsers() -
-                                getInternetUsageMeanValue());
+    // Fills an accumulator in one scan of the Country table: streamed through a stateless session, over the
+    // listing of fetchAllCountries() in the IN_MEMORY mode, or over code ranges scanned in parallel whose
+    // accumulators are merged. Within a unit of work the parallel mode streams the rows instead.
+    private <S> S aggregate(Supplier<S> factory, BiConsumer<S, Country> add, BiConsumer<S, S> merge){
+        if(statisticsMode == StatisticsMode.PARALLEL && boundSession == null){
+            return getParallelStatistics().aggregate(factory, add, merge);
         }
 
-        return internetUsageList;
+        S accumulator = factory.get();
+        if(statisticsMode != StatisticsMode.IN_MEMORY){
+            forEachCountry(new CountryFilter(), country -> add.accept(accumulator, country));
+        }else{
+            for(Country country : fetchAllCountries()){
+                add.accept(accumulator, country);
+            }
+        }
+        return accumulator;
     }
 
-    // This method is used to calculate the correlation coefficient
-    private List<Double> getAdultLiteracyValuesSubtractedByMeanList(){
-        List<Double> adultLiteracyList = new ArrayList<>();
-
-        for(Country country : getNonNullInternetUsageAndAdultLiteracyRateCountries()){
-                adultLiteracyList.add(
-                        country.getAdultLiteracyRate() -
-                                getAdultLiteracyMeanValue());
+    private synchronized ParallelStatistics getParallelStatistics(){
+        if(parallelStatistics == null){
+            parallelStatistics = new ParallelStatistics(sessionFactory(), parallelism);
         }
+        return parallelStatistics;
+    }
 
-        return adultLiteracyList;
+    // The session factory of the database, built on first use unless the application started it in the background
+    private SessionFactory sessionFactory(){
+        return SessionFactoryProvider.getSessionFactory(url);
     }
 }
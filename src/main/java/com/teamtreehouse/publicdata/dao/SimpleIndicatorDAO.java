@@ -0,0 +1,185 @@
+package com.teamtreehouse.publicdata.dao;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.teamtreehouse.publicdata.model.IndicatorValue;
+import com.teamtreehouse.publicdata.stats.CorrelationStatistics;
+
+public class SimpleIndicatorDAO implements IndicatorDAO{
+    private static final int FETCH_SIZE = 1000;
+    // The JDBC URL of the database, or null for the one of hibernate.cfg.xml
+    private final String url;
+
+    public SimpleIndicatorDAO(){
+        this(null);
+    }
+
+    // Works on another H2 database with the same schema, such as a shard, given by its JDBC URL
+    public SimpleIndicatorDAO(String url){
+        this.url = url;
+    }
+
+    // Inserts the values that don't exist yet and updates the ones that do, as one JDBC batch in one transaction
+    @Override
+    public void mergeValues(List<IndicatorValue> values) {
+        Session session = sessionFactory().openSession();
+        try{
+            session.beginTransaction();
+            session.doWork(connection -> {
+                try(PreparedStatement statement = connection.prepareStatement("MERGE INTO IndicatorValue " +
+                        "(countryCode, indicator, year, value) KEY (countryCode, indicator, year) VALUES (?, ?, ?, ?)")){
+                    for(IndicatorValue value : values){
+                        statement.setString(1, value.getCountryCode());
+                        statement.setString(2, value.getIndicator());
+                        statement.setInt(3, value.getYear());
+                        statement.setDouble(4, value.getValue());
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+            });
+            session.getTransaction().commit();
+        }catch(RuntimeException re){
+            if(session.getTransaction().getStatus().canRollback()){
+                session.getTransaction().rollback();
+            }
+            throw re;
+        }finally{
+            session.close();
+        }
+    }
+
+    // Gets the values of an indicator for every country between two years (inclusive), ordered by year and country.
+    // The query is answered from the (indicator, year) index.
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<IndicatorValue> getValues(String indicator, int fromYear, int toYear) {
+        StatelessSession session = sessionFactory().openStatelessSession();
+        try{
+            return session.createQuery("from IndicatorValue v where v.indicator = :indicator " +
+                    "and v.year between :fromYear and :toYear order by v.year, v.countryCode")
+                    .setString("indicator", indicator)
+                    .setInteger("fromYear", fromYear)
+                    .setInteger("toYear", toYear)
+                    .setFetchSize(FETCH_SIZE)
+                    .list();
+        }finally{
+            session.close();
+        }
+    }
+
+    // Gets the values of an indicator for one country between two years (inclusive), ordered by year.
+    // The query is a range scan of the primary key.
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<IndicatorValue> getValues(String countryCode, String indicator, int fromYear, int toYear) {
+        StatelessSession session = sessionFactory().openStatelessSession();
+        try{
+            return session.createQuery("from IndicatorValue v where v.countryCode = :countryCode " +
+                    "and v.indicator = :indicator and v.year between :fromYear and :toYear order by v.year")
+                    .setString("countryCode", countryCode)
+                    .setString("indicator", indicator)
+                    .setInteger("fromYear", fromYear)
+                    .setInteger("toYear", toYear)
+                    .list();
+        }finally{
+            session.close();
+        }
+    }
+
+    // Gets, for every year between fromYear and toYear, the correlation coefficient of two indicators across
+    // the countries that have a value for both of them that year. The pairs come from one self join of the
+    // table and are streamed into one accumulator per year. Years with less than two pairs are left out.
+    @Override
+    public SortedMap<Integer, Double> getCorrelationByYear(String firstIndicator, String secondIndicator,
+                                                           int fromYear, int toYear) {
+        return coefficients(getCorrelationStatisticsByYear(firstIndicator, secondIndicator, fromYear, toYear));
+    }
+
+    // The accumulators behind getCorrelationByYear, which ShardedIndicatorDAO merges across the shards
+    SortedMap<Integer, CorrelationStatistics> getCorrelationStatisticsByYear(String firstIndicator,
+                                                                             String secondIndicator,
+                                                                             int fromYear, int toYear){
+        SortedMap<Integer, CorrelationStatistics> correlations = new TreeMap<>();
+        StatelessSession session = sessionFactory().openStatelessSession();
+        try{
+            ScrollableResults results = session.createQuery("select a.year, a.value, b.value " +
+                    "from IndicatorValue a, IndicatorValue b " +
+                    "where a.indicator = :first and b.indicator = :second " +
+                    "and a.countryCode = b.countryCode and a.year = b.year " +
+                    "and a.year between :fromYear and :toYear")
+                    .setString("first", firstIndicator)
+                    .setString("second", secondIndicator)
+                    .setInteger("fromYear", fromYear)
+                    .setInteger("toYear", toYear)
+                    .setFetchSize(FETCH_SIZE)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            try{
+                while(results.next()){
+                    correlations.computeIfAbsent(results.getInteger(0), year -> new CorrelationStatistics())
+                            .add(results.getDouble(1), results.getDouble(2));
+                }
+            }finally{
+                results.close();
+            }
+        }finally{
+            session.close();
+        }
+        return correlations;
+    }
+
+    // The coefficients of the years with at least two pairs
+    static SortedMap<Integer, Double> coefficients(SortedMap<Integer, CorrelationStatistics> correlations){
+        SortedMap<Integer, Double> coefficients = new TreeMap<>();
+        for(Map.Entry<Integer, CorrelationStatistics> correlation : correlations.entrySet()){
+            if(correlation.getValue().getCount() >= 2){
+                coefficients.put(correlation.getKey(), correlation.getValue().getCorrelationCoefficient());
+            }
+        }
+        return coefficients;
+    }
+
+    // Gets the trailing moving average of an indicator for one country: for every year between fromYear and
+    // toYear that has a value, the mean of the values in the window of years ending with it.
+    // Years without a value inside the window are skipped, not counted as zero.
+    @Override
+    public SortedMap<Integer, Double> getMovingAverage(String countryCode, String indicator, int fromYear,
+                                                       int toYear, int window) {
+        if(window < 1){
+            throw new IllegalArgumentException("The window must hold at least one year.");
+        }
+
+        SortedMap<Integer, Double> averages = new TreeMap<>();
+        Deque<IndicatorValue> inWindow = new ArrayDeque<>();
+        double sum = 0.0;
+
+        for(IndicatorValue value : getValues(countryCode, indicator, fromYear - window + 1, toYear)){
+            inWindow.addLast(value);
+            sum += value.getValue();
+            while(inWindow.getFirst().getYear() <= value.getYear() - window){
+                sum -= inWindow.removeFirst().getValue();
+            }
+            if(value.getYear() >= fromYear){
+                averages.put(value.getYear(), sum / inWindow.size());
+            }
+        }
+        return averages;
+    }
+
+    // The session factory of the database, built on first use unless the application started it in the background
+    private SessionFactory sessionFactory(){
+        return SessionFactoryProvider.getSessionFactory(url);
+    }
+}
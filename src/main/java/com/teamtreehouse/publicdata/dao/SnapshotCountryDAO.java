@@ -0,0 +1,186 @@
+package com.teamtreehouse.publicdata.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.CountrySnapshot;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
+
+// A CountryDAO that answers the statistics from a CountrySnapshot instead of the database.
+// The snapshot is loaded on the first statistics call and patched after every write of this DAO commits.
+// It can be shared by several threads. A snapshot never changes once it is published: a write builds a patched
+// copy and swaps it in, so the readers take no lock and always see the table as it was after some commit,
+// never half of a write, and a long statistics call never holds up the writers.
+public class SnapshotCountryDAO extends ForwardingCountryDAO{
+    private volatile CountrySnapshot snapshot;
+    // The fields below are only used while holding the lock of this DAO, which is never held while the table is read.
+    // Incremented by every invalidation, so a load that overlapped one can tell it is out of date.
+    private long generation;
+    // The number of loads running, and the patches the writes made meanwhile. A load may have missed those writes,
+    // so they are replayed onto it before it is published; replaying one it didn't miss changes nothing.
+    private int loads;
+    private final List<UnaryOperator<CountrySnapshot>> pendingPatches = new ArrayList<>();
+
+    public SnapshotCountryDAO(CountryDAO delegate){
+        super(delegate);
+    }
+
+    // Gets the snapshot, loading it from the delegate if it isn't loaded yet. The patches of the writes that
+    // overlapped the load are replayed onto it before it is published. A load that overlapped an invalidation
+    // isn't published, and is only returned to the caller that loaded it.
+    public CountrySnapshot getSnapshot(){
+        CountrySnapshot current = snapshot;
+        if(current != null){
+            return current;
+        }
+
+        long loadGeneration;
+        synchronized(this){
+            loadGeneration = generation;
+            loads++;
+        }
+        try{
+            CountrySnapshot loaded = CountrySnapshot.of(delegate.fetchAllCountries());
+            synchronized(this){
+                if(snapshot != null){
+                    return snapshot;
+                }
+                for(UnaryOperator<CountrySnapshot> patch : pendingPatches){
+                    loaded = patch.apply(loaded);
+                }
+                if(generation == loadGeneration){
+                    snapshot = loaded;
+                    pendingPatches.clear();
+                }
+                return loaded;
+            }
+        }finally{
+            synchronized(this){
+                if(--loads == 0){
+                    pendingPatches.clear();
+                }
+            }
+        }
+    }
+
+    // Drops the snapshot, so the next statistics call loads it again. Call it when the table was
+    // changed without going through this DAO.
+    public synchronized void invalidate(){
+        generation++;
+        snapshot = null;
+        pendingPatches.clear();
+    }
+
+    @Override
+    public void addCountry(Country country) {
+        delegate.addCountry(country);
+        put(country);
+    }
+
+    @Override
+    public void updateCountry(Country country) {
+        delegate.updateCountry(country);
+        put(country);
+    }
+
+    @Override
+    public Country modifyCountry(String code, Consumer<Country> change) {
+        Country country = delegate.modifyCountry(code, change);
+        if(country != null){
+            put(country);
+        }
+        return country;
+    }
+
+    @Override
+    public void deleteCountry(Country country) {
+        delegate.deleteCountry(country);
+        remove(Collections.singletonList(country.getCode()));
+    }
+
+    // Merged rows may only carry some of the columns, so the snapshot is loaded again on the next statistics call
+    @Override
+    public void mergeCountries(List<Country> countries, Set<CountryColumn> columns) {
+        delegate.mergeCountries(countries, columns);
+        invalidate();
+    }
+
+    // A bulk update only carries one column of the rows, so the snapshot is loaded again on the next call
+    @Override
+    public int updateColumn(CountryColumn column, Double value, Collection<String> codes) {
+        int changed = delegate.updateColumn(column, value, codes);
+        invalidate();
+        return changed;
+    }
+
+    @Override
+    public int updateValues(CountryColumn column, Map<String, Double> valuesByCode) {
+        int changed = delegate.updateValues(column, valuesByCode);
+        invalidate();
+        return changed;
+    }
+
+    // The deleted countries are taken out of the snapshot in one copy
+    @Override
+    public int deleteCountries(Collection<String> codes) {
+        int changed = delegate.deleteCountries(codes);
+        remove(codes);
+        return changed;
+    }
+
+    @Override
+    public CountryStatistics getStatistics(CountryColumn firstColumn, CountryColumn secondColumn) {
+        return getSnapshot().getStatistics(firstColumn, secondColumn);
+    }
+
+    @Override
+    public MultiColumnStatistics getStatistics(List<CountryColumn> columns) {
+        return getSnapshot().getStatistics(columns);
+    }
+
+    @Override
+    public ColumnRanking getRanking(CountryColumn column, int size) {
+        return getSnapshot().getRanking(column, size);
+    }
+
+    // The unit of work writes through a DAO bound to its own session, so the snapshot can't follow its
+    // changes one by one and is dropped once it commits
+    @Override
+    public <T> T inUnitOfWork(Function<CountryDAO, T> work) {
+        T result = delegate.inUnitOfWork(work);
+        invalidate();
+        return result;
+    }
+
+    // The patches keep copies of what was written, since a patch may be replayed after the caller changed it
+    private void put(Country country){
+        Country written = new Country(country);
+        patch(current -> current.with(written));
+    }
+
+    private void remove(Collection<String> codes){
+        List<String> removed = new ArrayList<>(codes);
+        patch(current -> current.without(removed));
+    }
+
+    // Swaps in a patched copy of the snapshot, if one is loaded, or keeps the patch for the loads that are running.
+    // The writers patch one at a time, but the readers keep using the snapshot they got while the copy is built.
+    private synchronized void patch(UnaryOperator<CountrySnapshot> change){
+        if(snapshot != null){
+            snapshot = change.apply(snapshot);
+        }else if(loads > 0){
+            pendingPatches.add(change);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.teamtreehouse.publicdata.dao;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+// Records when each phase of the startup ended, as the time since the JVM started, so the cold start latency
+// can be tracked and the phases that run in the background can be told apart from the ones the user waits for.
+public class StartupTimings {
+    private static final List<Phase> phases = new ArrayList<>();
+
+    private StartupTimings(){}
+
+    // Records that a phase ended now and took the given time
+    public static synchronized void record(String name, long elapsedNanos){
+        phases.add(new Phase(name, ManagementFactory.getRuntimeMXBean().getUptime(), elapsedNanos / 1_000_000));
+    }
+
+    // Records that a phase ended now, without a duration of its own, e.g. the menu being shown
+    public static void mark(String name){
+        record(name, 0);
+    }
+
+    public static synchronized String report(){
+        StringBuilder report = new StringBuilder(String.format("Startup phases (ms since the JVM started):%n"));
+        for(Phase phase : phases){
+            report.append(String.format("  %-20s %6d", phase.name, phase.endedAtMillis));
+            if(phase.elapsedMillis > 0){
+                report.append(String.format("  (took %d)", phase.elapsedMillis));
+            }
+            report.append(String.format("%n"));
+        }
+        return report.toString();
+    }
+
+    private static class Phase {
+        private final String name;
+        private final long endedAtMillis;
+        private final long elapsedMillis;
+
+        Phase(String name, long endedAtMillis, long elapsedMillis){
+            this.name = name;
+            this.endedAtMillis = endedAtMillis;
+            this.elapsedMillis = elapsedMillis;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.teamtreehouse.publicdata.dao;
+
+// Selects where SimpleCountryDAO calculates its statistics.
+public enum StatisticsMode {
+    // Loads every country and aggregates the values in Java
+    IN_MEMORY,
+    // Sends the aggregation to the database, so only scalars or the one winning row come back
+    DATABASE,
+    // Scans ranges of country codes in parallel on a ForkJoinPool and merges the partial results
+    PARALLEL
+}
@@ -0,0 +1,348 @@
+package com.teamtreehouse.publicdata.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.teamtreehouse.publicdata.dao.AsyncCountryDAO;
+import com.teamtreehouse.publicdata.dao.CountryDAO;
+import com.teamtreehouse.publicdata.dao.CountryFilter;
+import com.teamtreehouse.publicdata.json.JsonWriter;
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.ColumnStatistics;
+import com.teamtreehouse.publicdata.stats.CorrelationStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
+
+// Serves the countries and their statistics as JSON over HTTP, with the HttpServer of the JDK. Every GET is read-only:
+//  /countries?name=<part>&after=<code>&limit=<n>   a page of countries in code order, and the code the next page
+//                                                  starts after (null on the last page)
+//  /countries?prefix=<prefix>&limit=<n>            the countries whose name starts with the prefix, ignoring case
+//  /countries?column=<column>&min=<x>&max=<y>&limit=<n>  the countries whose value of the column is in the range
+//  /countries?codes=<code>,<code>                  the countries with the codes, looked up concurrently
+//  /countries/<code>                               one country, or 404
+//  /statistics?columns=<column>,<column>           count, mean, standard deviation, min, max, median and 90th
+//                                                  percentile of the columns (all by default) and their correlations
+//  /ranking/<column>?size=<n>                      the countries with the greatest and least values of a column
+// The requests are handled by a fixed pool of threads with a bounded queue. Once the queue is full, the thread
+// accepting the connections runs the request itself, which stops it from accepting more until it is done.
+// The DAO is called from all the pool threads at once, so it must be thread safe.
+public class QueryServer {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int DEFAULT_RANKING_SIZE = 10;
+    private static final int MAX_RANKING_SIZE = 1000;
+    private static final int QUEUE_CAPACITY_PER_THREAD = 64;
+    private static final int STOP_DELAY_SECONDS = 1;
+    // Read once, when the first HttpServer is made
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private final CountryDAO countryDAO;
+    // Sends the lookups of a multi-code request at once, instead of one round-trip after the other
+    private final ExecutorService lookupExecutor = AsyncCountryDAO.newExecutor();
+    private final AsyncCountryDAO asyncCountryDAO;
+    private final HttpServer server;
+    private final ThreadPoolExecutor executor;
+
+    // Binds the server to the address; port 0 picks a free port. Nothing is served until start() is called.
+    public QueryServer(CountryDAO countryDAO, InetSocketAddress address, int threads) throws IOException{
+        this.countryDAO = countryDAO;
+        this.asyncCountryDAO = new AsyncCountryDAO(countryDAO, lookupExecutor);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "query-server-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_CAPACITY_PER_THREAD), threadFactory,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        // Without TCP_NODELAY a small body waits for the delayed ACK of the headers sent before it, about 40 ms
+        if(System.getProperty(NO_DELAY_PROPERTY) == null){
+            System.setProperty(NO_DELAY_PROPERTY, "true");
+        }
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/countries", exchange -> handle(exchange, this::countries));
+        server.createContext("/statistics", exchange -> handle(exchange, this::statistics));
+        server.createContext("/ranking", exchange -> handle(exchange, this::ranking));
+    }
+
+    public void start(){
+        server.start();
+    }
+
+    // Stops accepting requests, gives the running ones a moment to finish, and stops the pool
+    public void stop(){
+        server.stop(STOP_DELAY_SECONDS);
+        executor.shutdown();
+        lookupExecutor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private interface Handler {
+        // Writes the response of a request to the JSON writer, or returns false if there is nothing at the path
+        boolean respond(String path, Map<String, String> parameters, JsonWriter json);
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException{
+        String path = exchange.getRequestURI().getPath();
+        int status = 200;
+        JsonWriter json = new JsonWriter();
+        try{
+            if(!exchange.getRequestMethod().equals("GET")){
+                status = 405;
+                json = error("Only GET requests are served.");
+            }else if(!handler.respond(path, parseQuery(exchange.getRequestURI().getRawQuery()), json)){
+                status = 404;
+                json = error("There is nothing at " + path + ".");
+            }
+        }catch(IllegalArgumentException iae){
+            status = 400;
+            json = error(iae.getMessage());
+        }catch(RuntimeException re){
+            // The details stay in the server log, since they may tell a client about the database behind it
+            System.err.printf("The request %s failed:%n", exchange.getRequestURI());
+            re.printStackTrace();
+            status = 500;
+            json = error("The request failed.");
+        }
+
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try(OutputStream out = exchange.getResponseBody()){
+            out.write(body);
+        }
+    }
+
+    private boolean countries(String path, Map<String, String> parameters, JsonWriter json){
+        String code = subPath(path, "/countries");
+        if(code == null){
+            return false;
+        }
+        if(!code.isEmpty()){
+            Country country = countryDAO.getCountryByCode(code.toUpperCase());
+            if(country == null){
+                return false;
+            }
+            writeCountry(json, country);
+            return true;
+        }
+
+        int limit = parseInt(parameters, "limit", DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE);
+        if(parameters.containsKey("codes")){
+            List<String> codes = new ArrayList<>();
+            for(String listed : parameters.get("codes").split(",")){
+                if(!listed.trim().isEmpty()){
+                    codes.add(listed.trim().toUpperCase());
+                }
+            }
+            if(codes.size() > MAX_PAGE_SIZE){
+                throw new IllegalArgumentException("At most " + MAX_PAGE_SIZE + " codes can be looked up at once.");
+            }
+            List<Country> countries = new ArrayList<>();
+            for(Country country : AsyncCountryDAO.await(asyncCountryDAO.getCountriesByCode(codes))){
+                if(country != null){
+                    countries.add(country);
+                }
+            }
+            writeCountries(json, countries);
+            return true;
+        }
+        if(parameters.containsKey("prefix")){
+            writeCountries(json, countryDAO.findCountriesByName(parameters.get("prefix"), true, limit));
+            return true;
+        }
+        if(parameters.containsKey("column")){
+            CountryColumn column = CountryColumn.fromPropertyName(parameters.get("column"));
+            writeCountries(json, countryDAO.findCountriesInRange(column, parseDouble(parameters, "min", -Double.MAX_VALUE),
+                    parseDouble(parameters, "max", Double.MAX_VALUE), limit));
+            return true;
+        }
+
+        CountryFilter filter = new CountryFilter().withNameContaining(parameters.getOrDefault("name", ""));
+        List<Country> page = countryDAO.fetchCountriesPage(filter, parameters.get("after"), limit);
+        json.beginObject().name("countries").beginArray();
+        for(Country country : page){
+            writeCountry(json, country);
+        }
+        json.endArray().member("next", page.size() == limit ? page.get(page.size() - 1).getCode() : null).endObject();
+        return true;
+    }
+
+    private boolean statistics(String path, Map<String, String> parameters, JsonWriter json){
+        if(!"".equals(subPath(path, "/statistics"))){
+            return false;
+        }
+        List<CountryColumn> columns = new ArrayList<>();
+        if(parameters.containsKey("columns")){
+            for(String name : parameters.get("columns").split(",")){
+                columns.add(CountryColumn.fromPropertyName(name.trim()));
+            }
+        }else{
+            columns.addAll(Arrays.asList(CountryColumn.values()));
+        }
+
+        MultiColumnStatistics statistics = countryDAO.getStatistics(columns);
+        json.beginObject().name("columns").beginArray();
+        for(CountryColumn column : columns){
+            ColumnStatistics columnStatistics = statistics.getColumnStatistics(column);
+            json.beginObject()
+                    .member("column", column.getPropertyName())
+                    .member("count", columnStatistics.getCount())
+                    .member("mean", columnStatistics.getMean())
+                    .member("standardDeviation", columnStatistics.getStandardDeviation())
+                    .member("median", statistics.getPercentile(column, 50))
+                    .member("p90", statistics.getPercentile(column, 90));
+            json.name("min");
+            writeExtreme(json, columnStatistics.getCountryWithMin(), columnStatistics.getMin());
+            json.name("max");
+            writeExtreme(json, columnStatistics.getCountryWithMax(), columnStatistics.getMax());
+            json.endObject();
+        }
+        json.endArray().name("correlations").beginArray();
+        for(int i = 0; i < columns.size(); i++){
+            for(int j = i + 1; j < columns.size(); j++){
+                CorrelationStatistics correlation = statistics.getCorrelation(columns.get(i), columns.get(j));
+                json.beginObject()
+                        .member("firstColumn", columns.get(i).getPropertyName())
+                        .member("secondColumn", columns.get(j).getPropertyName())
+                        .member("count", correlation.getCount())
+                        .member("coefficient", correlation.getCorrelationCoefficient())
+                        .endObject();
+            }
+        }
+        json.endArray().endObject();
+        return true;
+    }
+
+    private boolean ranking(String path, Map<String, String> parameters, JsonWriter json){
+        String columnName = subPath(path, "/ranking");
+        if(columnName == null || columnName.isEmpty()){
+            return false;
+        }
+        CountryColumn column = CountryColumn.fromPropertyName(columnName);
+        int size = parseInt(parameters, "size", DEFAULT_RANKING_SIZE, MAX_RANKING_SIZE);
+        ColumnRanking ranking = countryDAO.getRanking(column, size);
+
+        json.beginObject().member("column", column.getPropertyName()).name("greatest").beginArray();
+        ranking.getGreatest().forEach(country -> writeCountry(json, country));
+        json.endArray().name("least").beginArray();
+        ranking.getLeast().forEach(country -> writeCountry(json, country));
+        json.endArray().endObject();
+        return true;
+    }
+
+    private static void writeCountries(JsonWriter json, List<Country> countries){
+        json.beginObject().name("countries").beginArray();
+        for(Country country : countries){
+            writeCountry(json, country);
+        }
+        json.endArray().endObject();
+    }
+
+    private static void writeCountry(JsonWriter json, Country country){
+        json.beginObject()
+                .member("code", country.getCode())
+                .member("name", country.getName())
+                .member(CountryColumn.INTERNET_USERS.getPropertyName(), country.getInternetUsers())
+                .member(CountryColumn.ADULT_LITERACY_RATE.getPropertyName(), country.getAdultLiteracyRate())
+                .endObject();
+    }
+
+    // Writes the country holding a min or max value, or null if the column has no values
+    private static void writeExtreme(JsonWriter json, Country country, double value){
+        if(country == null){
+            json.value(null);
+        }else{
+            json.beginObject().member("code", country.getCode()).member("name", country.getName())
+                    .member("value", value).endObject();
+        }
+    }
+
+    private static JsonWriter error(String message){
+        return new JsonWriter().beginObject().member("error", message).endObject();
+    }
+
+    // Returns what follows the context in the path without its leading slash, "" for the context itself,
+    // or null if something other than one path segment follows it
+    private static String subPath(String path, String context){
+        String rest = path.substring(context.length());
+        if(rest.isEmpty() || rest.equals("/")){
+            return "";
+        }
+        if(!rest.startsWith("/") || rest.indexOf('/', 1) >= 0){
+            return null;
+        }
+        return rest.substring(1);
+    }
+
+    private static int parseInt(Map<String, String> parameters, String name, int defaultValue, int max){
+        String value = parameters.get(name);
+        if(value == null){
+            return defaultValue;
+        }
+        try{
+            int parsed = Integer.parseInt(value);
+            if(parsed < 1 || parsed > max){
+                throw new IllegalArgumentException("The " + name + " must be between 1 and " + max + ".");
+            }
+            return parsed;
+        }catch(NumberFormatException nfe){
+            throw new IllegalArgumentException("The " + name + " must be a whole number, not " + value + ".");
+        }
+    }
+
+    private static double parseDouble(Map<String, String> parameters, String name, double defaultValue){
+        String value = parameters.get(name);
+        if(value == null){
+            return defaultValue;
+        }
+        try{
+            return Double.parseDouble(value);
+        }catch(NumberFormatException nfe){
+            throw new IllegalArgumentException("The " + name + " must be a number, not " + value + ".");
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query){
+        Map<String, String> parameters = new HashMap<>();
+        if(query == null || query.isEmpty()){
+            return parameters;
+        }
+        try{
+            for(String pair : query.split("&")){
+                int equals = pair.indexOf('=');
+                if(equals > 0){
+                    parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                            URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+                }
+            }
+        }catch(UnsupportedEncodingException uee){
+            throw new IllegalStateException("UTF-8 isn't supported.", uee);
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,88 @@
+package com.teamtreehouse.publicdata.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.teamtreehouse.publicdata.dao.CountryDAO;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+
+// Applies a CSV file of corrections to existing countries. The header is code,column,value: the column is
+// named like a Country property (internetUsers, adultLiteracyRate), and an empty value clears it. A later
+// correction of the same code and column replaces an earlier one. The corrections are sent batchSize at a
+// time per column as bulk updates, so no country is loaded; codes that aren't in the table are skipped.
+public class CorrectionImporter {
+    private final CountryDAO countryDAO;
+    private final int batchSize;
+
+    public CorrectionImporter(CountryDAO countryDAO, int batchSize){
+        this.countryDAO = countryDAO;
+        this.batchSize = ImportFormats.checkBatchSize(batchSize);
+    }
+
+    public ImportResult importFile(Path path) throws IOException{
+        try(BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)){
+            return importCorrections(reader);
+        }
+    }
+
+    // Reads the corrections and applies them. The rows of the result are the rows that were changed.
+    public ImportResult importCorrections(BufferedReader reader) throws IOException{
+        long start = System.nanoTime();
+        String line = reader.readLine();
+        while(line != null && line.trim().isEmpty()){
+            line = reader.readLine();
+        }
+        if(line == null){
+            return new ImportResult(0, 0, System.nanoTime() - start);
+        }
+        List<String> header = CsvParser.parseLine(line);
+        if(header.size() < 3 || !header.get(0).equalsIgnoreCase("code") || !header.get(1).equalsIgnoreCase("column")
+                || !header.get(2).equalsIgnoreCase("value")){
+            throw new IOException("The header of a corrections file must be code,column,value.");
+        }
+
+        Map<CountryColumn, Map<String, Double>> pending = new EnumMap<>(CountryColumn.class);
+        long rows = 0;
+        long batches = 0;
+        int lineNumber = 1;
+        while((line = reader.readLine()) != null){
+            lineNumber++;
+            if(line.trim().isEmpty()){
+                continue;
+            }
+            List<String> fields = CsvParser.parseLine(line);
+            if(fields.size() < 2){
+                throw new IOException("Line " + lineNumber + " doesn't name a code and a column.");
+            }
+            CountryColumn column;
+            try{
+                column = CountryColumn.fromPropertyName(fields.get(1));
+            }catch(IllegalArgumentException iae){
+                throw new IOException("Line " + lineNumber + ": " + iae.getMessage(), iae);
+            }
+            Double value = ImportFormats.parseValue(fields.size() > 2 ? fields.get(2) : "", lineNumber);
+
+            Map<String, Double> batch = pending.computeIfAbsent(column, key -> new LinkedHashMap<>());
+            batch.put(fields.get(0).toUpperCase(), value);
+            if(batch.size() == batchSize){
+                rows += countryDAO.updateValues(column, batch);
+                batches++;
+                batch.clear();
+            }
+        }
+        for(Map.Entry<CountryColumn, Map<String, Double>> entry : pending.entrySet()){
+            if(!entry.getValue().isEmpty()){
+                rows += countryDAO.updateValues(entry.getKey(), entry.getValue());
+                batches++;
+            }
+        }
+        return new ImportResult(rows, batches, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,200 @@
+package com.teamtreehouse.publicdata.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.teamtreehouse.publicdata.dao.CountryDAO;
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+
+// Streams a file of countries into the Country table, merging the rows in batches of a configurable size.
+// Two formats are understood:
+//  - a plain CSV file whose header names the columns: code, name, internetUsers and/or adultLiteracyRate
+//  - a World Bank indicator download, where every row holds the yearly values of one indicator for one country.
+//    The most recent year that has a value is imported, for the indicators that map to a Country column.
+public class CountryImporter {
+    // Longer names are cut, since the bundled database wouldn't store them
+    private static final int NAME_LENGTH = 32;
+    private static final Map<String, CountryColumn> WORLD_BANK_INDICATORS = new HashMap<>();
+
+    static {
+        WORLD_BANK_INDICATORS.put("IT.NET.USER.ZS", CountryColumn.INTERNET_USERS);
+        WORLD_BANK_INDICATORS.put("IT.NET.USER.P2", CountryColumn.INTERNET_USERS);
+        WORLD_BANK_INDICATORS.put("SE.ADT.LITR.ZS", CountryColumn.ADULT_LITERACY_RATE);
+    }
+
+    private final CountryDAO countryDAO;
+    private final int batchSize;
+
+    public CountryImporter(CountryDAO countryDAO, int batchSize){
+        this.countryDAO = countryDAO;
+        this.batchSize = ImportFormats.checkBatchSize(batchSize);
+    }
+
+    public ImportResult importFile(Path path) throws IOException{
+        try(BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)){
+            return importCountries(reader);
+        }
+    }
+
+    // Reads the countries from the reader and merges them into the table, committing every batchSize rows
+    public ImportResult importCountries(BufferedReader reader) throws IOException{
+        long start = System.nanoTime();
+        Batcher batcher = new Batcher();
+        LineNumberReader lines = new LineNumberReader(reader);
+
+        String line = lines.readLine();
+        while(line != null && line.trim().isEmpty()){
+            line = lines.readLine();
+        }
+        if(line == null){
+            return new ImportResult(0, 0, System.nanoTime() - start);
+        }
+
+        if(ImportFormats.isWorldBankFile(line)){
+            importWorldBank(lines, line, batcher);
+        }else{
+            importCsv(lines, line, batcher);
+        }
+        batcher.flush();
+
+        return new ImportResult(batcher.rows, batcher.batches, System.nanoTime() - start);
+    }
+
+    private void importCsv(LineNumberReader reader, String headerLine, Batcher batcher) throws IOException{
+        List<String> header = CsvParser.parseLine(headerLine);
+        int codeField = -1;
+        int nameField = -1;
+        Map<CountryColumn, Integer> columnFields = new EnumMap<>(CountryColumn.class);
+
+        for(int i = 0; i < header.size(); i++){
+            String name = header.get(i);
+            if(name.equalsIgnoreCase("code")){
+                codeField = i;
+            }else if(name.equalsIgnoreCase("name")){
+                nameField = i;
+            }
+            for(CountryColumn column : CountryColumn.values()){
+                if(name.equalsIgnoreCase(column.getPropertyName())){
+                    columnFields.put(column, i);
+                }
+            }
+        }
+
+        if(codeField < 0 || nameField < 0){
+            throw new IOException("The header of the file must name at least the code and name columns.");
+        }
+        Set<CountryColumn> columns = columnFields.isEmpty() ?
+                Collections.emptySet() : EnumSet.copyOf(columnFields.keySet());
+
+        String line;
+        while((line = reader.readLine()) != null){
+            if(line.trim().isEmpty()){
+                continue;
+            }
+            List<String> fields = CsvParser.parseLine(line);
+            Country.CountryBuilder builder = new Country.CountryBuilder(
+                    checkCode(field(fields, codeField).toUpperCase(), reader.getLineNumber()),
+                    truncateName(field(fields, nameField)));
+            for(Map.Entry<CountryColumn, Integer> columnField : columnFields.entrySet()){
+                Double value = ImportFormats.parseValue(field(fields, columnField.getValue()), reader.getLineNumber());
+                if(columnField.getKey() == CountryColumn.INTERNET_USERS){
+                    builder.withInternetUsers(value);
+                }else{
+                    builder.withAdultLiteracyRate(value);
+                }
+            }
+            batcher.add(new Country(builder), columns);
+        }
+    }
+
+    private void importWorldBank(LineNumberReader reader, String line, Batcher batcher) throws IOException{
+        ImportFormats.readWorldBankHeader(reader, line);
+
+        while((line = reader.readLine()) != null){
+            List<String> fields = CsvParser.parseLine(line);
+            if(fields.size() <= ImportFormats.WORLD_BANK_FIRST_YEAR_FIELD){
+                continue;
+            }
+            CountryColumn column = WORLD_BANK_INDICATORS.get(fields.get(3));
+            if(column == null){
+                continue;
+            }
+
+            Double value = null;
+            for(int i = fields.size() - 1; i >= ImportFormats.WORLD_BANK_FIRST_YEAR_FIELD && value == null; i--){
+                value = ImportFormats.parseValue(fields.get(i), reader.getLineNumber());
+            }
+            if(value == null){
+                continue;
+            }
+
+            Country.CountryBuilder builder = new Country.CountryBuilder(
+                    checkCode(fields.get(1), reader.getLineNumber()), truncateName(fields.get(0)));
+            if(column == CountryColumn.INTERNET_USERS){
+                builder.withInternetUsers(value);
+            }else{
+                builder.withAdultLiteracyRate(value);
+            }
+            batcher.add(new Country(builder), EnumSet.of(column));
+        }
+    }
+
+    private static String field(List<String> fields, int index){
+        return index < fields.size() ? fields.get(index) : "";
+    }
+
+    // The code is the primary key, so a row without one would be merged into a country with an empty code
+    private static String checkCode(String code, int lineNumber) throws IOException{
+        if(code.isEmpty()){
+            throw new IOException("Line " + lineNumber + " has no code.");
+        }
+        return code;
+    }
+
+    private static String truncateName(String name){
+        return name.length() > NAME_LENGTH ? name.substring(0, NAME_LENGTH) : name;
+    }
+
+    // Collects the rows into one batch per set of written columns and merges a batch as soon as it is full
+    private class Batcher {
+        private final Map<Set<CountryColumn>, List<Country>> pending = new HashMap<>();
+        private long rows;
+        private long batches;
+
+        void add(Country country, Set<CountryColumn> columns){
+            List<Country> batch = pending.computeIfAbsent(columns, key -> new ArrayList<>(batchSize));
+            batch.add(country);
+            if(batch.size() == batchSize){
+                write(columns, batch);
+            }
+        }
+
+        void flush(){
+            for(Map.Entry<Set<CountryColumn>, List<Country>> entry : pending.entrySet()){
+                if(!entry.getValue().isEmpty()){
+                    write(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        private void write(Set<CountryColumn> columns, List<Country> batch){
+            countryDAO.mergeCountries(batch, columns);
+            rows += batch.size();
+            batches++;
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.teamtreehouse.publicdata.importer;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.util.List;
+
+// What the importers share about the files they read: the layout of a World Bank indicator download, where every
+// row holds the yearly values of one indicator for one country after a few lines of metadata, and how a field
+// holding a value is read.
+final class ImportFormats {
+    static final String WORLD_BANK_HEADER = "Country Name";
+    // The fields before it hold the country name and code and the indicator name and code
+    static final int WORLD_BANK_FIRST_YEAR_FIELD = 4;
+
+    private ImportFormats(){}
+
+    // Tells a World Bank download from a plain CSV file by its first line that isn't blank
+    static boolean isWorldBankFile(String firstLine){
+        return firstLine.startsWith("\"Data Source\"")
+                || CsvParser.parseLine(firstLine).get(0).equals(WORLD_BANK_HEADER);
+    }
+
+    // Skips the metadata of a World Bank download, starting with the line already read, and returns the fields of
+    // its header row: the names of the leading fields followed by one year per field
+    static List<String> readWorldBankHeader(LineNumberReader reader, String line) throws IOException{
+        while(line != null && !line.startsWith("\"" + WORLD_BANK_HEADER + "\"") && !line.startsWith(WORLD_BANK_HEADER)){
+            line = reader.readLine();
+        }
+        if(line == null){
+            throw new IOException("The World Bank file has no \"" + WORLD_BANK_HEADER + "\" header row.");
+        }
+        return CsvParser.parseLine(line);
+    }
+
+    // Empty fields stand for a missing value
+    static Double parseValue(String field, int lineNumber) throws IOException{
+        if(field.isEmpty()){
+            return null;
+        }
+        try{
+            return Double.parseDouble(field);
+        }catch(NumberFormatException nfe){
+            throw new IOException("Line " + lineNumber + " holds a value that isn't a number: " + field, nfe);
+        }
+    }
+
+    // A field that fills a key column of the table, so it can't be empty or longer than the column
+    static String checkKey(String field, String name, int length, int lineNumber) throws IOException{
+        if(field.isEmpty()){
+            throw new IOException("Line " + lineNumber + " has no " + name + ".");
+        }
+        if(field.length() > length){
+            throw new IOException("Line " + lineNumber + " holds a " + name + " longer than " + length
+                    + " characters: " + field);
+        }
+        return field;
+    }
+
+    static int checkBatchSize(int batchSize){
+        if(batchSize < 1){
+            throw new IllegalArgumentException("The batch size must be at least 1.");
+        }
+        return batchSize;
+    }
+}
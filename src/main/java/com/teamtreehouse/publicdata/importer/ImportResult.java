@@ -0,0 +1,30 @@
+package com.teamtreehouse.publicdata.importer;
+
+// The outcome of an import: how many rows were written, in how many batches and how long it took.
+public class ImportResult {
+    private final long rows;
+    private final long batches;
+    private final long elapsedNanos;
+
+    public ImportResult(long rows, long batches, long elapsedNanos){
+        this.rows = rows;
+        this.batches = batches;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public double getElapsedSeconds() {
+        return elapsedNanos / 1e9;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : rows / getElapsedSeconds();
+    }
+}
@@ -0,0 +1,89 @@
+package com.teamtreehouse.publicdata.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.teamtreehouse.publicdata.dao.IndicatorDAO;
+import com.teamtreehouse.publicdata.model.IndicatorValue;
+
+// Streams the full yearly history of a World Bank indicator download into the IndicatorValue table.
+// Every row of the file holds the values of one indicator for one country, one column per year; every
+// indicator in the file is imported and the empty fields are skipped. A row whose country or indicator code is
+// missing or too long for the table fails the import with its line number.
+public class IndicatorImporter {
+    private final IndicatorDAO indicatorDAO;
+    private final int batchSize;
+
+    public IndicatorImporter(IndicatorDAO indicatorDAO, int batchSize){
+        this.indicatorDAO = indicatorDAO;
+        this.batchSize = ImportFormats.checkBatchSize(batchSize);
+    }
+
+    public ImportResult importFile(Path path) throws IOException{
+        try(BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)){
+            return importValues(reader);
+        }
+    }
+
+    // Reads the values from the reader and merges them into the table, committing every batchSize values
+    public ImportResult importValues(BufferedReader reader) throws IOException{
+        long start = System.nanoTime();
+        long rows = 0;
+        long batches = 0;
+
+        LineNumberReader lines = new LineNumberReader(reader);
+        // The header names the year of every value column
+        List<String> header = ImportFormats.readWorldBankHeader(lines, lines.readLine());
+        int[] years = new int[header.size()];
+        for(int i = ImportFormats.WORLD_BANK_FIRST_YEAR_FIELD; i < header.size(); i++){
+            try{
+                years[i] = Integer.parseInt(header.get(i).trim());
+            }catch(NumberFormatException nfe){
+                years[i] = -1;
+            }
+        }
+
+        List<IndicatorValue> batch = new ArrayList<>(batchSize);
+        String line;
+        while((line = lines.readLine()) != null){
+            List<String> fields = CsvParser.parseLine(line);
+            if(fields.size() <= ImportFormats.WORLD_BANK_FIRST_YEAR_FIELD){
+                continue;
+            }
+            String countryCode = ImportFormats.checkKey(fields.get(1), "country code",
+                    IndicatorValue.COUNTRY_CODE_LENGTH, lines.getLineNumber());
+            String indicator = ImportFormats.checkKey(fields.get(3), "indicator code",
+                    IndicatorValue.INDICATOR_LENGTH, lines.getLineNumber());
+
+            for(int i = ImportFormats.WORLD_BANK_FIRST_YEAR_FIELD; i < fields.size() && i < years.length; i++){
+                if(years[i] < 0){
+                    continue;
+                }
+                Double value = ImportFormats.parseValue(fields.get(i), lines.getLineNumber());
+                if(value == null){
+                    continue;
+                }
+                batch.add(new IndicatorValue(countryCode, indicator, years[i], value));
+                if(batch.size() == batchSize){
+                    indicatorDAO.mergeValues(batch);
+                    rows += batch.size();
+                    batches++;
+                    batch.clear();
+                }
+            }
+        }
+        if(!batch.isEmpty()){
+            indicatorDAO.mergeValues(batch);
+            rows += batch.size();
+            batches++;
+        }
+
+        return new ImportResult(rows, batches, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,89 @@
+package com.teamtreehouse.publicdata.json;
+
+// Builds a JSON text, putting the commas between the members and elements itself:
+//  new JsonWriter().beginObject().name("code").value("USA").endObject().toString()
+// Strings are escaped, numbers are written as they are, and null, NaN and infinite values are written as null.
+public class JsonWriter {
+    private final StringBuilder json = new StringBuilder();
+    // Whether the next value is the first one of its object or array, or follows a member name
+    private boolean first = true;
+
+    public JsonWriter beginObject(){
+        separate();
+        json.append('{');
+        first = true;
+        return this;
+    }
+
+    public JsonWriter endObject(){
+        json.append('}');
+        first = false;
+        return this;
+    }
+
+    public JsonWriter beginArray(){
+        separate();
+        json.append('[');
+        first = true;
+        return this;
+    }
+
+    public JsonWriter endArray(){
+        json.append(']');
+        first = false;
+        return this;
+    }
+
+    public JsonWriter name(String name){
+        separate();
+        appendString(name);
+        json.append(':');
+        first = true;
+        return this;
+    }
+
+    // Writes a String, a Number, a Boolean or null. Any other value is written as its toString() text.
+    public JsonWriter value(Object value){
+        separate();
+        if(value == null || value instanceof Double && (((Double) value).isNaN() || ((Double) value).isInfinite())){
+            json.append("null");
+        }else if(value instanceof Number || value instanceof Boolean){
+            json.append(value);
+        }else{
+            appendString(value.toString());
+        }
+        return this;
+    }
+
+    // Writes a member: its name, then its value
+    public JsonWriter member(String name, Object value){
+        return name(name).value(value);
+    }
+
+    @Override
+    public String toString() {
+        return json.toString();
+    }
+
+    private void separate(){
+        if(!first){
+            json.append(',');
+        }
+        first = false;
+    }
+
+    private void appendString(String text){
+        json.append('"');
+        for(int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+            if(c == '"' || c == '\\'){
+                json.append('\\').append(c);
+            }else if(c < ' '){
+                json.append(String.format("\\u%04x", (int) c));
+            }else{
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
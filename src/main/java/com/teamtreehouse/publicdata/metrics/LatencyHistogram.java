@@ -0,0 +1,89 @@
+package com.teamtreehouse.publicdata.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Records latencies in nanoseconds into log-linear buckets, the way HdrHistogram does: every power of two is
+// split into SUB_BUCKETS / 2 equal buckets, so a recorded value is known to about 3% whatever its magnitude,
+// in a fixed array of counters. Recording is lock free and can be done from any thread.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    // Values below SUB_BUCKETS have a bucket each, then every shift of 1 to 63 - SUB_BUCKET_BITS + 1 adds half
+    private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos){
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while(value > (current = max.get()) && !max.compareAndSet(current, value)){
+            // another thread raised the max in between, so compare again
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    public double getMeanNanos() {
+        long recorded = count.get();
+        return recorded == 0 ? Double.NaN : (double) sum.get() / recorded;
+    }
+
+    // Returns the value that the given percent of the recorded values are at or below, as the upper bound of
+    // its bucket (but never above the max), or 0 if nothing was recorded
+    public long getValueAtPercentile(double percent){
+        long recorded = count.get();
+        if(recorded == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * recorded));
+        long seen = 0;
+        for(int index = 0; index < BUCKETS; index++){
+            seen += counts.get(index);
+            if(seen >= rank){
+                return Math.min(highestValueOf(index), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset(){
+        for(int index = 0; index < BUCKETS; index++){
+            counts.set(index, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    private static int indexOf(long value){
+        if(value < SUB_BUCKETS){
+            return (int) value;
+        }
+        // The shift that brings the value into [HALF_SUB_BUCKETS, SUB_BUCKETS)
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) ((value >>> shift) - HALF_SUB_BUCKETS);
+    }
+
+    private static long highestValueOf(int index){
+        if(index < SUB_BUCKETS){
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
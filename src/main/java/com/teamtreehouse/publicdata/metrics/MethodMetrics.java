@@ -0,0 +1,53 @@
+package com.teamtreehouse.publicdata.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// The call count, failures, rows and latency histogram of one method
+public class MethodMetrics {
+    private final String name;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public MethodMetrics(String name){
+        this.name = name;
+    }
+
+    // Records one call that took the given time and returned or wrote the given number of rows
+    public void record(long nanos, long rows, boolean failed){
+        calls.increment();
+        this.rows.add(rows);
+        if(failed){
+            failures.increment();
+        }
+        latency.record(nanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public void reset(){
+        calls.reset();
+        failures.reset();
+        rows.reset();
+        latency.reset();
+    }
+}
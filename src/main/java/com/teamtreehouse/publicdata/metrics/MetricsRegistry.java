@@ -0,0 +1,150 @@
+package com.teamtreehouse.publicdata.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// A named set of MethodMetrics, one per instrumented method. The registries made with register() are kept
+// for the lifetime of the application and exported through JMX, so they can be watched with jconsole or
+// any other JMX client while the application runs.
+public class MetricsRegistry implements MetricsRegistryMXBean {
+    public static final String JMX_DOMAIN = "com.teamtreehouse.publicdata";
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    private static final Collection<MetricsRegistry> registered = new CopyOnWriteArrayList<>();
+
+    private final String name;
+    private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    public MetricsRegistry(String name){
+        this.name = name;
+    }
+
+    // Makes a registry, exports it through JMX under the given name, and keeps it among the registered ones.
+    // A name that was already registered gets the registry made for it then, so both callers count into one.
+    public static synchronized MetricsRegistry register(String name){
+        for(MetricsRegistry existing : registered){
+            if(existing.name.equals(name)){
+                return existing;
+            }
+        }
+        MetricsRegistry registry = new MetricsRegistry(name);
+        registerMBean(registry, "Metrics", name);
+        registered.add(registry);
+        return registry;
+    }
+
+    // The registries made with register(), in the order they were made
+    public static Collection<MetricsRegistry> getRegistered(){
+        return Collections.unmodifiableCollection(registered);
+    }
+
+    // Exports an MXBean as JMX_DOMAIN:type=<type>,name=<name>, replacing one already exported under that name
+    public static void registerMBean(Object mbean, String type, String name){
+        try{
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if(server.isRegistered(objectName)){
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(mbean, objectName);
+        }catch(JMException jme){
+            throw new IllegalStateException("The " + type + " MBean " + name + " couldn't be registered.", jme);
+        }
+    }
+
+    public MethodMetrics getMethod(String method){
+        return methods.computeIfAbsent(method, MethodMetrics::new);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Map<String, Long> getCalls() {
+        return collect(MethodMetrics::getCalls);
+    }
+
+    @Override
+    public Map<String, Long> getFailures() {
+        return collect(MethodMetrics::getFailures);
+    }
+
+    @Override
+    public Map<String, Long> getRows() {
+        return collect(MethodMetrics::getRows);
+    }
+
+    @Override
+    public Map<String, Double> getMeanMicros() {
+        Map<String, Double> means = new TreeMap<>();
+        methods.forEach((method, metrics) -> means.put(method, metrics.getLatency().getMeanNanos() / NANOS_PER_MICRO));
+        return means;
+    }
+
+    @Override
+    public Map<String, Long> getMedianMicros() {
+        return collect(metrics -> toMicros(metrics.getLatency().getValueAtPercentile(50)));
+    }
+
+    @Override
+    public Map<String, Long> getP99Micros() {
+        return collect(metrics -> toMicros(metrics.getLatency().getValueAtPercentile(99)));
+    }
+
+    @Override
+    public Map<String, Long> getMaxMicros() {
+        return collect(metrics -> toMicros(metrics.getLatency().getMaxNanos()));
+    }
+
+    // One line per called method, sorted by name, with the latencies in microseconds
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder(String.format("%s:%n%-26s%10s%10s%10s%12s%12s%12s%12s%n", name,
+                "method", "calls", "failures", "rows", "mean (us)", "p50 (us)", "p99 (us)", "max (us)"));
+        for(MethodMetrics metrics : sortedMethods()){
+            LatencyHistogram latency = metrics.getLatency();
+            report.append(String.format("%-26s%10d%10d%10d%12.1f%12.1f%12.1f%12.1f%n", metrics.getName(),
+                    metrics.getCalls(), metrics.getFailures(), metrics.getRows(),
+                    latency.getMeanNanos() / NANOS_PER_MICRO,
+                    latency.getValueAtPercentile(50) / NANOS_PER_MICRO,
+                    latency.getValueAtPercentile(99) / NANOS_PER_MICRO,
+                    latency.getMaxNanos() / NANOS_PER_MICRO));
+        }
+        return report.toString();
+    }
+
+    @Override
+    public void reset() {
+        methods.values().forEach(MethodMetrics::reset);
+    }
+
+    private Map<String, Long> collect(ToLongFunction<MethodMetrics> value){
+        Map<String, Long> values = new TreeMap<>();
+        methods.forEach((method, metrics) -> values.put(method, value.applyAsLong(metrics)));
+        return values;
+    }
+
+    private Collection<MethodMetrics> sortedMethods(){
+        Collection<MethodMetrics> sorted = new ArrayList<>(new TreeMap<>(methods).values());
+        sorted.removeIf(metrics -> metrics.getCalls() == 0);
+        return sorted;
+    }
+
+    private static long toMicros(long nanos){
+        return Math.round(nanos / NANOS_PER_MICRO);
+    }
+}
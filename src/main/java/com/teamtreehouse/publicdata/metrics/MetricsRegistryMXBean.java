@@ -0,0 +1,27 @@
+package com.teamtreehouse.publicdata.metrics;
+
+import java.util.Map;
+
+// The JMX view of a MetricsRegistry, registered as com.teamtreehouse.publicdata:type=Metrics,name=<name>.
+// Every map is keyed by method name.
+public interface MetricsRegistryMXBean {
+    String getName();
+
+    Map<String, Long> getCalls();
+
+    Map<String, Long> getFailures();
+
+    Map<String, Long> getRows();
+
+    Map<String, Double> getMeanMicros();
+
+    Map<String, Long> getMedianMicros();
+
+    Map<String, Long> getP99Micros();
+
+    Map<String, Long> getMaxMicros();
+
+    String getReport();
+
+    void reset();
+}
@@ -1,8 +1,20 @@
 package com.teamtreehouse.publicdata.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 
+// The name and the numeric columns are indexed, for the name searches and range queries of CountryDAO.
+// Every write increments the version of the row, so a write based on a copy that another writer changed since it
+// was read fails instead of silently overwriting that change (optimistic locking).
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(indexes = {
+        @Index(name = "IDX_COUNTRY_NAME", columnList = "name"),
+        @Index(name = "IDX_COUNTRY_INTERNET_USERS", columnList = "internetUsers"),
+        @Index(name = "IDX_COUNTRY_ADULT_LITERACY_RATE", columnList = "adultLiteracyRate")})
 public class Country {
     @Id
     private String code;
@@ -16,6 +28,11 @@ public class Country {
     @Column
     private Double adultLiteracyRate;
 
+    // The rows that were in the table before the column was added start at version 0
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
     public Country(){}
 
     public Country(CountryBuilder builder) {
@@ -25,6 +42,15 @@ public class Country {
         this.adultLiteracyRate = builder.adultLiteracyRate;
     }
 
+    // Creates a detached copy of another country
+    public Country(Country country) {
+        this.code = country.code;
+        this.name = country.name;
+        this.internetUsers = country.internetUsers;
+        this.adultLiteracyRate = country.adultLiteracyRate;
+        this.version = country.version;
+    }
+
     public String getCode() {
         return code;
     }
@@ -57,6 +83,15 @@ public class Country {
         this.adultLiteracyRate = adultLiteracyRate;
     }
 
+    // The version of the row this country was read from, or null if it wasn't saved yet
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public static class CountryBuilder{
         private String code;
 
@@ -0,0 +1,43 @@
+package com.teamtreehouse.publicdata.model;
+
+import java.util.function.Function;
+
+// The numeric columns of the Country table that statistics can be calculated on.
+public enum CountryColumn {
+    INTERNET_USERS("internetUsers", "Internet Users", Country::getInternetUsers),
+    ADULT_LITERACY_RATE("adultLiteracyRate", "Adult Literacy", Country::getAdultLiteracyRate);
+
+    private final String propertyName;
+    private final String label;
+    private final Function<Country, Double> getter;
+
+    CountryColumn(String propertyName, String label, Function<Country, Double> getter){
+        this.propertyName = propertyName;
+        this.label = label;
+        this.getter = getter;
+    }
+
+    // The name of the mapped property of the Country entity, as used in HQL and Criteria queries
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    // Finds the column of a property name such as internetUsers, ignoring the case
+    public static CountryColumn fromPropertyName(String propertyName){
+        for(CountryColumn column : values()){
+            if(column.propertyName.equalsIgnoreCase(propertyName)){
+                return column;
+            }
+        }
+        throw new IllegalArgumentException("There is no column named " + propertyName + ".");
+    }
+
+    // Returns the value this column holds for the given country, or null if it has no value
+    public Double getValue(Country country){
+        return getter.apply(country);
+    }
+}
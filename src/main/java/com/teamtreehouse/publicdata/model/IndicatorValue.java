@@ -0,0 +1,58 @@
+package com.teamtreehouse.publicdata.model;
+
+import javax.persistence.*;
+
+// The value one indicator (e.g. the World Bank code IT.NET.USER.ZS) had for one country in one year.
+// Missing values aren't stored at all. The primary key (countryCode, indicator, year) serves the queries
+// for one country, and the (indicator, year) index serves the queries across all countries.
+@Entity
+@IdClass(IndicatorValueId.class)
+@Table(indexes = @Index(name = "IDX_INDICATOR_YEAR", columnList = "indicator, year"))
+public class IndicatorValue {
+    // The lengths of the code columns, which the importer checks before writing
+    public static final int COUNTRY_CODE_LENGTH = 3;
+    public static final int INDICATOR_LENGTH = 32;
+
+    @Id
+    @Column(length = COUNTRY_CODE_LENGTH)
+    private String countryCode;
+
+    @Id
+    @Column(length = INDICATOR_LENGTH)
+    private String indicator;
+
+    @Id
+    private int year;
+
+    @Column(nullable = false)
+    private double value;
+
+    public IndicatorValue(){}
+
+    public IndicatorValue(String countryCode, String indicator, int year, double value) {
+        this.countryCode = countryCode;
+        this.indicator = indicator;
+        this.year = year;
+        this.value = value;
+    }
+
+    public String getCountryCode() {
+        return countryCode;
+    }
+
+    public String getIndicator() {
+        return indicator;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public void setValue(double value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,38 @@
+package com.teamtreehouse.publicdata.model;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+// The composite primary key of IndicatorValue: (country code, indicator, year).
+public class IndicatorValueId implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String countryCode;
+    private String indicator;
+    private int year;
+
+    public IndicatorValueId(){}
+
+    public IndicatorValueId(String countryCode, String indicator, int year){
+        this.countryCode = countryCode;
+        this.indicator = indicator;
+        this.year = year;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o){
+            return true;
+        }
+        if(!(o instanceof IndicatorValueId)){
+            return false;
+        }
+        IndicatorValueId other = (IndicatorValueId) o;
+        return year == other.year && Objects.equals(countryCode, other.countryCode) &&
+                Objects.equals(indicator, other.indicator);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(countryCode, indicator, year);
+    }
+}
@@ -0,0 +1,53 @@
+package com.teamtreehouse.publicdata.stats;
+
+import java.util.List;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+
+// Holds the countries with the greatest and the least values of a column, gathered in one scan of the Country
+// table with two bounded heaps. Rankings gathered over different partitions of the table can be merged.
+public class ColumnRanking {
+    private final CountryColumn column;
+    private final TopCountries greatest;
+    private final TopCountries least;
+
+    // Keeps the size countries at the top and the size countries at the bottom of the column
+    public ColumnRanking(CountryColumn column, int size){
+        this.column = column;
+        greatest = new TopCountries(size, true);
+        least = new TopCountries(size, false);
+    }
+
+    // Adds a country to the ranking. Countries without a value for the column are skipped.
+    public void add(Country country){
+        Double value = column.getValue(country);
+        if(value != null){
+            greatest.add(country, value);
+            least.add(country, value);
+        }
+    }
+
+    // Adds the ranking gathered for the same column over another partition of the table
+    public void merge(ColumnRanking other){
+        if(other.column != column || other.greatest.getSize() != greatest.getSize()){
+            throw new IllegalArgumentException("Only rankings of the same column and size can be merged.");
+        }
+        greatest.merge(other.greatest);
+        least.merge(other.least);
+    }
+
+    public CountryColumn getColumn() {
+        return column;
+    }
+
+    // Returns the countries with the greatest values, the greatest first
+    public List<Country> getGreatest(){
+        return greatest.getCountries();
+    }
+
+    // Returns the countries with the least values, the least first
+    public List<Country> getLeast(){
+        return least.getCountries();
+    }
+}
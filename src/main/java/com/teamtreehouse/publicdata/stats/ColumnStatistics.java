@@ -0,0 +1,113 @@
+package com.teamtreehouse.publicdata.stats;
+
+import com.teamtreehouse.publicdata.model.Country;
+
+// Accumulates the count, mean, variance, min and max of one numeric column in a single pass.
+// The mean and variance are updated with Welford's algorithm, so no second pass over the data
+// is needed and the result stays accurate even for large tables.
+public class ColumnStatistics {
+    private long count;
+    private double mean;
+    private double sumOfSquaredDeviations;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private Country countryWithMin;
+    private Country countryWithMax;
+
+    public ColumnStatistics(){}
+
+    // Creates the statistics from values that were already aggregated elsewhere, e.g. by the database
+    public ColumnStatistics(long count, double mean, double sumOfSquaredDeviations,
+                            Country countryWithMin, double min, Country countryWithMax, double max){
+        this.count = count;
+        this.mean = mean;
+        this.sumOfSquaredDeviations = sumOfSquaredDeviations;
+        this.countryWithMin = countryWithMin;
+        this.min = min;
+        this.countryWithMax = countryWithMax;
+        this.max = max;
+    }
+
+    // Adds the value a country holds for this column. Null values must be filtered out by the caller.
+    public void add(Country country, double value){
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        sumOfSquaredDeviations += delta * (value - mean);
+
+        if(countryWithMin == null || value < min){
+            min = value;
+            countryWithMin = country;
+        }
+
+        if(countryWithMax == null || value > max){
+            max = value;
+            countryWithMax = country;
+        }
+    }
+
+    // Adds the values gathered by another accumulator, e.g. over another partition of the table, using the
+    // pairwise update of Chan et al. On equal min or max values the country already held here is kept,
+    // so merging partitions in table order gives the same countries as a sequential pass.
+    public void merge(ColumnStatistics other){
+        if(other.count == 0){
+            return;
+        }
+        if(count == 0){
+            count = other.count;
+            mean = other.mean;
+            sumOfSquaredDeviations = other.sumOfSquaredDeviations;
+        }else{
+            long total = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / total;
+            sumOfSquaredDeviations += other.sumOfSquaredDeviations + delta * delta * count * other.count / total;
+            count = total;
+        }
+
+        if(countryWithMin == null || other.min < min){
+            min = other.min;
+            countryWithMin = other.countryWithMin;
+        }
+        if(countryWithMax == null || other.max > max){
+            max = other.max;
+            countryWithMax = other.countryWithMax;
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    // Returns the mean of the values, or NaN if no value was added
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    // Returns the sample variance of the values, or NaN if less than two values were added
+    public double getVariance() {
+        return count < 2 ? Double.NaN : sumOfSquaredDeviations / (count - 1);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    // Returns the country holding the minimum value, or null if no value was added
+    public Country getCountryWithMin() {
+        return countryWithMin;
+    }
+
+    // Returns the country holding the maximum value, or null if no value was added
+    public Country getCountryWithMax() {
+        return countryWithMax;
+    }
+}
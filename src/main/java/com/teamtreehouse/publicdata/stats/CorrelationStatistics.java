@@ -0,0 +1,90 @@
+package com.teamtreehouse.publicdata.stats;
+
+// Accumulates the Pearson correlation coefficient of two columns in a single pass.
+// Only the rows where both columns hold a value take part in it. The co-moment is updated
+// the same way Welford's algorithm updates the variance.
+public class CorrelationStatistics {
+    private long count;
+    private double firstMean;
+    private double secondMean;
+    private double firstSumOfSquaredDeviations;
+    private double secondSumOfSquaredDeviations;
+    private double coMoment;
+
+    public CorrelationStatistics(){}
+
+    // Creates the statistics from values that were already aggregated elsewhere, e.g. by the database
+    public CorrelationStatistics(long count, double firstMean, double secondMean, double firstSumOfSquaredDeviations,
+                                 double secondSumOfSquaredDeviations, double coMoment){
+        this.count = count;
+        this.firstMean = firstMean;
+        this.secondMean = secondMean;
+        this.firstSumOfSquaredDeviations = firstSumOfSquaredDeviations;
+        this.secondSumOfSquaredDeviations = secondSumOfSquaredDeviations;
+        this.coMoment = coMoment;
+    }
+
+    public void add(double first, double second){
+        count++;
+        double firstDelta = first - firstMean;
+        double secondDelta = second - secondMean;
+        firstMean += firstDelta / count;
+        secondMean += secondDelta / count;
+        firstSumOfSquaredDeviations += firstDelta * (first - firstMean);
+        secondSumOfSquaredDeviations += secondDelta * (second - secondMean);
+        coMoment += firstDelta * (second - secondMean);
+    }
+
+    // Adds the pairs gathered by another accumulator, e.g. over another partition of the table
+    public void merge(CorrelationStatistics other){
+        if(other.count == 0){
+            return;
+        }
+        if(count == 0){
+            count = other.count;
+            firstMean = other.firstMean;
+            secondMean = other.secondMean;
+            firstSumOfSquaredDeviations = other.firstSumOfSquaredDeviations;
+            secondSumOfSquaredDeviations = other.secondSumOfSquaredDeviations;
+            coMoment = other.coMoment;
+            return;
+        }
+
+        long total = count + other.count;
+        double weight = (double) count * other.count / total;
+        double firstDelta = other.firstMean - firstMean;
+        double secondDelta = other.secondMean - secondMean;
+        firstMean += firstDelta * other.count / total;
+        secondMean += secondDelta * other.count / total;
+        firstSumOfSquaredDeviations += other.firstSumOfSquaredDeviations + firstDelta * firstDelta * weight;
+        secondSumOfSquaredDeviations += other.secondSumOfSquaredDeviations + secondDelta * secondDelta * weight;
+        coMoment += other.coMoment + firstDelta * secondDelta * weight;
+        count = total;
+    }
+
+    // Writes the accumulated values to the flat pair layout of MultiColumnStatistics, with the two columns
+    // swapped if the pair is stored the other way round there
+    void writeTo(double[] pairs, int offset, boolean swapped){
+        pairs[offset] = count;
+        pairs[offset + 1] = swapped ? secondMean : firstMean;
+        pairs[offset + 2] = swapped ? firstMean : secondMean;
+        pairs[offset + 3] = swapped ? secondSumOfSquaredDeviations : firstSumOfSquaredDeviations;
+        pairs[offset + 4] = swapped ? firstSumOfSquaredDeviations : secondSumOfSquaredDeviations;
+        pairs[offset + 5] = coMoment;
+    }
+
+    // The number of rows where both columns hold a value
+    public long getCount() {
+        return count;
+    }
+
+    // Returns the sample covariance of the two columns, or NaN if less than two pairs were added
+    public double getCovariance() {
+        return count < 2 ? Double.NaN : coMoment / (count - 1);
+    }
+
+    // Returns the correlation coefficient of the two columns, or NaN if it is not defined
+    public double getCorrelationCoefficient() {
+        return coMoment / Math.sqrt(firstSumOfSquaredDeviations * secondSumOfSquaredDeviations);
+    }
+}
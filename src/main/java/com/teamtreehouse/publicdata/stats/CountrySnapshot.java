@@ -0,0 +1,363 @@
+package com.teamtreehouse.publicdata.stats;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+
+// A read-optimized, column oriented copy of the Country table. The codes are kept sorted, so a country
+// is found by binary search, and the numeric columns are primitive double arrays with a bitmap telling
+// which rows hold a value. The statistics are calculated over these arrays without boxing or allocating
+// anything per row.
+// A snapshot is immutable: with and without return a changed copy and leave the snapshot as it was (copy-on-write),
+// so any number of threads can read one without locking while a writer builds the next.
+public final class CountrySnapshot {
+    // The version of a row whose country didn't carry one
+    private static final long NO_VERSION = -1;
+
+    private final int size;
+    private final String[] codes;
+    private final String[] names;
+    private final long[] versions;
+    private final double[] internetUsers;
+    private final double[] adultLiteracyRates;
+    private final long[] internetUsersPresent;
+    private final long[] adultLiteracyRatesPresent;
+
+    // The rows are filled by the factory methods, before the snapshot is handed out
+    private CountrySnapshot(int size){
+        this.size = size;
+        codes = new String[size];
+        names = new String[size];
+        versions = new long[size];
+        internetUsers = new double[size];
+        adultLiteracyRates = new double[size];
+        internetUsersPresent = new long[(size + 63) >>> 6];
+        adultLiteracyRatesPresent = new long[(size + 63) >>> 6];
+    }
+
+    // Builds a snapshot holding the given countries
+    public static CountrySnapshot of(List<Country> countries){
+        Country[] sorted = countries.toArray(new Country[countries.size()]);
+        Arrays.sort(sorted, (o1, o2) -> o1.getCode().compareTo(o2.getCode()));
+
+        CountrySnapshot snapshot = new CountrySnapshot(sorted.length);
+        for(int i = 0; i < sorted.length; i++){
+            snapshot.set(i, sorted[i]);
+        }
+
+        return snapshot;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Returns a snapshot that also holds the country, replacing the country with the same code if there is one.
+    // A country older than the one it would replace, by version, is ignored, so writers that patch the snapshot
+    // in a different order than they wrote the table still leave the latest row in it.
+    public CountrySnapshot with(Country country){
+        int index = indexOf(country.getCode());
+        if(index >= 0){
+            if(country.getVersion() != null && country.getVersion() < versions[index]){
+                return this;
+            }
+            CountrySnapshot copy = new CountrySnapshot(size);
+            copy.copyRows(this, 0, 0, size);
+            copy.set(index, country);
+            return copy;
+        }
+
+        int insertion = -index - 1;
+        CountrySnapshot copy = new CountrySnapshot(size + 1);
+        copy.copyRows(this, 0, 0, insertion);
+        copy.set(insertion, country);
+        copy.copyRows(this, insertion, insertion + 1, size - insertion);
+        return copy;
+    }
+
+    // Returns a snapshot without the countries with the given codes. Codes that aren't in the snapshot are skipped.
+    public CountrySnapshot without(Collection<String> removedCodes){
+        Set<String> removed = new HashSet<>();
+        for(String code : removedCodes){
+            if(indexOf(code) >= 0){
+                removed.add(code);
+            }
+        }
+        if(removed.isEmpty()){
+            return this;
+        }
+
+        CountrySnapshot copy = new CountrySnapshot(size - removed.size());
+        int to = 0;
+        for(int from = 0; from < size; from++){
+            if(!removed.contains(codes[from])){
+                copy.copyRows(this, from, to++, 1);
+            }
+        }
+        return copy;
+    }
+
+    // Gets a detached copy of the country with the given code, or null if it isn't in the snapshot
+    public Country getCountry(String code){
+        int index = indexOf(code);
+        return index < 0 ? null : countryAt(index);
+    }
+
+    // Gathers the statistics of two columns and their correlation in one pass over the arrays
+    public CountryStatistics getStatistics(CountryColumn firstColumn, CountryColumn secondColumn){
+        double[] first = values(firstColumn);
+        double[] second = values(secondColumn);
+        long[] firstPresent = present(firstColumn);
+        long[] secondPresent = present(secondColumn);
+
+        return new CountryStatistics(firstColumn, secondColumn,
+                getColumnStatistics(first, firstPresent), getColumnStatistics(second, secondPresent),
+                getCorrelation(first, firstPresent, second, secondPresent));
+    }
+
+    // Gathers the statistics of any number of columns and their correlation matrix with one pass over the array
+    // of every column and one over every pair of them. Only the countries holding a min or max are built.
+    public MultiColumnStatistics getStatistics(List<CountryColumn> columns){
+        MultiColumnStatistics statistics = new MultiColumnStatistics(columns);
+        for(CountryColumn column : columns){
+            statistics.setColumn(column, getColumnStatistics(column), getSketch(values(column), present(column)));
+        }
+        for(int i = 0; i < columns.size(); i++){
+            CountryColumn first = columns.get(i);
+            for(int j = i + 1; j < columns.size(); j++){
+                CountryColumn second = columns.get(j);
+                statistics.setCorrelation(first, second,
+                        getCorrelation(values(first), present(first), values(second), present(second)));
+            }
+        }
+        return statistics;
+    }
+
+    // Gathers the countries with the greatest and least values of a column, ranking the rows by their index and
+    // value over the array. Only the countries of the rows that made it to either end are built.
+    public ColumnRanking getRanking(CountryColumn column, int size){
+        ColumnRanking ranking = new ColumnRanking(column, size);
+        double[] values = values(column);
+        long[] present = present(column);
+        int[] greatest = rankRows(values, present, size, true);
+        int[] least = rankRows(values, present, size, false);
+
+        // A row can be at both ends of a small table, and must only be added once
+        int[] rows = Arrays.copyOf(greatest, greatest.length + least.length);
+        System.arraycopy(least, 0, rows, greatest.length, least.length);
+        Arrays.sort(rows);
+        for(int i = 0; i < rows.length; i++){
+            if(i == 0 || rows[i] != rows[i - 1]){
+                ranking.add(countryAt(rows[i]));
+            }
+        }
+        return ranking;
+    }
+
+    // Gathers the statistics of one column in one pass over its array
+    public ColumnStatistics getColumnStatistics(CountryColumn column){
+        return getColumnStatistics(values(column), present(column));
+    }
+
+    private ColumnStatistics getColumnStatistics(double[] values, long[] present){
+        long count = 0;
+        double mean = 0.0;
+        double sumOfSquaredDeviations = 0.0;
+        int minIndex = -1;
+        int maxIndex = -1;
+
+        for(int i = 0; i < size; i++){
+            if(!isSet(present, i)){
+                continue;
+            }
+            double value = values[i];
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            sumOfSquaredDeviations += delta * (value - mean);
+
+            if(minIndex < 0 || value < values[minIndex]){
+                minIndex = i;
+            }
+            if(maxIndex < 0 || value > values[maxIndex]){
+                maxIndex = i;
+            }
+        }
+
+        if(count == 0){
+            return new ColumnStatistics();
+        }
+
+        return new ColumnStatistics(count, mean, sumOfSquaredDeviations,
+                countryAt(minIndex), values[minIndex], countryAt(maxIndex), values[maxIndex]);
+    }
+
+    private CorrelationStatistics getCorrelation(double[] first, long[] firstPresent,
+                                                 double[] second, long[] secondPresent){
+        CorrelationStatistics correlation = new CorrelationStatistics();
+        for(int i = 0; i < size; i++){
+            if(isSet(firstPresent, i) && isSet(secondPresent, i)){
+                correlation.add(first[i], second[i]);
+            }
+        }
+        return correlation;
+    }
+
+    private QuantileSketch getSketch(double[] values, long[] present){
+        QuantileSketch sketch = new QuantileSketch();
+        for(int i = 0; i < size; i++){
+            if(isSet(present, i)){
+                sketch.add(values[i]);
+            }
+        }
+        return sketch;
+    }
+
+    // Finds the rows holding the count greatest (or least) values with a binary heap of row indexes whose root is
+    // the kept row that ranks last, like TopCountries does with countries. The rows are in code order, so between
+    // equal values the lower row, holding the lower code, ranks first.
+    private int[] rankRows(double[] values, long[] present, int count, boolean greatest){
+        int[] heap = new int[Math.min(count, size)];
+        int kept = 0;
+        for(int i = 0; i < size; i++){
+            if(!isSet(present, i)){
+                continue;
+            }
+            if(kept < heap.length){
+                heap[kept] = i;
+                siftUp(heap, kept++, values, greatest);
+            }else if(kept > 0 && ranksBefore(values, i, heap[0], greatest)){
+                heap[0] = i;
+                siftDown(heap, kept, values, greatest);
+            }
+        }
+        return Arrays.copyOf(heap, kept);
+    }
+
+    private static void siftUp(int[] heap, int position, double[] values, boolean greatest){
+        while(position > 0){
+            int parent = (position - 1) >>> 1;
+            if(!ranksBefore(values, heap[parent], heap[position], greatest)){
+                return;
+            }
+            swap(heap, parent, position);
+            position = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int kept, double[] values, boolean greatest){
+        int position = 0;
+        while(true){
+            int last = position;
+            for(int child = 2 * position + 1; child <= 2 * position + 2 && child < kept; child++){
+                if(ranksBefore(values, heap[last], heap[child], greatest)){
+                    last = child;
+                }
+            }
+            if(last == position){
+                return;
+            }
+            swap(heap, position, last);
+            position = last;
+        }
+    }
+
+    // Whether row a ranks before row b
+    private static boolean ranksBefore(double[] values, int a, int b, boolean greatest){
+        int comparison = Double.compare(values[a], values[b]);
+        if(greatest){
+            comparison = -comparison;
+        }
+        return comparison < 0 || (comparison == 0 && a < b);
+    }
+
+    private static void swap(int[] heap, int i, int j){
+        int row = heap[i];
+        heap[i] = heap[j];
+        heap[j] = row;
+    }
+
+    // Finds the row of a code. If it isn't there, returns (-(insertion point) - 1) like Arrays.binarySearch
+    private int indexOf(String code){
+        return Arrays.binarySearch(codes, 0, size, code);
+    }
+
+    private Country countryAt(int index){
+        Country country = new Country(new Country
+                .CountryBuilder(codes[index], names[index])
+                .withInternetUsers(isSet(internetUsersPresent, index) ? internetUsers[index] : null)
+                .withAdultLiteracyRate(isSet(adultLiteracyRatesPresent, index) ? adultLiteracyRates[index] : null));
+        country.setVersion(versions[index] == NO_VERSION ? null : versions[index]);
+        return country;
+    }
+
+    // Only called on a snapshot that wasn't handed out yet
+    private void set(int index, Country country){
+        codes[index] = country.getCode();
+        names[index] = country.getName();
+        versions[index] = country.getVersion() == null ? NO_VERSION : country.getVersion();
+        setValue(internetUsers, internetUsersPresent, index, country.getInternetUsers());
+        setValue(adultLiteracyRates, adultLiteracyRatesPresent, index, country.getAdultLiteracyRate());
+    }
+
+    // Copies length rows of another snapshot, starting at from, to the rows of this one starting at to.
+    // Only called on a snapshot that wasn't handed out yet.
+    private void copyRows(CountrySnapshot source, int from, int to, int length){
+        System.arraycopy(source.codes, from, codes, to, length);
+        System.arraycopy(source.names, from, names, to, length);
+        System.arraycopy(source.versions, from, versions, to, length);
+        System.arraycopy(source.internetUsers, from, internetUsers, to, length);
+        System.arraycopy(source.adultLiteracyRates, from, adultLiteracyRates, to, length);
+        for(int i = 0; i < length; i++){
+            copyBit(source.internetUsersPresent, from + i, internetUsersPresent, to + i);
+            copyBit(source.adultLiteracyRatesPresent, from + i, adultLiteracyRatesPresent, to + i);
+        }
+    }
+
+    private static void setValue(double[] values, long[] present, int index, Double value){
+        if(value == null){
+            values[index] = 0.0;
+            present[index >>> 6] &= ~(1L << index);
+        }else{
+            values[index] = value;
+            present[index >>> 6] |= 1L << index;
+        }
+    }
+
+    private static boolean isSet(long[] present, int index){
+        return (present[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void copyBit(long[] source, int from, long[] target, int to){
+        if(isSet(source, from)){
+            target[to >>> 6] |= 1L << to;
+        }else{
+            target[to >>> 6] &= ~(1L << to);
+        }
+    }
+
+    private double[] values(CountryColumn column){
+        switch(column){
+            case INTERNET_USERS:
+                return internetUsers;
+            case ADULT_LITERACY_RATE:
+                return adultLiteracyRates;
+        }
+        throw new IllegalArgumentException("The snapshot doesn't hold the " + column + " column.");
+    }
+
+    private long[] present(CountryColumn column){
+        switch(column){
+            case INTERNET_USERS:
+                return internetUsersPresent;
+            case ADULT_LITERACY_RATE:
+                return adultLiteracyRatesPresent;
+        }
+        throw new IllegalArgumentException("The snapshot doesn't hold the " + column + " column.");
+    }
+}
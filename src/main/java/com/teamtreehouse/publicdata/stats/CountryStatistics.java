@@ -0,0 +1,81 @@
+package com.teamtreehouse.publicdata.stats;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+
+// Holds the statistics of two numeric columns and their correlation, all gathered in one scan
+// of the Country table.
+public class CountryStatistics {
+    private final CountryColumn firstColumn;
+    private final CountryColumn secondColumn;
+    private final ColumnStatistics firstStatistics;
+    private final ColumnStatistics secondStatistics;
+    private final CorrelationStatistics correlation;
+
+    public CountryStatistics(CountryColumn firstColumn, CountryColumn secondColumn){
+        this(firstColumn, secondColumn, new ColumnStatistics(), new ColumnStatistics(), new CorrelationStatistics());
+    }
+
+    public CountryStatistics(CountryColumn firstColumn, CountryColumn secondColumn, ColumnStatistics firstStatistics,
+                             ColumnStatistics secondStatistics, CorrelationStatistics correlation){
+        this.firstColumn = firstColumn;
+        this.secondColumn = secondColumn;
+        this.firstStatistics = firstStatistics;
+        this.secondStatistics = secondStatistics;
+        this.correlation = correlation;
+    }
+
+    // Adds a country to the statistics. Null column values are skipped.
+    public void add(Country country){
+        Double first = firstColumn.getValue(country);
+        Double second = secondColumn.getValue(country);
+
+        if(first != null){
+            firstStatistics.add(country, first);
+        }
+
+        if(second != null){
+            secondStatistics.add(country, second);
+        }
+
+        if(first != null && second != null){
+            correlation.add(first, second);
+        }
+    }
+
+    // Adds the statistics gathered for the same two columns over another partition of the table
+    public void merge(CountryStatistics other){
+        if(other.firstColumn != firstColumn || other.secondColumn != secondColumn){
+            throw new IllegalArgumentException("Only statistics of the same columns can be merged.");
+        }
+        firstStatistics.merge(other.firstStatistics);
+        secondStatistics.merge(other.secondStatistics);
+        correlation.merge(other.correlation);
+    }
+
+    public CountryColumn getFirstColumn() {
+        return firstColumn;
+    }
+
+    public CountryColumn getSecondColumn() {
+        return secondColumn;
+    }
+
+    // Returns the statistics of one of the two columns these statistics were gathered for
+    public ColumnStatistics getColumnStatistics(CountryColumn column){
+        if(column == firstColumn){
+            return firstStatistics;
+        }else if(column == secondColumn){
+            return secondStatistics;
+        }
+        throw new IllegalArgumentException("No statistics were gathered for the " + column + " column.");
+    }
+
+    public CorrelationStatistics getCorrelation() {
+        return correlation;
+    }
+
+    public double getCorrelationCoefficient() {
+        return correlation.getCorrelationCoefficient();
+    }
+}
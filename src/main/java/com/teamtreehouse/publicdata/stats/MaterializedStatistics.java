@@ -0,0 +1,276 @@
+package com.teamtreehouse.publicdata.stats;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+
+// Statistics of the Country table that are kept up to date on every write instead of being recalculated.
+// Every column keeps its count, running sum and sum of squares, and a sorted map from value to codes for
+// the min and max. Every pair of columns keeps the running sums of the rows where both hold a value,
+// including the cross-products. Adding, updating or removing a country costs O(log n), and the statistics
+// are read without looking at the rows again.
+// The percentiles come from a QuantileSketch per column. Adding a country adds its values to the sketch; a sketch
+// can't take a value out, so a removed or changed value stays in it as a stale one. Once the stale values are more
+// than 1/k of the count, the write that took the last one out builds the sketch again from the sorted values,
+// which costs O(n) once every n/k removals: O(k) per removal amortized, and reads never rebuild it. The stale
+// values add at most 1/k of the count to the rank error of a percentile, below the 1.7/k of the sketch itself.
+// The sums are taken of the values minus a fixed shift (the first value seen), which keeps the variance
+// accurate when the values lie far from zero.
+public class MaterializedStatistics {
+    private final Map<String, Country> countries = new HashMap<>();
+    private final Map<CountryColumn, RunningColumn> columns = new EnumMap<>(CountryColumn.class);
+    private final RunningPair[][] pairs;
+
+    public MaterializedStatistics(){
+        CountryColumn[] values = CountryColumn.values();
+        pairs = new RunningPair[values.length][values.length];
+        for(CountryColumn first : values){
+            columns.put(first, new RunningColumn());
+            for(CountryColumn second : values){
+                if(first.ordinal() < second.ordinal()){
+                    pairs[first.ordinal()][second.ordinal()] = new RunningPair();
+                }
+            }
+        }
+    }
+
+    public int size(){
+        return countries.size();
+    }
+
+    // Adds a country, or replaces the values of the country with the same code. The old values are taken out
+    // of the sums first, so every column moves correctly between holding a value and being null.
+    public void put(Country country){
+        Country copy = new Country(country);
+        Country old = countries.put(copy.getCode(), copy);
+        if(old != null){
+            apply(old, -1);
+        }
+        apply(copy, 1);
+    }
+
+    // Removes the country with the given code, if it is there
+    public void remove(String code){
+        Country old = countries.remove(code);
+        if(old != null){
+            apply(old, -1);
+        }
+    }
+
+    public CountryStatistics getStatistics(CountryColumn firstColumn, CountryColumn secondColumn){
+        return new CountryStatistics(firstColumn, secondColumn,
+                columns.get(firstColumn).toColumnStatistics(), columns.get(secondColumn).toColumnStatistics(),
+                getCorrelation(firstColumn, secondColumn));
+    }
+
+    // Gets the statistics, percentiles and correlation matrix of the given columns, like a scan of the table would
+    // gather them. The sketches are copies, so the result stays as it is when the statistics change.
+    public MultiColumnStatistics getStatistics(List<CountryColumn> columnList){
+        MultiColumnStatistics statistics = new MultiColumnStatistics(columnList);
+        for(CountryColumn column : columnList){
+            RunningColumn runningColumn = columns.get(column);
+            statistics.setColumn(column, runningColumn.toColumnStatistics(),
+                    new QuantileSketch(runningColumn.sketch));
+        }
+        for(int i = 0; i < columnList.size(); i++){
+            for(int j = i + 1; j < columnList.size(); j++){
+                statistics.setCorrelation(columnList.get(i), columnList.get(j),
+                        getCorrelation(columnList.get(i), columnList.get(j)));
+            }
+        }
+        return statistics;
+    }
+
+    public ColumnStatistics getColumnStatistics(CountryColumn column){
+        return columns.get(column).toColumnStatistics();
+    }
+
+    // Gets the countries with the greatest and least values of a column from the ends of its sorted map,
+    // looking at no more than size countries at each end
+    public ColumnRanking getRanking(CountryColumn column, int size){
+        ColumnRanking ranking = new ColumnRanking(column, size);
+        RunningColumn runningColumn = columns.get(column);
+        addFirst(ranking, runningColumn.codesByValue.descendingMap().values(), size);
+        addFirst(ranking, runningColumn.codesByValue.values(), size);
+        return ranking;
+    }
+
+    private void addFirst(ColumnRanking ranking, Collection<TreeSet<String>> codesByValue, int size){
+        int added = 0;
+        for(TreeSet<String> codes : codesByValue){
+            for(String code : codes){
+                if(added++ == size){
+                    return;
+                }
+                ranking.add(new Country(countries.get(code)));
+            }
+        }
+    }
+
+    private CorrelationStatistics getCorrelation(CountryColumn firstColumn, CountryColumn secondColumn){
+        if(firstColumn == secondColumn){
+            return columns.get(firstColumn).toCorrelationWithItself();
+        }
+        if(firstColumn.ordinal() < secondColumn.ordinal()){
+            return pairs[firstColumn.ordinal()][secondColumn.ordinal()].toCorrelationStatistics(false);
+        }
+        return pairs[secondColumn.ordinal()][firstColumn.ordinal()].toCorrelationStatistics(true);
+    }
+
+    // Adds (sign 1) or takes out (sign -1) the values of a country
+    private void apply(Country country, int sign){
+        for(Map.Entry<CountryColumn, RunningColumn> column : columns.entrySet()){
+            Double value = column.getKey().getValue(country);
+            if(value != null){
+                column.getValue().apply(country.getCode(), value, sign);
+            }
+        }
+        for(CountryColumn first : CountryColumn.values()){
+            Double firstValue = first.getValue(country);
+            for(CountryColumn second : CountryColumn.values()){
+                Double secondValue = second.getValue(country);
+                if(first.ordinal() < second.ordinal() && firstValue != null && secondValue != null){
+                    pairs[first.ordinal()][second.ordinal()].apply(firstValue, secondValue, sign);
+                }
+            }
+        }
+    }
+
+    private class RunningColumn {
+        private final TreeMap<Double, TreeSet<String>> codesByValue = new TreeMap<>();
+        private long count;
+        private Double shift;
+        private double sum;
+        private double sumOfSquares;
+        // The sketch of the values, which still holds staleValues values that were taken out since it was built
+        private QuantileSketch sketch = new QuantileSketch();
+        private long staleValues;
+
+        void apply(String code, double value, int sign){
+            if(shift == null){
+                shift = value;
+            }
+            double shifted = value - shift;
+            count += sign;
+            sum += sign * shifted;
+            sumOfSquares += sign * shifted * shifted;
+            // Taking out the last value leaves the rounding errors of the sums behind, and a shift that may be far
+            // from the next values, so both start over
+            if(count == 0){
+                shift = null;
+                sum = 0.0;
+                sumOfSquares = 0.0;
+            }
+
+            if(sign > 0){
+                codesByValue.computeIfAbsent(value, key -> new TreeSet<>()).add(code);
+                sketch.add(value);
+            }else{
+                TreeSet<String> codes = codesByValue.get(value);
+                codes.remove(code);
+                if(codes.isEmpty()){
+                    codesByValue.remove(value);
+                }
+                staleValues++;
+                if(staleValues * QuantileSketch.DEFAULT_K > count){
+                    rebuildSketch();
+                }
+            }
+        }
+
+        // Builds the sketch again from the sorted values, without the stale ones
+        private void rebuildSketch(){
+            sketch = new QuantileSketch();
+            staleValues = 0;
+            for(Map.Entry<Double, TreeSet<String>> values : codesByValue.entrySet()){
+                for(int i = 0; i < values.getValue().size(); i++){
+                    sketch.add(values.getKey());
+                }
+            }
+        }
+
+        // The lowest code wins between countries holding the same min or max value
+        ColumnStatistics toColumnStatistics(){
+            if(count == 0){
+                return new ColumnStatistics();
+            }
+            Map.Entry<Double, TreeSet<String>> min = codesByValue.firstEntry();
+            Map.Entry<Double, TreeSet<String>> max = codesByValue.lastEntry();
+
+            return new ColumnStatistics(count, shift + sum / count, sumOfSquaredDeviations(),
+                    new Country(countries.get(min.getValue().first())), min.getKey(),
+                    new Country(countries.get(max.getValue().first())), max.getKey());
+        }
+
+        CorrelationStatistics toCorrelationWithItself(){
+            if(count == 0){
+                return new CorrelationStatistics();
+            }
+            double mean = shift + sum / count;
+            double deviations = sumOfSquaredDeviations();
+            return new CorrelationStatistics(count, mean, mean, deviations, deviations, deviations);
+        }
+
+        private double sumOfSquaredDeviations(){
+            return Math.max(0.0, sumOfSquares - sum * sum / count);
+        }
+    }
+
+    private static class RunningPair {
+        private long count;
+        private Double firstShift;
+        private Double secondShift;
+        private double firstSum;
+        private double secondSum;
+        private double firstSumOfSquares;
+        private double secondSumOfSquares;
+        private double sumOfProducts;
+
+        void apply(double first, double second, int sign){
+            if(firstShift == null){
+                firstShift = first;
+                secondShift = second;
+            }
+            double firstShifted = first - firstShift;
+            double secondShifted = second - secondShift;
+            count += sign;
+            firstSum += sign * firstShifted;
+            secondSum += sign * secondShifted;
+            firstSumOfSquares += sign * firstShifted * firstShifted;
+            secondSumOfSquares += sign * secondShifted * secondShifted;
+            sumOfProducts += sign * firstShifted * secondShifted;
+            // Starts over once the last pair is taken out, like RunningColumn
+            if(count == 0){
+                firstShift = null;
+                secondShift = null;
+                firstSum = 0.0;
+                secondSum = 0.0;
+                firstSumOfSquares = 0.0;
+                secondSumOfSquares = 0.0;
+                sumOfProducts = 0.0;
+            }
+        }
+
+        CorrelationStatistics toCorrelationStatistics(boolean swapped){
+            if(count == 0){
+                return new CorrelationStatistics();
+            }
+            double firstMean = firstShift + firstSum / count;
+            double secondMean = secondShift + secondSum / count;
+            double firstDeviations = Math.max(0.0, firstSumOfSquares - firstSum * firstSum / count);
+            double secondDeviations = Math.max(0.0, secondSumOfSquares - secondSum * secondSum / count);
+            double coMoment = sumOfProducts - firstSum * secondSum / count;
+
+            return swapped ?
+                    new CorrelationStatistics(count, secondMean, firstMean, secondDeviations, firstDeviations, coMoment) :
+                    new CorrelationStatistics(count, firstMean, secondMean, firstDeviations, secondDeviations, coMoment);
+        }
+    }
+}
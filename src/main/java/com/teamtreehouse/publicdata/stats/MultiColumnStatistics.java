@@ -0,0 +1,208 @@
+package com.teamtreehouse.publicdata.stats;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+
+// Holds the statistics of any number of numeric columns and the correlation of every pair of them, all gathered
+// in one scan of the Country table. Every column gets its count, mean, variance, min, max and percentiles; the
+// percentiles come from a QuantileSketch, so the memory used doesn't grow with the table.
+// The correlation of a pair is taken over the rows where both columns hold a value.
+// The co-moments of the k(k-1)/2 pairs are kept in one flat array, PAIR_STRIDE values per pair in the order
+// the inner loop visits them, so a row is added by walking that array once from start to end.
+public class MultiColumnStatistics {
+    // count, first mean, second mean, first and second sum of squared deviations, co-moment
+    private static final int PAIR_STRIDE = 6;
+
+    private final CountryColumn[] columns;
+    // The position of every CountryColumn in columns, or -1 if it wasn't requested
+    private final int[] positions;
+    private final ColumnStatistics[] columnStatistics;
+    private final double[] pairs;
+    private final QuantileSketch[] sketches;
+    // The values of the row being added, NaN where the country has no value
+    private final double[] row;
+
+    public MultiColumnStatistics(List<CountryColumn> columns){
+        this.columns = columns.toArray(new CountryColumn[columns.size()]);
+        positions = new int[CountryColumn.values().length];
+        Arrays.fill(positions, -1);
+        for(int i = 0; i < this.columns.length; i++){
+            if(positions[this.columns[i].ordinal()] >= 0){
+                throw new IllegalArgumentException("The " + this.columns[i] + " column was named more than once.");
+            }
+            positions[this.columns[i].ordinal()] = i;
+        }
+
+        int k = this.columns.length;
+        columnStatistics = new ColumnStatistics[k];
+        sketches = new QuantileSketch[k];
+        for(int i = 0; i < k; i++){
+            columnStatistics[i] = new ColumnStatistics();
+            sketches[i] = new QuantileSketch();
+        }
+        pairs = new double[k * (k - 1) / 2 * PAIR_STRIDE];
+        row = new double[k];
+    }
+
+    // Adds a country to the statistics. Null column values are skipped.
+    public void add(Country country){
+        int k = columns.length;
+        for(int i = 0; i < k; i++){
+            Double value = columns[i].getValue(country);
+            if(value == null){
+                row[i] = Double.NaN;
+                continue;
+            }
+            row[i] = value;
+            columnStatistics[i].add(country, value);
+            sketches[i].add(value);
+        }
+
+        // Welford's update of every pair, the same one CorrelationStatistics does for a single pair
+        int pair = 0;
+        for(int i = 0; i < k - 1; i++){
+            double first = row[i];
+            if(Double.isNaN(first)){
+                pair += (k - 1 - i) * PAIR_STRIDE;
+                continue;
+            }
+            for(int j = i + 1; j < k; j++, pair += PAIR_STRIDE){
+                double second = row[j];
+                if(Double.isNaN(second)){
+                    continue;
+                }
+                double count = ++pairs[pair];
+                double firstDelta = first - pairs[pair + 1];
+                double secondDelta = second - pairs[pair + 2];
+                pairs[pair + 1] += firstDelta / count;
+                pairs[pair + 2] += secondDelta / count;
+                pairs[pair + 3] += firstDelta * (first - pairs[pair + 1]);
+                pairs[pair + 4] += secondDelta * (second - pairs[pair + 2]);
+                pairs[pair + 5] += firstDelta * (second - pairs[pair + 2]);
+            }
+        }
+    }
+
+    // Adds the statistics gathered for the same columns over another partition of the table
+    public void merge(MultiColumnStatistics other){
+        if(!Arrays.equals(columns, other.columns)){
+            throw new IllegalArgumentException("Only statistics of the same columns can be merged.");
+        }
+        for(int i = 0; i < columns.length; i++){
+            columnStatistics[i].merge(other.columnStatistics[i]);
+            sketches[i].merge(other.sketches[i]);
+        }
+        // The pairwise update of Chan et al., the same one CorrelationStatistics.merge does for a single pair
+        for(int pair = 0; pair < pairs.length; pair += PAIR_STRIDE){
+            double otherCount = other.pairs[pair];
+            if(otherCount == 0){
+                continue;
+            }
+            double count = pairs[pair];
+            double total = count + otherCount;
+            double weight = count * otherCount / total;
+            double firstDelta = other.pairs[pair + 1] - pairs[pair + 1];
+            double secondDelta = other.pairs[pair + 2] - pairs[pair + 2];
+            pairs[pair] = total;
+            pairs[pair + 1] += firstDelta * otherCount / total;
+            pairs[pair + 2] += secondDelta * otherCount / total;
+            pairs[pair + 3] += other.pairs[pair + 3] + firstDelta * firstDelta * weight;
+            pairs[pair + 4] += other.pairs[pair + 4] + secondDelta * secondDelta * weight;
+            pairs[pair + 5] += other.pairs[pair + 5] + firstDelta * secondDelta * weight;
+        }
+    }
+
+    // Sets the statistics and the sketch of one column to values that were kept up to date or scanned elsewhere,
+    // e.g. by MaterializedStatistics or over the columns of a mapped file, instead of adding the rows
+    public void setColumn(CountryColumn column, ColumnStatistics statistics, QuantileSketch sketch){
+        int position = position(column);
+        columnStatistics[position] = statistics;
+        sketches[position] = sketch;
+    }
+
+    // Sets the correlation of two of the columns to one that was kept up to date or scanned elsewhere
+    public void setCorrelation(CountryColumn firstColumn, CountryColumn secondColumn,
+                               CorrelationStatistics correlation){
+        int first = position(firstColumn);
+        int second = position(secondColumn);
+        if(first == second){
+            throw new IllegalArgumentException("A column can't be correlated with itself.");
+        }
+        if(first < second){
+            correlation.writeTo(pairs, pairOffset(first, second), false);
+        }else{
+            correlation.writeTo(pairs, pairOffset(second, first), true);
+        }
+    }
+
+    public List<CountryColumn> getColumns() {
+        return Collections.unmodifiableList(Arrays.asList(columns));
+    }
+
+    public ColumnStatistics getColumnStatistics(CountryColumn column){
+        return columnStatistics[position(column)];
+    }
+
+    // Returns about the value below which the given percent of the values of a column fall, or NaN if the
+    // column holds no value. getPercentile(column, 50) is the median. See QuantileSketch for the accuracy.
+    public double getPercentile(CountryColumn column, double percent){
+        if(percent < 0 || percent > 100){
+            throw new IllegalArgumentException("The percent must be between 0 and 100.");
+        }
+        return sketches[position(column)].getQuantile(percent / 100);
+    }
+
+    // Returns the correlation of two of the columns, over the rows where both of them hold a value
+    public CorrelationStatistics getCorrelation(CountryColumn firstColumn, CountryColumn secondColumn){
+        int first = position(firstColumn);
+        int second = position(secondColumn);
+        if(first == second){
+            throw new IllegalArgumentException("A column can't be correlated with itself.");
+        }
+        if(first < second){
+            return correlationAt(pairOffset(first, second));
+        }
+        int pair = pairOffset(second, first);
+        return new CorrelationStatistics((long) pairs[pair], pairs[pair + 2], pairs[pair + 1],
+                pairs[pair + 4], pairs[pair + 3], pairs[pair + 5]);
+    }
+
+    // Returns the correlation coefficients of every pair of columns, in the order of getColumns().
+    // The diagonal holds 1.
+    public double[][] getCorrelationMatrix(){
+        int k = columns.length;
+        double[][] matrix = new double[k][k];
+        int pair = 0;
+        for(int i = 0; i < k; i++){
+            matrix[i][i] = 1.0;
+            for(int j = i + 1; j < k; j++, pair += PAIR_STRIDE){
+                matrix[i][j] = correlationAt(pair).getCorrelationCoefficient();
+                matrix[j][i] = matrix[i][j];
+            }
+        }
+        return matrix;
+    }
+
+    private int position(CountryColumn column){
+        int position = positions[column.ordinal()];
+        if(position < 0){
+            throw new IllegalArgumentException("No statistics were gathered for the " + column + " column.");
+        }
+        return position;
+    }
+
+    // The offset of the pair (i, j), i < j, in the pairs array: the pairs of the rows above i come first
+    private int pairOffset(int i, int j){
+        int k = columns.length;
+        return (i * (2 * k - i - 1) / 2 + (j - i - 1)) * PAIR_STRIDE;
+    }
+
+    private CorrelationStatistics correlationAt(int pair){
+        return new CorrelationStatistics((long) pairs[pair], pairs[pair + 1], pairs[pair + 2],
+                pairs[pair + 3], pairs[pair + 4], pairs[pair + 5]);
+    }
+}
@@ -0,0 +1,194 @@
+package com.teamtreehouse.publicdata.stats;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// A KLL sketch (Karnin, Lang and Liberty) that answers approximate quantiles of a stream of values in bounded
+// memory. The values are kept in levels of compactors; an item at level h stands for 2^h values. When a level
+// fills up it is sorted and every other item of it, starting from a random one, moves one level up.
+// The capacity of a level shrinks by 2/3 per level below the top one, so the sketch holds O(k) items however
+// many values are added, and the rank error is about 1.7 / k of the count.
+// Sketches built over different partitions of the data can be merged.
+// The quantiles are exact as long as fewer than k values were added.
+public class QuantileSketch {
+    public static final int DEFAULT_K = 200;
+    private static final int MIN_CAPACITY = 2;
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    // A fixed seed keeps the results of a given stream of values reproducible
+    private static final long SEED = 0x5DEECE66DL;
+
+    private final int k;
+    private final Random random = new Random(SEED);
+    private double[][] levels = new double[1][];
+    private int[] levelSizes = new int[1];
+    private int itemCount;
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    public QuantileSketch(){
+        this(DEFAULT_K);
+    }
+
+    // A greater k gives more accurate quantiles at the cost of memory
+    public QuantileSketch(int k){
+        if(k < MIN_CAPACITY){
+            throw new IllegalArgumentException("The k of the sketch must be at least " + MIN_CAPACITY + ".");
+        }
+        this.k = k;
+        levels[0] = new double[k];
+    }
+
+    // Copies another sketch, so the copy can be added to or merged without changing the original
+    public QuantileSketch(QuantileSketch other){
+        this(other.k);
+        levels = new double[other.levels.length][];
+        for(int level = 0; level < levels.length; level++){
+            levels[level] = other.levels[level].clone();
+        }
+        levelSizes = other.levelSizes.clone();
+        itemCount = other.itemCount;
+        count = other.count;
+        min = other.min;
+        max = other.max;
+    }
+
+    public void add(double value){
+        if(count == 0 || value < min){
+            min = value;
+        }
+        if(count == 0 || value > max){
+            max = value;
+        }
+        count++;
+        append(0, value);
+        compress();
+    }
+
+    // Adds the values summarized by another sketch. Each level of it is appended to the same level here,
+    // and the levels that overflow are compacted.
+    public void merge(QuantileSketch other){
+        if(other.count == 0){
+            return;
+        }
+        if(count == 0 || other.min < min){
+            min = other.min;
+        }
+        if(count == 0 || other.max > max){
+            max = other.max;
+        }
+        count += other.count;
+        for(int level = 0; level < other.levels.length; level++){
+            for(int i = 0; i < other.levelSizes[level]; i++){
+                append(level, other.levels[level][i]);
+            }
+        }
+        compress();
+    }
+
+    // The number of values added, not the number of items kept
+    public long getCount() {
+        return count;
+    }
+
+    // Returns the value below which about the given fraction (0 to 1) of the values fall, or NaN if no value
+    // was added. The fractions 0 and 1 return the exact min and max.
+    public double getQuantile(double fraction){
+        if(fraction < 0 || fraction > 1){
+            throw new IllegalArgumentException("The fraction must be between 0 and 1.");
+        }
+        if(count == 0){
+            return Double.NaN;
+        }
+        if(fraction == 0){
+            return min;
+        }
+        if(fraction == 1){
+            return max;
+        }
+
+        // Sorts the kept items together with their weights, then walks them up to the wanted rank
+        double[] values = new double[itemCount];
+        long[] weights = new long[itemCount];
+        Integer[] order = new Integer[itemCount];
+        int n = 0;
+        for(int level = 0; level < levels.length; level++){
+            for(int i = 0; i < levelSizes[level]; i++, n++){
+                values[n] = levels[level][i];
+                weights[n] = 1L << level;
+                order[n] = n;
+            }
+        }
+        Arrays.sort(order, (o1, o2) -> Double.compare(values[o1], values[o2]));
+
+        double rank = fraction * count;
+        long weight = 0;
+        for(int index : order){
+            weight += weights[index];
+            if(weight >= rank){
+                return values[index];
+            }
+        }
+        return max;
+    }
+
+    private void append(int level, double value){
+        while(level >= levels.length){
+            int added = levels.length;
+            levels = Arrays.copyOf(levels, added + 1);
+            levelSizes = Arrays.copyOf(levelSizes, added + 1);
+            levels[added] = new double[k];
+        }
+        if(levelSizes[level] == levels[level].length){
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+        levels[level][levelSizes[level]++] = value;
+        itemCount++;
+    }
+
+    // Compacts the levels that are over their capacity, lowest first, until the sketch fits its size again
+    private void compress(){
+        while(itemCount >= size()){
+            for(int level = 0; level < levels.length; level++){
+                if(levelSizes[level] >= capacity(level)){
+                    compact(level);
+                    break;
+                }
+            }
+        }
+    }
+
+    // Sorts a level and moves every other item of it one level up. With an odd number of items the
+    // greatest one stays behind.
+    private void compact(int level){
+        int size = levelSizes[level];
+        double[] items = levels[level];
+        Arrays.sort(items, 0, size);
+        int pairs = size / 2;
+        int offset = random.nextBoolean() ? 1 : 0;
+
+        double leftOver = items[size - 1];
+        levelSizes[level] = 0;
+        itemCount -= size;
+        for(int i = 0; i < pairs; i++){
+            append(level + 1, items[2 * i + offset]);
+        }
+        if(size % 2 == 1){
+            append(level, leftOver);
+        }
+    }
+
+    // The top level holds k items, every level below it 2/3 of the one above
+    private int capacity(int level){
+        int depth = levels.length - 1 - level;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private int size(){
+        int size = 0;
+        for(int level = 0; level < levels.length; level++){
+            size += capacity(level);
+        }
+        return size;
+    }
+}
@@ -0,0 +1,87 @@
+package com.teamtreehouse.publicdata.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.teamtreehouse.publicdata.model.Country;
+
+// Keeps the countries with the greatest (or least) values of a column seen so far, in a heap of at most
+// size entries. The root of the heap is the kept country that ranks last, so a new value is checked against
+// it in O(1) and replaces it in O(log size), and the whole table never has to be sorted.
+// Between countries holding the same value the lowest code ranks first.
+public class TopCountries {
+    private final int size;
+    private final boolean greatest;
+    // Orders the entries from the one ranking first to the one ranking last
+    private final Comparator<Entry> ranking;
+    private final PriorityQueue<Entry> heap;
+
+    // Keeps the size countries with the greatest values, or with the least values if greatest is false
+    public TopCountries(int size, boolean greatest){
+        if(size < 1){
+            throw new IllegalArgumentException("The size must be at least 1.");
+        }
+        this.size = size;
+        this.greatest = greatest;
+        Comparator<Entry> byValue = (o1, o2) -> Double.compare(o1.value, o2.value);
+        ranking = (greatest ? byValue.reversed() : byValue)
+                .thenComparing((o1, o2) -> o1.country.getCode().compareTo(o2.country.getCode()));
+        heap = new PriorityQueue<>(size + 1, ranking.reversed());
+    }
+
+    // Offers the value a country holds for the column. Null values must be filtered out by the caller.
+    public void add(Country country, double value){
+        offer(new Entry(country, value));
+    }
+
+    // Adds the countries kept by another heap, e.g. one filled over another partition of the table
+    public void merge(TopCountries other){
+        if(other.greatest != greatest){
+            throw new IllegalArgumentException("Only rankings in the same direction can be merged.");
+        }
+        for(Entry entry : other.heap){
+            offer(entry);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isGreatest() {
+        return greatest;
+    }
+
+    // Returns the kept countries, the one ranking first at the start
+    public List<Country> getCountries(){
+        List<Entry> entries = new ArrayList<>(heap);
+        Collections.sort(entries, ranking);
+        List<Country> countries = new ArrayList<>(entries.size());
+        for(Entry entry : entries){
+            countries.add(entry.country);
+        }
+        return countries;
+    }
+
+    private void offer(Entry entry){
+        if(heap.size() < size){
+            heap.add(entry);
+        }else if(ranking.compare(entry, heap.peek()) < 0){
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+
+    private static class Entry {
+        private final Country country;
+        private final double value;
+
+        Entry(Country country, double value){
+            this.country = country;
+            this.value = value;
+        }
+    }
+}
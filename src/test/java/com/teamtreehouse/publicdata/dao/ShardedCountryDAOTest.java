@@ -0,0 +1,131 @@
+package com.teamtreehouse.publicdata.dao;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnRanking;
+import com.teamtreehouse.publicdata.stats.ColumnStatistics;
+import com.teamtreehouse.publicdata.stats.CorrelationStatistics;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+import com.teamtreehouse.publicdata.stats.MultiColumnStatistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Writes the same generated rows to one in-memory H2 database and, through the sharded DAO, to three others, and
+// checks that what the shards gather and the sharded DAO merges matches what the single database returns.
+public class ShardedCountryDAOTest {
+    private static final String SINGLE_URL = "jdbc:h2:mem:sharded-test-single;DB_CLOSE_DELAY=-1";
+    private static final int SHARDS = 3;
+    private static final double TOLERANCE = 1e-9;
+    private static final int ROWS = 2000;
+
+    private static SimpleCountryDAO single;
+    private static ShardedCountryDAO sharded;
+
+    @BeforeClass
+    public static void seed(){
+        List<String> urls = new ArrayList<>();
+        for(int i = 0; i < SHARDS; i++){
+            urls.add("jdbc:h2:mem:sharded-test-" + i + ";DB_CLOSE_DELAY=-1");
+        }
+        single = new SimpleCountryDAO(SINGLE_URL, StatisticsMode.IN_MEMORY);
+        sharded = ShardedCountryDAO.open(urls, StatisticsMode.IN_MEMORY);
+
+        Random random = new Random(11);
+        List<Country> countries = new ArrayList<>(ROWS);
+        for(int i = 0; i < ROWS; i++){
+            countries.add(new Country(new Country.CountryBuilder(String.format("C%04d", i), "Country " + i)
+                    .withInternetUsers(random.nextInt(6) == 0 ? null : 50 + random.nextGaussian() * 15)
+                    .withAdultLiteracyRate(random.nextInt(3) == 0 ? null : random.nextDouble() * 100)));
+        }
+        single.mergeCountries(countries, EnumSet.allOf(CountryColumn.class));
+        sharded.mergeCountries(countries, EnumSet.allOf(CountryColumn.class));
+    }
+
+    @Test
+    public void everyShardHoldsSomeOfTheRows(){
+        int[] rows = new int[SHARDS];
+        for(Country country : sharded.fetchAllCountries()){
+            rows[sharded.shardOf(country.getCode())]++;
+        }
+        for(int shardRows : rows){
+            assertTrue(shardRows > 0 && shardRows < ROWS);
+        }
+    }
+
+    @Test
+    public void listingsAreMergedInCodeOrder(){
+        assertEquals(codes(single.fetchAllCountries()), codes(sharded.fetchAllCountries()));
+        assertEquals(codes(single.fetchCountriesPage(new CountryFilter(), "C0500", 40)),
+                codes(sharded.fetchCountriesPage(new CountryFilter(), "C0500", 40)));
+    }
+
+    @Test
+    public void mergedStatisticsMatchOneDatabase(){
+        CountryColumn first = CountryColumn.INTERNET_USERS;
+        CountryColumn second = CountryColumn.ADULT_LITERACY_RATE;
+        CountryStatistics expected = single.getStatistics(first, second);
+        CountryStatistics actual = sharded.getStatistics(first, second);
+        for(CountryColumn column : new CountryColumn[]{first, second}){
+            assertSame(expected.getColumnStatistics(column), actual.getColumnStatistics(column));
+        }
+        assertSame(expected.getCorrelation(), actual.getCorrelation());
+    }
+
+    @Test
+    public void mergedMultiColumnStatisticsMatchOneDatabase(){
+        List<CountryColumn> columns = Arrays.asList(CountryColumn.values());
+        MultiColumnStatistics expected = single.getStatistics(columns);
+        MultiColumnStatistics actual = sharded.getStatistics(columns);
+        for(CountryColumn column : columns){
+            assertSame(expected.getColumnStatistics(column), actual.getColumnStatistics(column));
+        }
+        assertSame(expected.getCorrelation(columns.get(0), columns.get(1)),
+                actual.getCorrelation(columns.get(0), columns.get(1)));
+    }
+
+    @Test
+    public void mergedRankingMatchesOneDatabase(){
+        for(CountryColumn column : CountryColumn.values()){
+            ColumnRanking expected = single.getRanking(column, 10);
+            ColumnRanking actual = sharded.getRanking(column, 10);
+            assertEquals(codes(expected.getGreatest()), codes(actual.getGreatest()));
+            assertEquals(codes(expected.getLeast()), codes(actual.getLeast()));
+        }
+    }
+
+    private static List<String> codes(List<Country> countries){
+        List<String> codes = new ArrayList<>(countries.size());
+        countries.forEach(country -> codes.add(country.getCode()));
+        return codes;
+    }
+
+    private static void assertSame(ColumnStatistics expected, ColumnStatistics actual){
+        assertEquals(expected.getCount(), actual.getCount());
+        assertClose(expected.getMean(), actual.getMean());
+        assertClose(expected.getStandardDeviation(), actual.getStandardDeviation());
+        assertEquals(expected.getMin(), actual.getMin(), 0.0);
+        assertEquals(expected.getMax(), actual.getMax(), 0.0);
+        assertEquals(expected.getCountryWithMin().getCode(), actual.getCountryWithMin().getCode());
+        assertEquals(expected.getCountryWithMax().getCode(), actual.getCountryWithMax().getCode());
+    }
+
+    private static void assertSame(CorrelationStatistics expected, CorrelationStatistics actual){
+        assertEquals(expected.getCount(), actual.getCount());
+        assertClose(expected.getCovariance(), actual.getCovariance());
+        assertClose(expected.getCorrelationCoefficient(), actual.getCorrelationCoefficient());
+    }
+
+    private static void assertClose(double expected, double actual){
+        assertEquals(expected, actual, TOLERANCE * Math.max(1.0, Math.abs(expected)));
+    }
+}
@@ -0,0 +1,74 @@
+package com.teamtreehouse.publicdata.dao;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+import com.teamtreehouse.publicdata.stats.ColumnStatistics;
+import com.teamtreehouse.publicdata.stats.CountryStatistics;
+
+import static org.junit.Assert.assertEquals;
+
+// Checks that the statistics the database aggregates (DATABASE) match those of one pass in Java (IN_MEMORY) and
+// those merged over code ranges (PARALLEL), over generated rows in an in-memory H2 database.
+public class StatisticsModeTest {
+    private static final String URL = "jdbc:h2:mem:statistics-mode-test;DB_CLOSE_DELAY=-1";
+    private static final double TOLERANCE = 1e-9;
+    private static final int ROWS = 3000;
+    private static final CountryColumn FIRST = CountryColumn.INTERNET_USERS;
+    private static final CountryColumn SECOND = CountryColumn.ADULT_LITERACY_RATE;
+
+    @BeforeClass
+    public static void seed(){
+        Random random = new Random(6);
+        List<Country> countries = new ArrayList<>(ROWS);
+        for(int i = 0; i < ROWS; i++){
+            countries.add(new Country(new Country.CountryBuilder(String.format("C%04d", i), "Country " + i)
+                    .withInternetUsers(random.nextInt(6) == 0 ? null : 50 + random.nextGaussian() * 15)
+                    .withAdultLiteracyRate(random.nextInt(3) == 0 ? null : random.nextDouble() * 100)));
+        }
+        new SimpleCountryDAO(URL, StatisticsMode.DATABASE)
+                .mergeCountries(countries, EnumSet.allOf(CountryColumn.class));
+    }
+
+    @Test
+    public void databaseMatchesInMemory(){
+        assertSame(statistics(StatisticsMode.IN_MEMORY), statistics(StatisticsMode.DATABASE));
+    }
+
+    @Test
+    public void parallelMatchesInMemory(){
+        assertSame(statistics(StatisticsMode.IN_MEMORY), statistics(StatisticsMode.PARALLEL));
+    }
+
+    private static CountryStatistics statistics(StatisticsMode mode){
+        return new SimpleCountryDAO(URL, mode).getStatistics(FIRST, SECOND);
+    }
+
+    private static void assertSame(CountryStatistics expected, CountryStatistics actual){
+        for(CountryColumn column : new CountryColumn[]{FIRST, SECOND}){
+            ColumnStatistics expectedColumn = expected.getColumnStatistics(column);
+            ColumnStatistics actualColumn = actual.getColumnStatistics(column);
+            assertEquals(expectedColumn.getCount(), actualColumn.getCount());
+            assertClose(expectedColumn.getMean(), actualColumn.getMean());
+            assertClose(expectedColumn.getStandardDeviation(), actualColumn.getStandardDeviation());
+            assertEquals(expectedColumn.getMin(), actualColumn.getMin(), 0.0);
+            assertEquals(expectedColumn.getMax(), actualColumn.getMax(), 0.0);
+            assertEquals(expectedColumn.getCountryWithMin().getCode(), actualColumn.getCountryWithMin().getCode());
+            assertEquals(expectedColumn.getCountryWithMax().getCode(), actualColumn.getCountryWithMax().getCode());
+        }
+        assertEquals(expected.getCorrelation().getCount(), actual.getCorrelation().getCount());
+        assertClose(expected.getCorrelation().getCovariance(), actual.getCorrelation().getCovariance());
+        assertClose(expected.getCorrelationCoefficient(), actual.getCorrelationCoefficient());
+    }
+
+    private static void assertClose(double expected, double actual){
+        assertEquals(expected, actual, TOLERANCE * Math.max(1.0, Math.abs(expected)));
+    }
+}
@@ -0,0 +1,45 @@
+package com.teamtreehouse.publicdata.importer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+// Checks the splitting of CSV lines, in particular the quoted fields of the World Bank downloads.
+public class CsvParserTest {
+    @Test
+    public void splitsPlainFields(){
+        assertEquals(Arrays.asList("ABW", "Aruba", "17.1"), CsvParser.parseLine("ABW,Aruba,17.1"));
+    }
+
+    @Test
+    public void keepsEmptyFields(){
+        assertEquals(Arrays.asList(""), CsvParser.parseLine(""));
+        assertEquals(Arrays.asList("", "", ""), CsvParser.parseLine(",,"));
+        assertEquals(Arrays.asList("ABW", "", "17.1", ""), CsvParser.parseLine("ABW,,17.1,"));
+    }
+
+    @Test
+    public void trimsFields(){
+        assertEquals(Arrays.asList("ABW", "Aruba"), CsvParser.parseLine(" ABW ,  Aruba "));
+    }
+
+    @Test
+    public void quotedFieldsHoldCommas(){
+        assertEquals(Arrays.asList("KOR", "Korea, Rep.", "84.3"), CsvParser.parseLine("KOR,\"Korea, Rep.\",84.3"));
+    }
+
+    @Test
+    public void doubledQuoteStandsForOneQuote(){
+        assertEquals(Arrays.asList("say \"hi\"", "x"), CsvParser.parseLine("\"say \"\"hi\"\"\",x"));
+        assertEquals(Arrays.asList("\"", ""), CsvParser.parseLine("\"\"\"\",\"\""));
+    }
+
+    @Test
+    public void splitsWorldBankLines(){
+        assertEquals(Arrays.asList("Aruba", "ABW", "Internet users (per 100 people)", "IT.NET.USER.P2", "", "17.1"),
+                CsvParser.parseLine("\"Aruba\",\"ABW\",\"Internet users (per 100 people)\",\"IT.NET.USER.P2\"," +
+                        "\"\",\"17.1\""));
+    }
+}
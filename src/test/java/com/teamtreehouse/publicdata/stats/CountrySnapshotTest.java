@@ -0,0 +1,111 @@
+package com.teamtreehouse.publicdata.stats;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+// Applies random inserts, replacements and removals to a snapshot and to a sorted map of the same countries, and
+// checks after every step that the snapshot holds exactly the rows of the map. The rows shift across the words of
+// the null bitmaps, so a bit copied to the wrong place shows up as a value that appears or disappears.
+public class CountrySnapshotTest {
+    // More codes than the 64 rows of a bitmap word
+    private static final int CODES = 200;
+
+    @Test
+    public void withAndWithoutMatchASortedMap(){
+        Random random = new Random(7);
+        Map<String, Country> expected = new TreeMap<>();
+        CountrySnapshot snapshot = CountrySnapshot.of(Collections.<Country>emptyList());
+        for(int step = 0; step < 2000; step++){
+            if(random.nextInt(4) == 0){
+                List<String> removed = new ArrayList<>();
+                for(int i = random.nextInt(8); i >= 0; i--){
+                    removed.add(code(random.nextInt(CODES)));
+                }
+                expected.keySet().removeAll(removed);
+                snapshot = snapshot.without(removed);
+            }else{
+                Country country = country(random, random.nextInt(CODES));
+                expected.put(country.getCode(), country);
+                snapshot = snapshot.with(country);
+            }
+            assertRows(expected, snapshot);
+        }
+    }
+
+    @Test
+    public void changedCopyLeavesTheSnapshotAsItWas(){
+        Random random = new Random(8);
+        List<Country> countries = new ArrayList<>();
+        for(int i = 0; i < CODES; i += 2){
+            countries.add(country(random, i));
+        }
+        Map<String, Country> expected = new TreeMap<>();
+        countries.forEach(country -> expected.put(country.getCode(), country));
+        CountrySnapshot snapshot = CountrySnapshot.of(countries);
+
+        snapshot.with(country(random, 1));
+        snapshot.with(country(random, 100));
+        snapshot.without(Arrays.asList(code(0), code(64), code(130)));
+        assertRows(expected, snapshot);
+    }
+
+    @Test
+    public void olderVersionIsIgnored(){
+        Country newer = new Country(new Country.CountryBuilder("ABC", "Newer").withInternetUsers(2.0));
+        newer.setVersion(5L);
+        Country older = new Country(new Country.CountryBuilder("ABC", "Older").withInternetUsers(1.0));
+        older.setVersion(4L);
+
+        CountrySnapshot snapshot = CountrySnapshot.of(Collections.singletonList(newer));
+        assertSame(snapshot, snapshot.with(older));
+        assertEquals("Newer", snapshot.getCountry("ABC").getName());
+    }
+
+    private static void assertRows(Map<String, Country> expected, CountrySnapshot snapshot){
+        assertEquals(expected.size(), snapshot.size());
+        for(int i = 0; i < CODES; i++){
+            Country expectedCountry = expected.get(code(i));
+            Country actualCountry = snapshot.getCountry(code(i));
+            if(expectedCountry == null){
+                assertNull(actualCountry);
+                continue;
+            }
+            assertEquals(expectedCountry.getName(), actualCountry.getName());
+            assertEquals(expectedCountry.getInternetUsers(), actualCountry.getInternetUsers());
+            assertEquals(expectedCountry.getAdultLiteracyRate(), actualCountry.getAdultLiteracyRate());
+        }
+
+        CountryStatistics statistics = new CountryStatistics(CountryColumn.INTERNET_USERS,
+                CountryColumn.ADULT_LITERACY_RATE);
+        expected.values().forEach(statistics::add);
+        for(CountryColumn column : CountryColumn.values()){
+            CountryStatisticsTest.assertSame(statistics.getColumnStatistics(column),
+                    snapshot.getColumnStatistics(column));
+        }
+    }
+
+    // About one value in three is null, so the bitmaps hold both set and cleared bits in every word
+    private static Country country(Random random, int i){
+        return new Country(new Country.CountryBuilder(code(i), "Country " + i)
+                .withInternetUsers(random.nextInt(3) == 0 ? null : random.nextDouble() * 100)
+                .withAdultLiteracyRate(random.nextInt(3) == 0 ? null : random.nextDouble() * 100));
+    }
+
+    private static String code(int i){
+        return String.format("C%03d", i);
+    }
+}
@@ -0,0 +1,75 @@
+package com.teamtreehouse.publicdata.stats;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+
+import static org.junit.Assert.assertEquals;
+
+// Compares the statistics merged over consecutive parts of the rows, with the update of Chan et al., with those of
+// one pass over all of them. The countries are added in code order, so the min and max must match as well.
+public class CountryStatisticsTest {
+    // The values sit around 1e6, where the merged and single-pass moments differ in the ninth digit, while a naive
+    // sum of squares would already be wrong in the sixth
+    private static final double TOLERANCE = 1e-8;
+
+    @Test
+    public void mergedCountryStatisticsMatchOnePass(){
+        Random random = new Random(5);
+        List<Country> countries = countries(random, 5000);
+        CountryColumn first = CountryColumn.INTERNET_USERS;
+        CountryColumn second = CountryColumn.ADULT_LITERACY_RATE;
+        CountryStatistics single = new CountryStatistics(first, second);
+        countries.forEach(single::add);
+
+        CountryStatistics merged = new CountryStatistics(first, second);
+        for(int from = 0; from < countries.size(); from += 777){
+            CountryStatistics part = new CountryStatistics(first, second);
+            countries.subList(from, Math.min(countries.size(), from + 777)).forEach(part::add);
+            merged.merge(part);
+        }
+
+        assertSame(single.getColumnStatistics(first), merged.getColumnStatistics(first));
+        assertSame(single.getColumnStatistics(second), merged.getColumnStatistics(second));
+        assertEquals(single.getCorrelation().getCount(), merged.getCorrelation().getCount());
+        assertClose(single.getCorrelationCoefficient(), merged.getCorrelationCoefficient());
+    }
+
+    // Countries in code order with values far from zero, where a naive sum of squares would lose precision.
+    // About one value in five is null.
+    static List<Country> countries(Random random, int count){
+        List<Country> countries = new ArrayList<>(count);
+        for(int i = 0; i < count; i++){
+            countries.add(new Country(new Country.CountryBuilder(String.format("C%05d", i), "Country " + i)
+                    .withInternetUsers(random.nextInt(5) == 0 ? null : 1e6 + random.nextGaussian() * 10)
+                    .withAdultLiteracyRate(random.nextInt(5) == 0 ? null : random.nextDouble() * 100)));
+        }
+        return countries;
+    }
+
+    static void assertSame(ColumnStatistics expected, ColumnStatistics actual){
+        assertEquals(expected.getCount(), actual.getCount());
+        if(expected.getCount() == 0){
+            return;
+        }
+        assertClose(expected.getMean(), actual.getMean());
+        assertClose(expected.getVariance(), actual.getVariance());
+        assertEquals(expected.getMin(), actual.getMin(), 0.0);
+        assertEquals(expected.getMax(), actual.getMax(), 0.0);
+        assertEquals(expected.getCountryWithMin().getCode(), actual.getCountryWithMin().getCode());
+        assertEquals(expected.getCountryWithMax().getCode(), actual.getCountryWithMax().getCode());
+    }
+
+    static void assertClose(double expected, double actual){
+        if(Double.isNaN(expected)){
+            assertEquals(expected, actual, 0.0);
+        }else{
+            assertEquals(expected, actual, TOLERANCE * Math.max(1.0, Math.abs(expected)));
+        }
+    }
+}
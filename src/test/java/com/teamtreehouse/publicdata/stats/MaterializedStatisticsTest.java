@@ -0,0 +1,147 @@
+package com.teamtreehouse.publicdata.stats;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+
+import static com.teamtreehouse.publicdata.stats.CountryStatisticsTest.assertClose;
+import static org.junit.Assert.assertEquals;
+
+// Checks the statistics kept up to date on every put and remove against one pass over the countries they should
+// hold, including the moves of a column between holding a value and being null.
+public class MaterializedStatisticsTest {
+    private static final CountryColumn FIRST = CountryColumn.INTERNET_USERS;
+    private static final CountryColumn SECOND = CountryColumn.ADULT_LITERACY_RATE;
+    private static final int CODES = 300;
+
+    @Test
+    public void randomChangesMatchOnePass(){
+        Random random = new Random(9);
+        Map<String, Country> expected = new TreeMap<>();
+        MaterializedStatistics statistics = new MaterializedStatistics();
+        for(int step = 0; step < 5000; step++){
+            String code = String.format("C%03d", random.nextInt(CODES));
+            if(random.nextInt(4) == 0){
+                expected.remove(code);
+                statistics.remove(code);
+            }else{
+                Country country = new Country(new Country.CountryBuilder(code, "Country " + code)
+                        .withInternetUsers(random.nextInt(3) == 0 ? null : 50 + random.nextGaussian() * 15)
+                        .withAdultLiteracyRate(random.nextInt(3) == 0 ? null : random.nextDouble() * 100));
+                expected.put(code, country);
+                statistics.put(country);
+            }
+            if(step % 50 == 0){
+                assertMatches(expected, statistics);
+            }
+        }
+        assertMatches(expected, statistics);
+    }
+
+    @Test
+    public void columnsMoveBetweenValuesAndNull(){
+        MaterializedStatistics statistics = new MaterializedStatistics();
+        statistics.put(country("AAA", 1.0, 2.0));
+        statistics.put(country("BBB", 3.0, 4.0));
+        assertCounts(statistics, 2, 2, 2);
+
+        statistics.put(country("AAA", null, 2.0));
+        assertCounts(statistics, 1, 2, 1);
+        assertEquals(3.0, statistics.getColumnStatistics(FIRST).getMean(), 0.0);
+
+        statistics.put(country("AAA", 5.0, null));
+        assertCounts(statistics, 2, 1, 1);
+        assertEquals(4.0, statistics.getColumnStatistics(FIRST).getMean(), 0.0);
+        assertEquals(4.0, statistics.getColumnStatistics(SECOND).getMean(), 0.0);
+
+        statistics.remove("BBB");
+        assertCounts(statistics, 1, 0, 0);
+        statistics.remove("AAA");
+        assertCounts(statistics, 0, 0, 0);
+    }
+
+    // Once a column is empty again, the sums must not keep the shift of the values it held before: a shift of 1e9
+    // would leave nothing of the variance of values around 1 in the precision of a double
+    @Test
+    public void sumsStartOverOnceEmpty(){
+        MaterializedStatistics statistics = new MaterializedStatistics();
+        statistics.put(country("AAA", 1e9, 1e9));
+        statistics.remove("AAA");
+        statistics.put(country("AAA", 1.0, 1.0));
+        statistics.put(country("BBB", 2.0, 3.0));
+        statistics.put(country("CCC", 3.0, 5.0));
+
+        ColumnStatistics first = statistics.getColumnStatistics(FIRST);
+        assertEquals(2.0, first.getMean(), 1e-12);
+        assertEquals(1.0, first.getVariance(), 1e-12);
+        assertEquals(1.0, statistics.getStatistics(FIRST, SECOND).getCorrelationCoefficient(), 1e-12);
+    }
+
+    // The values drift upwards as the countries are changed, so the stale values left in the sketches by the
+    // removals sit below the current ones. Their share is bounded by 1/k, on top of the error of the sketch.
+    @Test
+    public void percentilesStayWithinTheBoundAfterRemovals(){
+        Random random = new Random(10);
+        Map<String, Double> values = new HashMap<>();
+        MaterializedStatistics statistics = new MaterializedStatistics();
+        for(int step = 0; step < 50000; step++){
+            String code = String.format("C%04d", random.nextInt(5000));
+            if(random.nextInt(5) == 0){
+                values.remove(code);
+                statistics.remove(code);
+            }else{
+                double value = step / 1000.0 + random.nextDouble();
+                values.put(code, value);
+                statistics.put(country(code, value, null));
+            }
+        }
+
+        double[] sorted = new double[values.size()];
+        int i = 0;
+        for(double value : values.values()){
+            sorted[i++] = value;
+        }
+        Arrays.sort(sorted);
+        MultiColumnStatistics multiColumn = statistics.getStatistics(Collections.singletonList(FIRST));
+        for(int percent = 1; percent < 100; percent++){
+            QuantileSketchTest.assertRank(sorted, percent / 100.0, multiColumn.getPercentile(FIRST, percent),
+                    QuantileSketchTest.RANK_ERROR + 1.0 / QuantileSketch.DEFAULT_K);
+        }
+    }
+
+    private static void assertMatches(Map<String, Country> expected, MaterializedStatistics statistics){
+        CountryStatistics onePass = new CountryStatistics(FIRST, SECOND);
+        expected.values().forEach(onePass::add);
+        CountryStatistics maintained = statistics.getStatistics(FIRST, SECOND);
+
+        assertEquals(expected.size(), statistics.size());
+        for(CountryColumn column : new CountryColumn[]{FIRST, SECOND}){
+            CountryStatisticsTest.assertSame(onePass.getColumnStatistics(column),
+                    maintained.getColumnStatistics(column));
+        }
+        assertEquals(onePass.getCorrelation().getCount(), maintained.getCorrelation().getCount());
+        if(onePass.getCorrelation().getCount() > 1){
+            assertClose(onePass.getCorrelationCoefficient(), maintained.getCorrelationCoefficient());
+        }
+    }
+
+    private static void assertCounts(MaterializedStatistics statistics, long first, long second, long pairs){
+        assertEquals(first, statistics.getColumnStatistics(FIRST).getCount());
+        assertEquals(second, statistics.getColumnStatistics(SECOND).getCount());
+        assertEquals(pairs, statistics.getStatistics(FIRST, SECOND).getCorrelation().getCount());
+    }
+
+    private static Country country(String code, Double internetUsers, Double adultLiteracyRate){
+        return new Country(new Country.CountryBuilder(code, "Country " + code)
+                .withInternetUsers(internetUsers)
+                .withAdultLiteracyRate(adultLiteracyRate));
+    }
+}
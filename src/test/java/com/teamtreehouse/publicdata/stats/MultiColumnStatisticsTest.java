@@ -0,0 +1,57 @@
+package com.teamtreehouse.publicdata.stats;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.teamtreehouse.publicdata.model.Country;
+import com.teamtreehouse.publicdata.model.CountryColumn;
+
+import static com.teamtreehouse.publicdata.stats.CountryStatisticsTest.assertClose;
+import static com.teamtreehouse.publicdata.stats.CountryStatisticsTest.assertSame;
+import static com.teamtreehouse.publicdata.stats.CountryStatisticsTest.countries;
+import static org.junit.Assert.assertEquals;
+
+// Compares the statistics of every column and pair merged over random splits of the rows with those of one pass
+// over all of them, like CountryStatisticsTest does for two columns.
+public class MultiColumnStatisticsTest {
+    private static final List<CountryColumn> COLUMNS = Arrays.asList(CountryColumn.values());
+
+    @Test
+    public void mergedStatisticsMatchOnePass(){
+        Random random = new Random(4);
+        for(int round = 0; round < 50; round++){
+            List<Country> countries = countries(random, 1 + random.nextInt(2000));
+            MultiColumnStatistics single = new MultiColumnStatistics(COLUMNS);
+            countries.forEach(single::add);
+
+            // Consecutive parts of random sizes, some of them empty
+            MultiColumnStatistics merged = new MultiColumnStatistics(COLUMNS);
+            int from = 0;
+            while(from < countries.size()){
+                int to = Math.min(countries.size(), from + random.nextInt(countries.size() / 3 + 2));
+                MultiColumnStatistics part = new MultiColumnStatistics(COLUMNS);
+                countries.subList(from, to).forEach(part::add);
+                merged.merge(part);
+                from = to;
+            }
+
+            for(CountryColumn column : COLUMNS){
+                assertSame(single.getColumnStatistics(column), merged.getColumnStatistics(column));
+            }
+            double[][] expected = single.getCorrelationMatrix();
+            double[][] actual = merged.getCorrelationMatrix();
+            for(int i = 0; i < expected.length; i++){
+                for(int j = 0; j < expected.length; j++){
+                    assertClose(expected[i][j], actual[i][j]);
+                }
+            }
+            CorrelationStatistics expectedPair = single.getCorrelation(COLUMNS.get(0), COLUMNS.get(1));
+            CorrelationStatistics actualPair = merged.getCorrelation(COLUMNS.get(0), COLUMNS.get(1));
+            assertEquals(expectedPair.getCount(), actualPair.getCount());
+            assertClose(expectedPair.getCovariance(), actualPair.getCovariance());
+        }
+    }
+}
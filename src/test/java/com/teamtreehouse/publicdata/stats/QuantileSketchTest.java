@@ -0,0 +1,135 @@
+package com.teamtreehouse.publicdata.stats;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Compares the quantiles of the sketch with the exact ranks of the values it was given. Below k values the
+// sketch keeps them all and must be exact; above, the rank of every answer must be within the KLL error bound.
+public class QuantileSketchTest {
+    private static final int K = QuantileSketch.DEFAULT_K;
+    // The rank error is about 1.7 / k of the count; twice that leaves room for an unlucky compaction
+    static final double RANK_ERROR = 2 * 1.7 / K;
+    private static final int VALUES = 100000;
+
+    @Test
+    public void isExactBelowK(){
+        Random random = new Random(1);
+        double[] values = new double[K - 1];
+        QuantileSketch sketch = new QuantileSketch();
+        for(int i = 0; i < values.length; i++){
+            values[i] = random.nextGaussian();
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        for(int percent = 1; percent < 100; percent++){
+            double fraction = percent / 100.0;
+            int index = Math.max(0, (int) Math.ceil(fraction * values.length) - 1);
+            assertEquals("percentile " + percent, values[index], sketch.getQuantile(fraction), 0.0);
+        }
+        assertEquals(values[0], sketch.getQuantile(0), 0.0);
+        assertEquals(values[values.length - 1], sketch.getQuantile(1), 0.0);
+    }
+
+    @Test
+    public void ranksAreWithinTheErrorBound(){
+        Random random = new Random(2);
+        double[] values = new double[VALUES];
+        QuantileSketch sketch = new QuantileSketch();
+        for(int i = 0; i < values.length; i++){
+            values[i] = random.nextDouble() * 100;
+            sketch.add(values[i]);
+        }
+        assertRanks(values, sketch);
+    }
+
+    @Test
+    public void mergedRanksAreWithinTheErrorBound(){
+        Random random = new Random(3);
+        double[] values = new double[VALUES];
+        QuantileSketch[] parts = new QuantileSketch[7];
+        for(int i = 0; i < parts.length; i++){
+            parts[i] = new QuantileSketch();
+        }
+        for(int i = 0; i < values.length; i++){
+            values[i] = Math.exp(random.nextGaussian());
+            parts[random.nextInt(parts.length)].add(values[i]);
+        }
+
+        QuantileSketch merged = new QuantileSketch();
+        for(QuantileSketch part : parts){
+            merged.merge(part);
+        }
+        assertEquals(VALUES, merged.getCount());
+        assertRanks(values, merged);
+    }
+
+    @Test
+    public void copyIsIndependentOfTheOriginal(){
+        QuantileSketch original = new QuantileSketch();
+        for(int i = 0; i < 1000; i++){
+            original.add(i);
+        }
+        QuantileSketch copy = new QuantileSketch(original);
+        assertEquals(original.getQuantile(0.5), copy.getQuantile(0.5), 0.0);
+
+        for(int i = 0; i < 1000; i++){
+            copy.add(5000);
+        }
+        assertEquals(1000, original.getCount());
+        assertEquals(999, original.getQuantile(1), 0.0);
+        assertEquals(5000, copy.getQuantile(1), 0.0);
+    }
+
+    @Test
+    public void emptySketchHasNoQuantile(){
+        assertTrue(Double.isNaN(new QuantileSketch().getQuantile(0.5)));
+    }
+
+    // The exact rank of every answer, as a fraction of the count, must be within RANK_ERROR of the one asked for
+    private static void assertRanks(double[] values, QuantileSketch sketch){
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for(int percent = 1; percent < 100; percent++){
+            assertRank(sorted, percent / 100.0, sketch.getQuantile(percent / 100.0), RANK_ERROR);
+        }
+    }
+
+    // The exact rank of a quantile in the sorted values, as a fraction of the count, must be within rankError
+    // of the one asked for
+    static void assertRank(double[] sorted, double fraction, double quantile, double rankError){
+        double lowest = lowerBound(sorted, quantile) / (double) sorted.length;
+        double highest = (upperBound(sorted, quantile)) / (double) sorted.length;
+        assertTrue("fraction " + fraction + " ranks between " + lowest + " and " + highest,
+                fraction >= lowest - rankError && fraction <= highest + rankError);
+    }
+
+    // The number of values less than the given one
+    private static int lowerBound(double[] sorted, double value){
+        int index = Arrays.binarySearch(sorted, value);
+        if(index < 0){
+            return -index - 1;
+        }
+        while(index > 0 && sorted[index - 1] == value){
+            index--;
+        }
+        return index;
+    }
+
+    // The number of values less than or equal to the given one
+    private static int upperBound(double[] sorted, double value){
+        int index = Arrays.binarySearch(sorted, value);
+        if(index < 0){
+            return -index - 1;
+        }
+        while(index < sorted.length - 1 && sorted[index + 1] == value){
+            index++;
+        }
+        return index + 1;
+    }
+}